@@ -0,0 +1,38 @@
+#!/bin/sh
+# A stand-in for the starbound asset packer, for exercising PackerRunner.
+# Usage: stand-in-packer.sh <mod folder> <output file>
+#
+# Its behavior is controlled by files in the mod folder:
+#   stand-in-sleep  seconds to run before finishing
+#   stand-in-flood  bytes written to both standard and error output
+#   stand-in-exit   exit code, 0 when missing
+# On success the output file lists the files of the mod folder.
+
+folder="$1"
+output="$2"
+if [ ! -d "$folder" ] || [ -z "$output" ]; then
+	echo "usage: $0 <mod folder> <output file>" >&2
+	exit 2
+fi
+
+if [ -f "$folder/stand-in-flood" ]; then
+	bytes=$(cat "$folder/stand-in-flood")
+	head -c "$bytes" /dev/zero | tr '\0' 'o'
+	head -c "$bytes" /dev/zero | tr '\0' 'e' >&2
+fi
+
+if [ -f "$folder/stand-in-sleep" ]; then
+	sleep "$(cat "$folder/stand-in-sleep")"
+fi
+
+code=0
+if [ -f "$folder/stand-in-exit" ]; then
+	code=$(cat "$folder/stand-in-exit")
+fi
+if [ "$code" -ne 0 ]; then
+	echo "stand-in packer failing with $code" >&2
+	exit "$code"
+fi
+
+echo "packing $folder into $output"
+(cd "$folder" && find . -type f | sort) > "$output"
@@ -0,0 +1,184 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A copy on write catalog of immutable values by key.
+ * Readers get the current version without locking, and see it
+ * unchanged for as long as they hold it. Writers apply a batch of
+ * changes to a private copy, which is then published as the next
+ * version in a single step.
+ * 
+ * @author SilverFishCat
+ *
+ * @param <T> The type of the values, which should be immutable snapshots
+ */
+public class Catalog<T> {
+	/**
+	 * A batch of changes applied to a catalog.
+	 * 
+	 * @author SilverFishCat
+	 *
+	 * @param <T> The type of the values
+	 */
+	public interface Editor<T>{
+		/**
+		 * Apply changes to a private copy of the catalog.
+		 * 
+		 * @param draft The copy to change
+		 */
+		void edit(Map<String, T> draft);
+	}
+	
+	/**
+	 * A published, unchanging version of a catalog.
+	 * 
+	 * @author SilverFishCat
+	 *
+	 * @param <T> The type of the values
+	 */
+	public static final class Version<T>{
+		private final long _number;
+		private final Map<String, T> _entries;
+		
+		private Version(long number, Map<String, T> entries){
+			_number = number;
+			_entries = Collections.unmodifiableMap(entries);
+		}
+		
+		/**
+		 * Get the number of this version, counting up from zero.
+		 * 
+		 * @return The version number
+		 */
+		public long getNumber(){
+			return _number;
+		}
+		/**
+		 * Get a value of this version.
+		 * 
+		 * @param key The key of the value
+		 * @return The value, null if none
+		 */
+		public T get(String key){
+			return _entries.get(key);
+		}
+		/**
+		 * Get every value of this version.
+		 * 
+		 * @return An unmodifiable map of the values
+		 */
+		public Map<String, T> getEntries(){
+			return _entries;
+		}
+		/**
+		 * Get the number of values in this version.
+		 * 
+		 * @return The number of values
+		 */
+		public int size(){
+			return _entries.size();
+		}
+	}
+	
+	private final AtomicReference<Version<T>> _current;
+	private final Object _writeLock;
+	
+	/**
+	 * Create an empty catalog.
+	 */
+	public Catalog(){
+		_current = new AtomicReference<>(new Version<>(0, new HashMap<String, T>()));
+		_writeLock = new Object();
+	}
+	
+	/**
+	 * Get the current version of the catalog.
+	 * 
+	 * @return The current version
+	 */
+	public Version<T> getVersion(){
+		return _current.get();
+	}
+	/**
+	 * Get a value of the current version.
+	 * 
+	 * @param key The key of the value
+	 * @return The value, null if none
+	 */
+	public T get(String key){
+		return _current.get().get(key);
+	}
+	/**
+	 * Apply a batch of changes and publish them as a new version.
+	 * Writers wait for each other, readers are never blocked.
+	 * 
+	 * @param editor The changes to apply
+	 * @return The published version
+	 */
+	public Version<T> edit(Editor<T> editor){
+		synchronized (_writeLock) {
+			Version<T> current = _current.get();
+			Map<String, T> draft = new HashMap<>(current.getEntries());
+			editor.edit(draft);
+			
+			Version<T> next = new Version<>(current.getNumber() + 1, draft);
+			_current.set(next);
+			return next;
+		}
+	}
+	/**
+	 * Publish a new version with one value added or replaced.
+	 * 
+	 * @param key The key of the value
+	 * @param value The value
+	 * @return The published version
+	 */
+	public Version<T> put(final String key, final T value){
+		return edit(new Editor<T>() {
+			@Override
+			public void edit(Map<String, T> draft) {
+				draft.put(key, value);
+			}
+		});
+	}
+	/**
+	 * Publish a new version with one value removed.
+	 * 
+	 * @param key The key of the value
+	 * @return The published version
+	 */
+	public Version<T> remove(final String key){
+		return edit(new Editor<T>() {
+			@Override
+			public void edit(Map<String, T> draft) {
+				draft.remove(key);
+			}
+		});
+	}
+}
@@ -0,0 +1,89 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+/**
+ * A change of a single property of an object.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class ChangeEvent {
+	private final Object _source;
+	private final String _property;
+	private final Object _oldValue;
+	private final Object _newValue;
+	
+	/**
+	 * Create a change event.
+	 * 
+	 * @param source The changed object
+	 * @param property The name of the changed property
+	 * @param oldValue The value before the change
+	 * @param newValue The value after the change
+	 */
+	public ChangeEvent(Object source, String property, Object oldValue, Object newValue){
+		_source = source;
+		_property = property;
+		_oldValue = oldValue;
+		_newValue = newValue;
+	}
+	
+	/**
+	 * Get the changed object.
+	 * 
+	 * @return The changed object
+	 */
+	public Object getSource(){
+		return _source;
+	}
+	/**
+	 * Get the name of the changed property.
+	 * 
+	 * @return The name of the property
+	 */
+	public String getProperty(){
+		return _property;
+	}
+	/**
+	 * Get the value before the change.
+	 * 
+	 * @return The old value
+	 */
+	public Object getOldValue(){
+		return _oldValue;
+	}
+	/**
+	 * Get the value after the change.
+	 * 
+	 * @return The new value
+	 */
+	public Object getNewValue(){
+		return _newValue;
+	}
+	
+	@Override
+	public String toString() {
+		return _property + ": " + _oldValue + " -> " + _newValue;
+	}
+}
@@ -0,0 +1,138 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The listeners of an observed object and its pending batch of changes.
+ * Objects only create their change support when the first listener is
+ * added, so unobserved objects pay a single null check per change.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class ChangeSupport {
+	private final List<ChangeListener> _listeners;
+	private List<ChangeEvent> _pending;
+	private int _batchDepth;
+	
+	/**
+	 * Create a change support without listeners.
+	 */
+	public ChangeSupport(){
+		_listeners = new CopyOnWriteArrayList<>();
+		_pending = null;
+		_batchDepth = 0;
+	}
+	
+	/**
+	 * Add a listener.
+	 * 
+	 * @param listener The listener to add
+	 */
+	public void addListener(ChangeListener listener){
+		if(listener == null)
+			throw new NullPointerException("Listener is null");
+		_listeners.add(listener);
+	}
+	/**
+	 * Remove a listener.
+	 * 
+	 * @param listener The listener to remove
+	 */
+	public void removeListener(ChangeListener listener){
+		_listeners.remove(listener);
+	}
+	/**
+	 * Check if there are any listeners.
+	 * 
+	 * @return True if there are listeners
+	 */
+	public boolean hasListeners(){
+		return !_listeners.isEmpty();
+	}
+	/**
+	 * Start a batch, holding back changes until the batch ends.
+	 * Batches may be nested, changes are sent when the outermost one ends.
+	 */
+	public synchronized void beginBatch(){
+		_batchDepth++;
+	}
+	/**
+	 * End a batch, sending the held back changes.
+	 */
+	public void endBatch(){
+		List<ChangeEvent> events;
+		synchronized (this) {
+			if(_batchDepth == 0)
+				throw new IllegalStateException("No batch in progress");
+			if(--_batchDepth > 0 || _pending == null)
+				return;
+			
+			events = _pending;
+			_pending = null;
+		}
+		deliver(events);
+	}
+	/**
+	 * Report a change of a property, if the value actually changed.
+	 * 
+	 * @param source The changed object
+	 * @param property The name of the property
+	 * @param oldValue The value before the change
+	 * @param newValue The value after the change
+	 */
+	public void fire(Object source, String property, Object oldValue, Object newValue){
+		if(oldValue == null ? newValue == null : oldValue.equals(newValue))
+			return;
+		if(_listeners.isEmpty())
+			return;
+		
+		ChangeEvent event = new ChangeEvent(source, property, oldValue, newValue);
+		synchronized (this) {
+			if(_batchDepth > 0){
+				if(_pending == null)
+					_pending = new ArrayList<>();
+				_pending.add(event);
+				return;
+			}
+		}
+		deliver(Collections.singletonList(event));
+	}
+	
+	/**
+	 * Send changes to every listener.
+	 * 
+	 * @param events The changes
+	 */
+	private void deliver(List<ChangeEvent> events){
+		List<ChangeEvent> unmodifiable = Collections.unmodifiableList(events);
+		for (ChangeListener listener : _listeners) {
+			listener.changed(unmodifiable);
+		}
+	}
+}
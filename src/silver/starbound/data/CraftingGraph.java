@@ -0,0 +1,505 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of crafting recipes and items by item name.
+ * Recipes are indexed both by what they make and by what they use,
+ * and transitive queries are remembered until a recipe change
+ * could affect them. The graph listens to its recipes and items, and
+ * indexes them again when they are edited.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class CraftingGraph {
+	private final Map<String, Set<Recipe>> _producers;
+	private final Map<String, Set<Recipe>> _consumers;
+	private final Map<String, Item> _items;
+	private final Map<String, Set<Item>> _blueprintSources;
+	private final Map<String, Set<String>> _craftableFromCache;
+	private final Map<String, Set<String>> _ingredientTreeCache;
+	private final Map<Recipe, IndexedRecipe> _recipes;
+	private final Map<Item, IndexedItem> _indexedItems;
+	private final ChangeListener _listener;
+	
+	/**
+	 * Create an empty crafting graph.
+	 */
+	public CraftingGraph(){
+		_producers = new HashMap<>();
+		_consumers = new HashMap<>();
+		_items = new HashMap<>();
+		_blueprintSources = new HashMap<>();
+		_craftableFromCache = new HashMap<>();
+		_ingredientTreeCache = new HashMap<>();
+		_recipes = new HashMap<>();
+		_indexedItems = new HashMap<>();
+		_listener = new ChangeListener() {
+			@Override
+			public void changed(List<ChangeEvent> events) {
+				Set<Object> sources = new LinkedHashSet<>();
+				for (ChangeEvent event : events) {
+					sources.add(event.getSource());
+				}
+				for (Object source : sources) {
+					if(source instanceof Recipe)
+						recipeChanged((Recipe)source);
+					else if(source instanceof Item)
+						itemChanged((Item)source);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Add loaded starbound objects to the graph.
+	 * Recipes and items are indexed, other objects are ignored.
+	 * 
+	 * @param objects The objects to add
+	 */
+	public synchronized void addAll(Collection<? extends StarboundObject> objects){
+		for (StarboundObject object : objects) {
+			if(object instanceof Recipe)
+				addRecipe((Recipe)object);
+			else if(object instanceof Item)
+				addItem((Item)object);
+		}
+	}
+	/**
+	 * Add a recipe to the graph.
+	 * 
+	 * @param recipe The recipe to add
+	 */
+	public synchronized void addRecipe(Recipe recipe){
+		if(recipe.getOutputItemName() == null)
+			throw new IllegalArgumentException("Recipe has no output");
+		if(_recipes.containsKey(recipe))
+			return;
+		
+		indexRecipe(recipe);
+		recipe.addChangeListener(_listener);
+	}
+	/**
+	 * Remove a recipe from the graph.
+	 * 
+	 * @param recipe The recipe to remove
+	 * @return True if the recipe was in the graph
+	 */
+	public synchronized boolean removeRecipe(Recipe recipe){
+		if(!unindexRecipe(recipe))
+			return false;
+		
+		recipe.removeChangeListener(_listener);
+		return true;
+	}
+	/**
+	 * Add an item to the graph, replacing any item with the same name.
+	 * 
+	 * @param item The item to add
+	 */
+	public synchronized void addItem(Item item){
+		if(item.getItemName() == null)
+			throw new IllegalArgumentException("Item has no name");
+		if(_indexedItems.containsKey(item))
+			return;
+		
+		indexItem(item);
+		item.addChangeListener(_listener);
+	}
+	/**
+	 * Remove an item from the graph.
+	 * 
+	 * @param item The item to remove
+	 * @return True if the item was in the graph
+	 */
+	public synchronized boolean removeItem(Item item){
+		if(!unindexItem(item))
+			return false;
+		
+		item.removeChangeListener(_listener);
+		return true;
+	}
+	
+	/**
+	 * Get the number of recipes in the graph.
+	 * 
+	 * @return The number of recipes
+	 */
+	public synchronized int getRecipeCount(){
+		return _recipes.size();
+	}
+	/**
+	 * Get the item with the given name.
+	 * 
+	 * @param itemName The name of the item
+	 * @return The item, null if not in the graph
+	 */
+	public synchronized Item getItem(String itemName){
+		return _items.get(itemName);
+	}
+	/**
+	 * Get the recipes that make an item.
+	 * 
+	 * @param itemName The name of the item
+	 * @return The recipes making the item
+	 */
+	public synchronized Set<Recipe> getRecipesFor(String itemName){
+		return copy(_producers.get(itemName));
+	}
+	/**
+	 * Get the recipes that use an item as an ingredient.
+	 * 
+	 * @param itemName The name of the item
+	 * @return The recipes using the item
+	 */
+	public synchronized Set<Recipe> getRecipesUsing(String itemName){
+		return copy(_consumers.get(itemName));
+	}
+	/**
+	 * Get every item that can be crafted from an item, directly or
+	 * through intermediate crafts.
+	 * 
+	 * @param itemName The name of the item
+	 * @return The names of the craftable items
+	 */
+	public synchronized Set<String> getCraftableFrom(String itemName){
+		Set<String> result = _craftableFromCache.get(itemName);
+		if(result == null){
+			result = Collections.unmodifiableSet(traverse(itemName, true));
+			_craftableFromCache.put(itemName, result);
+		}
+		return result;
+	}
+	/**
+	 * Get every item needed anywhere in the crafting tree of an item,
+	 * following the ingredients of every recipe that makes it.
+	 * 
+	 * @param itemName The name of the item
+	 * @return The names of the ingredients
+	 */
+	public synchronized Set<String> getIngredientTree(String itemName){
+		Set<String> result = _ingredientTreeCache.get(itemName);
+		if(result == null){
+			result = Collections.unmodifiableSet(traverse(itemName, false));
+			_ingredientTreeCache.put(itemName, result);
+		}
+		return result;
+	}
+	/**
+	 * Get the items that teach the recipes of an item when picked up.
+	 * 
+	 * @param itemName The name of the crafted item
+	 * @return The items teaching the blueprint
+	 */
+	public synchronized Set<Item> getBlueprintSources(String itemName){
+		Set<Item> sources = _blueprintSources.get(itemName);
+		return sources == null ? Collections.<Item>emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(sources));
+	}
+	/**
+	 * Get the recipes learned when an item is picked up.
+	 * 
+	 * @param item The picked up item
+	 * @return The recipes learned
+	 */
+	public synchronized Set<Recipe> getRecipesUnlockedBy(Item item){
+		Set<Recipe> result = new LinkedHashSet<>();
+		for (String blueprint : item.getBlueprintsLearnedOnPickup()) {
+			Set<Recipe> producers = _producers.get(blueprint);
+			if(producers != null)
+				result.addAll(producers);
+		}
+		return result;
+	}
+	/**
+	 * Get the names used by recipes that match no item in the graph.
+	 * 
+	 * @return The names of the unknown items
+	 */
+	public synchronized Set<String> getUnknownItemNames(){
+		Set<String> result = new HashSet<>();
+		for (String itemName : _producers.keySet()) {
+			if(!_items.containsKey(itemName))
+				result.add(itemName);
+		}
+		for (String itemName : _consumers.keySet()) {
+			if(!_items.containsKey(itemName))
+				result.add(itemName);
+		}
+		return result;
+	}
+	
+	/**
+	 * Index an edited recipe again, dropping it if it lost its output.
+	 * 
+	 * @param recipe The edited recipe
+	 */
+	private synchronized void recipeChanged(Recipe recipe){
+		if(!unindexRecipe(recipe))
+			return;
+		
+		if(recipe.getOutputItemName() == null)
+			recipe.removeChangeListener(_listener);
+		else
+			indexRecipe(recipe);
+	}
+	/**
+	 * Index an edited item again, dropping it if it lost its name.
+	 * 
+	 * @param item The edited item
+	 */
+	private synchronized void itemChanged(Item item){
+		if(!unindexItem(item))
+			return;
+		
+		if(item.getItemName() == null)
+			item.removeChangeListener(_listener);
+		else
+			indexItem(item);
+	}
+	/**
+	 * Index a recipe by its current output and ingredients.
+	 * 
+	 * @param recipe The recipe
+	 */
+	private void indexRecipe(Recipe recipe){
+		IndexedRecipe indexed = new IndexedRecipe(recipe.getOutputItemName(), getIngredientNames(recipe));
+		invalidate(indexed.output, indexed.ingredients);
+		getOrCreate(_producers, indexed.output).add(recipe);
+		for (String ingredient : indexed.ingredients) {
+			getOrCreate(_consumers, ingredient).add(recipe);
+		}
+		_recipes.put(recipe, indexed);
+	}
+	/**
+	 * Remove a recipe from the names it was indexed under.
+	 * 
+	 * @param recipe The recipe
+	 * @return True if the recipe was indexed
+	 */
+	private boolean unindexRecipe(Recipe recipe){
+		IndexedRecipe indexed = _recipes.remove(recipe);
+		if(indexed == null)
+			return false;
+		
+		invalidate(indexed.output, indexed.ingredients);
+		removeFrom(_producers, indexed.output, recipe);
+		for (String ingredient : indexed.ingredients) {
+			removeFrom(_consumers, ingredient, recipe);
+		}
+		return true;
+	}
+	/**
+	 * Index an item by its current name and blueprints, replacing any item with the same name.
+	 * 
+	 * @param item The item
+	 */
+	private void indexItem(Item item){
+		Collection<String> blueprints = item.getBlueprintsLearnedOnPickup();
+		IndexedItem indexed = new IndexedItem(item.getItemName(),
+				blueprints == null ? new ArrayList<String>() : new ArrayList<>(blueprints));
+		Item previous = _items.get(indexed.name);
+		if(previous != null)
+			removeItem(previous);
+		
+		_items.put(indexed.name, item);
+		for (String blueprint : indexed.blueprints) {
+			getOrCreate(_blueprintSources, blueprint).add(item);
+		}
+		_indexedItems.put(item, indexed);
+	}
+	/**
+	 * Remove an item from the name and blueprints it was indexed under.
+	 * 
+	 * @param item The item
+	 * @return True if the item was indexed
+	 */
+	private boolean unindexItem(Item item){
+		IndexedItem indexed = _indexedItems.remove(item);
+		if(indexed == null)
+			return false;
+		
+		if(_items.get(indexed.name) == item)
+			_items.remove(indexed.name);
+		for (String blueprint : indexed.blueprints) {
+			removeFrom(_blueprintSources, blueprint, item);
+		}
+		return true;
+	}
+	/**
+	 * Forget the remembered queries a recipe change could affect.
+	 * The ingredient tree of an item changes only if it is, or needs, the
+	 * recipe output. What can be crafted from an item changes only if it
+	 * is, or leads to, one of the recipe ingredients.
+	 * 
+	 * @param output The output of the added or removed recipe
+	 * @param ingredients The ingredients of the added or removed recipe
+	 */
+	private void invalidate(String output, Set<String> ingredients){
+		
+		Iterator<Map.Entry<String, Set<String>>> iterator = _ingredientTreeCache.entrySet().iterator();
+		while(iterator.hasNext()){
+			Map.Entry<String, Set<String>> entry = iterator.next();
+			if(entry.getKey().equals(output) || entry.getValue().contains(output))
+				iterator.remove();
+		}
+		
+		iterator = _craftableFromCache.entrySet().iterator();
+		while(iterator.hasNext()){
+			Map.Entry<String, Set<String>> entry = iterator.next();
+			if(ingredients.contains(entry.getKey()) || !Collections.disjoint(entry.getValue(), ingredients))
+				iterator.remove();
+		}
+	}
+	/**
+	 * Collect every item reachable from an item.
+	 * 
+	 * @param itemName The item to start from
+	 * @param forward True to follow ingredients to outputs, false to follow outputs to ingredients
+	 * @return The reachable items, not including the start unless it is on a cycle
+	 */
+	private Set<String> traverse(String itemName, boolean forward){
+		Set<String> result = new HashSet<>();
+		Deque<String> pending = new ArrayDeque<>();
+		pending.push(itemName);
+		while(!pending.isEmpty()){
+			Set<Recipe> recipes = (forward ? _consumers : _producers).get(pending.pop());
+			if(recipes == null)
+				continue;
+			
+			for (Recipe recipe : recipes) {
+				if(forward){
+					String output = recipe.getOutputItemName();
+					if(result.add(output))
+						pending.push(output);
+				}
+				else{
+					for (String ingredient : getIngredientNames(recipe)) {
+						if(result.add(ingredient))
+							pending.push(ingredient);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the names of a recipe's ingredients.
+	 * 
+	 * @param recipe The recipe
+	 * @return The ingredient names
+	 */
+	private static Set<String> getIngredientNames(Recipe recipe){
+		Set<String> result = new HashSet<>();
+		for (Recipe.Ingredient ingredient : recipe.getInput()) {
+			if(ingredient != null && ingredient.getItemName() != null)
+				result.add(ingredient.getItemName());
+		}
+		return result;
+	}
+	/**
+	 * Get the set mapped to a key, creating it if needed.
+	 * 
+	 * @param map The map
+	 * @param key The key
+	 * @return The mapped set
+	 */
+	private static <T> Set<T> getOrCreate(Map<String, Set<T>> map, String key){
+		Set<T> result = map.get(key);
+		if(result == null){
+			result = new LinkedHashSet<>();
+			map.put(key, result);
+		}
+		return result;
+	}
+	/**
+	 * Remove a value from the set mapped to a key, dropping empty sets.
+	 * 
+	 * @param map The map
+	 * @param key The key
+	 * @param value The value to remove
+	 */
+	private static <T> void removeFrom(Map<String, Set<T>> map, String key, T value){
+		Set<T> values = map.get(key);
+		if(values == null)
+			return;
+		
+		values.remove(value);
+		if(values.isEmpty())
+			map.remove(key);
+	}
+	/**
+	 * Copy a set of recipes for returning to a caller.
+	 * 
+	 * @param recipes The recipes, may be null
+	 * @return An unmodifiable copy
+	 */
+	private static Set<Recipe> copy(Set<Recipe> recipes){
+		return recipes == null ? Collections.<Recipe>emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(recipes));
+	}
+	
+	/**
+	 * The names a recipe was indexed under.
+	 * 
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class IndexedRecipe{
+		public final String output;
+		public final Set<String> ingredients;
+		
+		public IndexedRecipe(String output, Set<String> ingredients){
+			this.output = output;
+			this.ingredients = ingredients;
+		}
+	}
+	/**
+	 * The names an item was indexed under.
+	 * 
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class IndexedItem{
+		public final String name;
+		public final List<String> blueprints;
+		
+		public IndexedItem(String name, List<String> blueprints){
+			this.name = name;
+			this.blueprints = blueprints;
+		}
+	}
+}
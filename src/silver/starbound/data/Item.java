@@ -5,12 +5,16 @@ import io.gsonfire.annotations.ExposeMethodResult;
 import io.gsonfire.annotations.ExposeMethodResult.ConflictResolutionStrategy;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 
+import silver.starbound.util.FileTransaction;
+import silver.starbound.util.JsonAssetCache;
+import silver.starbound.util.JsonDocument;
 import silver.starbound.util.JsonUtil;
 import silver.starbound.util.PathUtil;
 
@@ -18,7 +22,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
@@ -80,15 +84,56 @@ public class Item extends StarboundObject {
 			public Rarity read(JsonReader in) throws IOException {
 				if(in.peek() == JsonToken.STRING){
 					String stringValue = in.nextString().toUpperCase();
-					return Rarity.valueOf(stringValue);
+					try{
+						return Rarity.valueOf(stringValue);
+					}
+					catch(IllegalArgumentException ex){
+						// Rarities added by the game or mods, such as essential, are unknown
+						return null;
+					}
 				}
 				else{
+					in.skipValue();
 					return null;
 				}
 			}
 		}
 	}
 	
+	/**
+	 * The name of the item name property in change events.
+	 */
+	public static final String PROPERTY_ITEM_NAME = "itemName";
+	/**
+	 * The name of the rarity property in change events.
+	 */
+	public static final String PROPERTY_RARITY = "rarity";
+	/**
+	 * The name of the inventory icon file property in change events.
+	 */
+	public static final String PROPERTY_INVENTORY_ICON_FILE = "inventoryIconFile";
+	/**
+	 * The name of the unresolved inventory icon property in change events.
+	 */
+	public static final String PROPERTY_INVENTORY_ICON = "inventoryIcon";
+	/**
+	 * The name of the description property in change events.
+	 */
+	public static final String PROPERTY_DESCRIPTION = "description";
+	/**
+	 * The name of the short description property in change events.
+	 */
+	public static final String PROPERTY_SHORT_DESCRIPTION = "shortDescription";
+	/**
+	 * The name of the learned blueprints property in change events.
+	 */
+	public static final String PROPERTY_BLUEPRINTS_LEARNED_ON_PICKUP = "learnBlueprintsOnPickup";
+	
+	private static final String[] SERIALIZED_KEYS = {
+		PROPERTY_ITEM_NAME, PROPERTY_RARITY, PROPERTY_INVENTORY_ICON,
+		PROPERTY_DESCRIPTION, PROPERTY_SHORT_DESCRIPTION, PROPERTY_BLUEPRINTS_LEARNED_ON_PICKUP
+	};
+	
 	@SerializedName("itemName")					private String _itemName;
 	@SerializedName("rarity")					private Rarity _rarity;
 												private transient File _inventoryIconFile;
@@ -116,6 +161,24 @@ public class Item extends StarboundObject {
 	 */
 	public Item(File file, String itemName, Rarity rarity, File inventoryIconFile,
 			String description, String shortDescription, Collection<String> blueprintsLearnedOnPickup) {
+		this(file, itemName, rarity, inventoryIconFile, description, shortDescription, blueprintsLearnedOnPickup, -1, -1);
+	}
+	/**
+	 * Create a plain starbound item, as it was read from its file.
+	 * 
+	 * @param file The file associated with this item
+	 * @param itemName The name of the item 
+	 * @param rarity The rarity of the item
+	 * @param inventoryIconFile The inventory icon file of this item
+	 * @param description The description of this item
+	 * @param shortDescription The short description of this item
+	 * @param blueprintsLearnedOnPickup The blueprints learned on pickup
+	 * @param sourceLastModified The modification time of the file when it was read, -1 if unknown
+	 * @param sourceLength The length of the file when it was read, -1 if unknown
+	 */
+	public Item(File file, String itemName, Rarity rarity, File inventoryIconFile,
+			String description, String shortDescription, Collection<String> blueprintsLearnedOnPickup,
+			long sourceLastModified, long sourceLength) {
 		super(file);
 		
 		setItemName(itemName);
@@ -124,6 +187,7 @@ public class Item extends StarboundObject {
 		setDescription(description);
 		setShortDescription(shortDescription);
 		setBlueprintsLearnedOnPickup(blueprintsLearnedOnPickup);
+		setSourceStat(sourceLastModified, sourceLength);
 	}
 
 	/**
@@ -171,11 +235,13 @@ public class Item extends StarboundObject {
 	}
 	/**
 	 * Get the blueprints that are learned when this item is picked up.
+	 * The collection can not be changed, edits go through the setter so
+	 * they fire a change event.
 	 * 
 	 * @return The blueprints learned when the item is picked up
 	 */
 	public Collection<String> getBlueprintsLearnedOnPickup(){
-		return _blueprintsLearnedOnPickup;
+		return _blueprintsLearnedOnPickup == null ? null : Collections.unmodifiableCollection(_blueprintsLearnedOnPickup);
 	}
 	/**
 	 * Get the relative path to the icon file.
@@ -218,7 +284,9 @@ public class Item extends StarboundObject {
 	 * @param itemName The name of the item
 	 */
 	public void setItemName(String itemName) {
+		String oldItemName = _itemName;
 		this._itemName = itemName;
+		fireChange(PROPERTY_ITEM_NAME, oldItemName, itemName);
 	}
 	/**
 	 * Set the rarity value of this item.
@@ -226,7 +294,9 @@ public class Item extends StarboundObject {
 	 * @param rarity The rarity value of this item
 	 */
 	public void setRarity(Rarity rarity) {
+		Rarity oldRarity = _rarity;
 		this._rarity = rarity;
+		fireChange(PROPERTY_RARITY, oldRarity, rarity);
 	}
 	/**
 	 * Set the inventory icon file.
@@ -234,7 +304,9 @@ public class Item extends StarboundObject {
 	 * @param inventoryIconFile The inventory icon file
 	 */
 	public void setInventoryIconFile(File inventoryIconFile) {
+		File oldInventoryIconFile = _inventoryIconFile;
 		this._inventoryIconFile = inventoryIconFile;
+		fireChange(PROPERTY_INVENTORY_ICON_FILE, oldInventoryIconFile, inventoryIconFile);
 	}
 	/**
 	 * Set the description of the item.
@@ -243,7 +315,9 @@ public class Item extends StarboundObject {
 	 * @param description The description of the item
 	 */
 	public void setDescription(String description) {
+		String oldDescription = _description;
 		this._description = description;
+		fireChange(PROPERTY_DESCRIPTION, oldDescription, description);
 	}
 	/**
 	 * Set the item's short description.
@@ -253,7 +327,9 @@ public class Item extends StarboundObject {
 	 * @param shortDescription The item's short description
 	 */
 	public void setShortDescription(String _shortDescription) {
+		String oldShortDescription = this._shortDescription;
 		this._shortDescription = _shortDescription;
+		fireChange(PROPERTY_SHORT_DESCRIPTION, oldShortDescription, _shortDescription);
 	}
 	/**
 	 * Set the blueprints that are learned when this item is picked up.
@@ -261,9 +337,14 @@ public class Item extends StarboundObject {
 	 * @param blueprintsLearnedOnPickup The blueprints learned when the item is picked up
 	 */
 	public void setBlueprintsLearnedOnPickup(Collection<String> blueprintsLearnedOnPickup){
+		// Copied, so the caller can not change the item through its collection
 		if(blueprintsLearnedOnPickup == null)
 			blueprintsLearnedOnPickup = new ArrayList<String>();
+		else
+			blueprintsLearnedOnPickup = new ArrayList<String>(blueprintsLearnedOnPickup);
+		Collection<String> oldBlueprints = _blueprintsLearnedOnPickup;
 		this._blueprintsLearnedOnPickup = blueprintsLearnedOnPickup;
+		fireChange(PROPERTY_BLUEPRINTS_LEARNED_ON_PICKUP, oldBlueprints, blueprintsLearnedOnPickup);
 	}
 	/**
 	 * Set the relative path to the icon file.
@@ -272,7 +353,9 @@ public class Item extends StarboundObject {
 	 */
 	public void setInventoryIcon(String inventoryIcon){
 		if(inventoryIcon == null){
+			String oldInventoryIcon = _inventoryIconFileName;
 			_inventoryIconFileName = null;
+			fireChange(PROPERTY_INVENTORY_ICON, oldInventoryIcon, null);
 			setInventoryIconFile(null);
 		}
 		else{
@@ -283,11 +366,22 @@ public class Item extends StarboundObject {
 				setInventoryIconFile(new File(file, inventoryIcon));
 			}
 			else{
+				String oldInventoryIcon = _inventoryIconFileName;
 				_inventoryIconFileName = inventoryIcon;
+				fireChange(PROPERTY_INVENTORY_ICON, oldInventoryIcon, inventoryIcon);
 			}
 		}
 	}
 
+	/**
+	 * Create an immutable copy of the item.
+	 * 
+	 * @return A snapshot of the item
+	 */
+	public ItemSnapshot snapshot(){
+		return new ItemSnapshot(this);
+	}
+	
 	/**
 	 * A convience method for loading an item from file.
 	 * 
@@ -301,14 +395,183 @@ public class Item extends StarboundObject {
 		if(!file.isFile())
 			throw new IllegalArgumentException("Given path is not a file");
 		
+		long lastModified = file.lastModified();
+		long length = file.length();
 		try {
-			Item result = JsonUtil.getGsonInstance().fromJson(new FileReader(file), Item.class);
+			Item result = JsonUtil.getGsonInstance().fromJson(JsonAssetCache.getDefault().get(file), Item.class);
+			if(result == null)
+				result = new Item();
+			result.setFile(file);
+			result.setSourceStat(lastModified, length);
+			return result;
+		} catch (JsonParseException | IllegalStateException | IllegalArgumentException | ClassCastException e) {
+			throw new IOException("Could not read item " + file + ": " + e.getMessage(), e);
+		}
+	}
+	/**
+	 * Save the item into its file.
+	 * 
+	 * @throws IOException If there was an error writing the file
+	 */
+	public void saveToFile() throws IOException{
+		if(getFile() == null)
+			throw new IllegalStateException("Item has no file");
+		
+		saveToFile(getFile());
+	}
+	/**
+	 * Save the item into a file as pretty printed json.
+	 * 
+	 * @param file The file to save into
+	 * @throws IOException If there was an error writing the file
+	 */
+	public void saveToFile(File file) throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			saveToFile(file, transaction, false);
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Stage saving the item into a file as part of a transaction.
+	 * The file is only replaced when the transaction is committed.
+	 * 
+	 * @param file The file to save into
+	 * @param transaction The transaction to stage the write in
+	 * @param compact True to write the json without whitespace
+	 * @throws IOException If there was an error writing the file
+	 */
+	public void saveToFile(File file, FileTransaction transaction, boolean compact) throws IOException{
+		if(file == null)
+			throw new NullPointerException("File is null");
+		
+		Writer writer = transaction.openWriter(file);
+		try{
+			writeTo(writer, compact);
+			writer.close();
+		}
+		catch(IOException | RuntimeException ex){
+			transaction.unstage(file);
+			throw ex;
+		}
+	}
+	/**
+	 * Save the item into its file, rewriting only the values that changed.
+	 * 
+	 * @return True if the file was written
+	 * @throws IOException If there was an error reading or writing the file
+	 */
+	public boolean saveInPlace() throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			boolean result = saveInPlace(transaction);
+			transaction.commit();
+			return result;
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Stage saving the item into its file, rewriting only the values that changed.
+	 * The item is compared with the content of its file, and only the spans
+	 * of differing values are replaced, keeping comments, formatting and
+	 * members unknown to the item. A file that does not exist yet is
+	 * written as pretty printed json.
+	 * 
+	 * @param transaction The transaction to stage the write in
+	 * @return True if the file was staged, false if nothing changed
+	 * @throws IOException If there was an error reading or writing the file
+	 */
+	public boolean saveInPlace(FileTransaction transaction) throws IOException{
+		File file = getFile();
+		if(file == null)
+			throw new IllegalStateException("Item has no file");
+		
+		JsonDocument document = file.isFile() ? JsonDocument.load(file) : null;
+		if(document == null || document.getRoot().getType() != JsonDocument.Type.OBJECT){
+			saveToFile(file, transaction, false);
+			return true;
+		}
+		
+		// Comparing with the item as stored keeps defaults filled in on load from being written
+		JsonReader reader = new JsonReader(new StringReader(document.getSourceText(document.getRoot())));
+		reader.setLenient(true);
+		JsonObject stored = toJsonObject(readFrom(reader, file));
+		JsonObject current = toJsonObject(this);
+		
+		for (String key : SERIALIZED_KEYS) {
+			JsonElement value = current.get(key);
+			if(value == null ? stored.get(key) == null : value.equals(stored.get(key)))
+				continue;
+			
+			if(value == null || value.isJsonNull())
+				document.remove(key);
+			else
+				document.set(value, key);
+		}
+		
+		return document.save(file, transaction);
+	}
+	/**
+	 * Stream the item as json into a writer.
+	 * The writer is flushed but not closed.
+	 * 
+	 * @param writer The writer to write into
+	 * @param compact True to write the json without whitespace
+	 * @throws IOException If there was an error writing
+	 */
+	public void writeTo(Writer writer, boolean compact) throws IOException{
+		JsonWriter jsonWriter = new JsonWriter(writer);
+		if(!compact)
+			jsonWriter.setIndent("  ");
+		writeTo(jsonWriter);
+		jsonWriter.flush();
+	}
+	/**
+	 * Stream the item as a json value into a json writer.
+	 * 
+	 * @param writer The json writer to write into
+	 * @throws IOException If there was an error writing
+	 */
+	public void writeTo(JsonWriter writer) throws IOException{
+		try{
+			JsonUtil.getCompactGsonInstance().toJson(this, Item.class, writer);
+		}
+		catch(JsonIOException e){
+			throw new IOException(e);
+		}
+	}
+	/**
+	 * Convert an item into a json object.
+	 * 
+	 * @param item The item to convert
+	 * @return The json object, without members for null values
+	 */
+	private static JsonObject toJsonObject(Item item){
+		JsonElement result = JsonUtil.getCompactGsonInstance().toJsonTree(item, Item.class);
+		return result.isJsonObject() ? result.getAsJsonObject() : new JsonObject();
+	}
+	/**
+	 * Read an item from the next json value of a json reader.
+	 * 
+	 * @param reader The json reader to read from
+	 * @param file The file associated with the item, may be null
+	 * @return The item read
+	 * @throws IOException If the json value is not a valid item
+	 */
+	public static Item readFrom(JsonReader reader, File file) throws IOException{
+		try{
+			Item result = JsonUtil.getCompactGsonInstance().fromJson(reader, Item.class);
 			if(result == null)
 				result = new Item();
 			result.setFile(file);
 			return result;
-		} catch (JsonSyntaxException | JsonIOException | FileNotFoundException e) {
-			e.printStackTrace();
+		}
+		catch(JsonParseException | IllegalStateException | ClassCastException e){
 			throw new IOException(e);
 		}
 	}
@@ -323,8 +586,10 @@ public class Item extends StarboundObject {
 		@Override
 		public void postDeserialize(Item result, JsonElement src, Gson gson) {
 			JsonObject srcObject = src.getAsJsonObject();
-			if(srcObject.has("inventoryIcon")){
-				result.setInventoryIcon(srcObject.get("inventoryIcon").getAsString());
+			// Icons made of several image layers are arrays or objects, only plain paths are kept
+			JsonElement inventoryIcon = srcObject.get("inventoryIcon");
+			if(inventoryIcon != null && inventoryIcon.isJsonPrimitive() && inventoryIcon.getAsJsonPrimitive().isString()){
+				result.setInventoryIcon(inventoryIcon.getAsString());
 			}
 		}
 
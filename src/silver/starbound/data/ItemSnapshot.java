@@ -0,0 +1,155 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import silver.starbound.data.Item.Rarity;
+
+/**
+ * An immutable copy of an item.
+ * Snapshots can be shared between threads without locking.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public final class ItemSnapshot {
+	private final File _file;
+	private final String _itemName;
+	private final Rarity _rarity;
+	private final File _inventoryIconFile;
+	private final String _inventoryIcon;
+	private final String _description;
+	private final String _shortDescription;
+	private final List<String> _blueprintsLearnedOnPickup;
+	
+	/**
+	 * Copy the current state of an item.
+	 * 
+	 * @param item The item to copy
+	 */
+	public ItemSnapshot(Item item){
+		_file = item.getFile();
+		_itemName = item.getItemName();
+		_rarity = item.getRarity();
+		_inventoryIconFile = item.getInventoryIconFile();
+		_inventoryIcon = item.getInventoryIcon();
+		_description = item.getDescription();
+		_shortDescription = item.getShortDescription();
+		_blueprintsLearnedOnPickup = copy(item.getBlueprintsLearnedOnPickup());
+	}
+	
+	/**
+	 * Get the file that held the item.
+	 * 
+	 * @return The file of the item
+	 */
+	public File getFile(){
+		return _file;
+	}
+	/**
+	 * Get the name of the item.
+	 * 
+	 * @return The name of the item
+	 */
+	public String getItemName(){
+		return _itemName;
+	}
+	/**
+	 * Get the rarity value of the item.
+	 * 
+	 * @return The rarity value of the item
+	 */
+	public Rarity getRarity(){
+		return _rarity;
+	}
+	/**
+	 * Get the inventory icon file.
+	 * 
+	 * @return The inventory icon file
+	 */
+	public File getInventoryIconFile(){
+		return _inventoryIconFile;
+	}
+	/**
+	 * Get the relative path to the icon file.
+	 * 
+	 * @return The relative path to the icon file
+	 */
+	public String getInventoryIcon(){
+		return _inventoryIcon;
+	}
+	/**
+	 * Get the description of the item.
+	 * 
+	 * @return The description of the item
+	 */
+	public String getDescription(){
+		return _description;
+	}
+	/**
+	 * Get the item's short description.
+	 * 
+	 * @return The item's short description
+	 */
+	public String getShortDescription(){
+		return _shortDescription;
+	}
+	/**
+	 * Get the blueprints that are learned when the item is picked up.
+	 * 
+	 * @return An unmodifiable list of the blueprints
+	 */
+	public List<String> getBlueprintsLearnedOnPickup(){
+		return _blueprintsLearnedOnPickup;
+	}
+	
+	/**
+	 * Create a mutable item with the state of this snapshot.
+	 * 
+	 * @return A new item
+	 */
+	public Item toItem(){
+		Item result = new Item(_file, _itemName, _rarity, _inventoryIconFile,
+				_description, _shortDescription, _blueprintsLearnedOnPickup);
+		if(_inventoryIconFile == null)
+			result.setInventoryIcon(_inventoryIcon);
+		return result;
+	}
+	
+	/**
+	 * Copy a collection into an unmodifiable list.
+	 * 
+	 * @param values The values, may be null
+	 * @return An unmodifiable copy
+	 */
+	static List<String> copy(Collection<String> values){
+		if(values == null)
+			return Collections.emptyList();
+		return Collections.unmodifiableList(new ArrayList<>(values));
+	}
+}
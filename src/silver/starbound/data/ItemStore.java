@@ -0,0 +1,591 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import silver.starbound.data.Item.Rarity;
+
+/**
+ * A compact column store for very large item catalogs.
+ * Rarities are kept in a byte array, text in one shared utf-8 buffer
+ * addressed by offsets, and blueprints and folders as interned ids in
+ * packed int arrays. Scans over a column touch only that column.
+ * <p>
+ * Rows are only appended. The store is not thread safe while items are
+ * added, but may be read from many threads once filled.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class ItemStore {
+	private static final int NAME = 0;
+	private static final int DESCRIPTION = 1;
+	private static final int SHORT_DESCRIPTION = 2;
+	private static final int INVENTORY_ICON = 3;
+	private static final int FILE_NAME = 4;
+	private static final int STRING_COLUMNS = 5;
+	
+	private static final byte NO_RARITY = -1;
+	private static final int NO_VALUE = -1;
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int BYTES_PER_ROW = 64;
+	
+	private final boolean _direct;
+	private int _size;
+	private byte[] _rarities;
+	private final int[][] _stringOffsets;
+	private final int[][] _stringLengths;
+	private int[] _folders;
+	private int[] _blueprintStarts;
+	private int[] _blueprints;
+	private int _blueprintCount;
+	private ByteBuffer _text;
+	private final List<String> _symbols;
+	private final Map<String, Integer> _symbolIds;
+	
+	/**
+	 * Create an empty item store on the heap.
+	 */
+	public ItemStore(){
+		this(DEFAULT_CAPACITY, false);
+	}
+	/**
+	 * Create an empty item store.
+	 * 
+	 * @param capacity The expected number of items
+	 * @param direct True to keep the text buffer outside of the heap
+	 */
+	public ItemStore(int capacity, boolean direct){
+		if(capacity < 1)
+			capacity = 1;
+		
+		_direct = direct;
+		_size = 0;
+		_rarities = new byte[capacity];
+		_stringOffsets = new int[STRING_COLUMNS][capacity];
+		_stringLengths = new int[STRING_COLUMNS][capacity];
+		_folders = new int[capacity];
+		_blueprintStarts = new int[capacity + 1];
+		_blueprints = new int[capacity];
+		_blueprintCount = 0;
+		_text = allocate(capacity * BYTES_PER_ROW);
+		_symbols = new ArrayList<>();
+		_symbolIds = new HashMap<>();
+	}
+	
+	/**
+	 * Add a copy of an item to the store.
+	 * 
+	 * @param item The item to add
+	 * @return The row of the added item
+	 */
+	public int add(Item item){
+		ensureCapacity(_size + 1);
+		int row = _size;
+		
+		_rarities[row] = item.getRarity() == null ? NO_RARITY : (byte)item.getRarity().ordinal();
+		putString(NAME, row, item.getItemName());
+		putString(DESCRIPTION, row, item.getDescription());
+		putString(SHORT_DESCRIPTION, row, item.getShortDescription());
+		putString(INVENTORY_ICON, row, item.getInventoryIcon());
+		
+		File file = item.getFile();
+		if(file == null){
+			_folders[row] = NO_VALUE;
+			putString(FILE_NAME, row, null);
+		}
+		else{
+			File folder = file.getParentFile();
+			_folders[row] = folder == null ? NO_VALUE : intern(folder.getPath());
+			putString(FILE_NAME, row, file.getName());
+		}
+		
+		for (String blueprint : item.getBlueprintsLearnedOnPickup()) {
+			if(_blueprintCount == _blueprints.length)
+				_blueprints = Arrays.copyOf(_blueprints, _blueprints.length * 2);
+			_blueprints[_blueprintCount++] = intern(blueprint);
+		}
+		_blueprintStarts[row + 1] = _blueprintCount;
+		
+		_size++;
+		return row;
+	}
+	/**
+	 * Add copies of many items to the store.
+	 * 
+	 * @param items The items to add
+	 */
+	public void addAll(Iterable<Item> items){
+		for (Item item : items) {
+			add(item);
+		}
+	}
+	
+	/**
+	 * Get the number of items in the store.
+	 * 
+	 * @return The number of items
+	 */
+	public int size(){
+		return _size;
+	}
+	/**
+	 * Get the number of bytes used by the text buffer.
+	 * 
+	 * @return The size of the text
+	 */
+	public int getTextSize(){
+		return _text.position();
+	}
+	/**
+	 * Check if the text buffer is kept outside of the heap.
+	 * 
+	 * @return True if the text buffer is direct
+	 */
+	public boolean isDirect(){
+		return _direct;
+	}
+	/**
+	 * Get the name of an item.
+	 * 
+	 * @param row The row of the item
+	 * @return The name of the item
+	 */
+	public String getItemName(int row){
+		return getString(NAME, row);
+	}
+	/**
+	 * Get the rarity of an item.
+	 * 
+	 * @param row The row of the item
+	 * @return The rarity of the item
+	 */
+	public Rarity getRarity(int row){
+		checkRow(row);
+		byte rarity = _rarities[row];
+		return rarity == NO_RARITY ? null : Rarity.values()[rarity];
+	}
+	/**
+	 * Get the description of an item.
+	 * 
+	 * @param row The row of the item
+	 * @return The description of the item
+	 */
+	public String getDescription(int row){
+		return getString(DESCRIPTION, row);
+	}
+	/**
+	 * Get the short description of an item.
+	 * 
+	 * @param row The row of the item
+	 * @return The short description of the item
+	 */
+	public String getShortDescription(int row){
+		return getString(SHORT_DESCRIPTION, row);
+	}
+	/**
+	 * Get the relative path to the icon file of an item.
+	 * 
+	 * @param row The row of the item
+	 * @return The relative path to the icon file
+	 */
+	public String getInventoryIcon(int row){
+		return getString(INVENTORY_ICON, row);
+	}
+	/**
+	 * Get the file of an item.
+	 * 
+	 * @param row The row of the item
+	 * @return The file of the item, null if it has none
+	 */
+	public File getFile(int row){
+		String name = getString(FILE_NAME, row);
+		if(name == null)
+			return null;
+		
+		int folder = _folders[row];
+		return folder == NO_VALUE ? new File(name) : new File(_symbols.get(folder), name);
+	}
+	/**
+	 * Get the blueprints learned when an item is picked up.
+	 * 
+	 * @param row The row of the item
+	 * @return A new list of the blueprints
+	 */
+	public List<String> getBlueprintsLearnedOnPickup(int row){
+		checkRow(row);
+		int start = _blueprintStarts[row];
+		int end = _blueprintStarts[row + 1];
+		List<String> result = new ArrayList<>(end - start);
+		for (int i = start; i < end; i++) {
+			result.add(_symbols.get(_blueprints[i]));
+		}
+		return result;
+	}
+	/**
+	 * Change the rarity of an item.
+	 * 
+	 * @param row The row of the item
+	 * @param rarity The new rarity
+	 */
+	public void setRarity(int row, Rarity rarity){
+		checkRow(row);
+		_rarities[row] = rarity == null ? NO_RARITY : (byte)rarity.ordinal();
+	}
+	/**
+	 * Create a standalone item from a row.
+	 * 
+	 * @param row The row of the item
+	 * @return A new item
+	 */
+	public Item toItem(int row){
+		Item result = new Item(null, getItemName(row), getRarity(row), null,
+				getDescription(row), getShortDescription(row), getBlueprintsLearnedOnPickup(row));
+		result.setFile(getFile(row));
+		result.setInventoryIcon(getInventoryIcon(row));
+		return result;
+	}
+	/**
+	 * Create a cursor positioned before the first row.
+	 * 
+	 * @return A new cursor
+	 */
+	public Cursor cursor(){
+		return new Cursor();
+	}
+	
+	/**
+	 * Find the first item with a name.
+	 * Names are compared as utf-8 bytes, without decoding the text.
+	 * 
+	 * @param itemName The name of the item
+	 * @return The row of the item, -1 if not found
+	 */
+	public int indexOf(String itemName){
+		byte[] needle = itemName.getBytes(StandardCharsets.UTF_8);
+		int[] offsets = _stringOffsets[NAME];
+		int[] lengths = _stringLengths[NAME];
+		for (int row = 0; row < _size; row++) {
+			if(lengths[row] == needle.length && textEquals(offsets[row], needle))
+				return row;
+		}
+		return -1;
+	}
+	/**
+	 * Find every item of a rarity.
+	 * 
+	 * @param rarity The rarity, null for items without one
+	 * @return The rows of the items
+	 */
+	public int[] findByRarity(Rarity rarity){
+		byte value = rarity == null ? NO_RARITY : (byte)rarity.ordinal();
+		int[] result = new int[16];
+		int count = 0;
+		for (int row = 0; row < _size; row++) {
+			if(_rarities[row] == value){
+				if(count == result.length)
+					result = Arrays.copyOf(result, count * 2);
+				result[count++] = row;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+	/**
+	 * Count the items of each rarity.
+	 * 
+	 * @return The counts, indexed by rarity ordinal
+	 */
+	public int[] countByRarity(){
+		int[] result = new int[Rarity.values().length];
+		for (int row = 0; row < _size; row++) {
+			byte rarity = _rarities[row];
+			if(rarity != NO_RARITY)
+				result[rarity]++;
+		}
+		return result;
+	}
+	/**
+	 * Find every item that teaches a blueprint when picked up.
+	 * 
+	 * @param blueprint The blueprint name
+	 * @return The rows of the items
+	 */
+	public int[] findLearning(String blueprint){
+		Integer id = _symbolIds.get(blueprint);
+		if(id == null)
+			return new int[0];
+		
+		int[] result = new int[16];
+		int count = 0;
+		int row = 0;
+		for (int i = 0; i < _blueprintCount; i++) {
+			if(_blueprints[i] != id)
+				continue;
+			
+			while(_blueprintStarts[row + 1] <= i)
+				row++;
+			if(count == 0 || result[count - 1] != row){
+				if(count == result.length)
+					result = Arrays.copyOf(result, count * 2);
+				result[count++] = row;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+	
+	/**
+	 * Grow every column to hold the given number of rows.
+	 * 
+	 * @param capacity The number of rows needed
+	 */
+	private void ensureCapacity(int capacity){
+		if(capacity <= _rarities.length)
+			return;
+		
+		int newCapacity = Math.max(capacity, _rarities.length * 2);
+		_rarities = Arrays.copyOf(_rarities, newCapacity);
+		for (int column = 0; column < STRING_COLUMNS; column++) {
+			_stringOffsets[column] = Arrays.copyOf(_stringOffsets[column], newCapacity);
+			_stringLengths[column] = Arrays.copyOf(_stringLengths[column], newCapacity);
+		}
+		_folders = Arrays.copyOf(_folders, newCapacity);
+		_blueprintStarts = Arrays.copyOf(_blueprintStarts, newCapacity + 1);
+	}
+	/**
+	 * Append a string to the text buffer.
+	 * 
+	 * @param column The string column
+	 * @param row The row of the item
+	 * @param value The string, may be null
+	 */
+	private void putString(int column, int row, String value){
+		if(value == null){
+			_stringOffsets[column][row] = NO_VALUE;
+			_stringLengths[column][row] = NO_VALUE;
+			return;
+		}
+		
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if(_text.remaining() < bytes.length){
+			long needed = (long)_text.position() + bytes.length;
+			if(needed > Integer.MAX_VALUE)
+				throw new IllegalStateException("Item store text is full");
+			
+			ByteBuffer grown = allocate((int)Math.min(Integer.MAX_VALUE, Math.max(needed, (long)_text.capacity() * 2)));
+			_text.flip();
+			grown.put(_text);
+			_text = grown;
+		}
+		
+		_stringOffsets[column][row] = _text.position();
+		_stringLengths[column][row] = bytes.length;
+		_text.put(bytes);
+	}
+	/**
+	 * Decode a string from the text buffer.
+	 * 
+	 * @param column The string column
+	 * @param row The row of the item
+	 * @return The string, null if none
+	 */
+	private String getString(int column, int row){
+		checkRow(row);
+		int offset = _stringOffsets[column][row];
+		int length = _stringLengths[column][row];
+		if(offset == NO_VALUE)
+			return null;
+		
+		if(_text.hasArray())
+			return new String(_text.array(), _text.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+		
+		byte[] bytes = new byte[length];
+		ByteBuffer view = _text.duplicate();
+		view.position(offset);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	/**
+	 * Compare bytes of the text buffer with a value.
+	 * 
+	 * @param offset The offset in the text buffer
+	 * @param value The bytes to compare with
+	 * @return True if equal
+	 */
+	private boolean textEquals(int offset, byte[] value){
+		for (int i = 0; i < value.length; i++) {
+			if(_text.get(offset + i) != value[i])
+				return false;
+		}
+		return true;
+	}
+	/**
+	 * Get the id of an interned string, adding it if new.
+	 * 
+	 * @param value The string
+	 * @return The id of the string
+	 */
+	private int intern(String value){
+		Integer id = _symbolIds.get(value);
+		if(id == null){
+			id = _symbols.size();
+			_symbols.add(value);
+			_symbolIds.put(value, id);
+		}
+		return id;
+	}
+	/**
+	 * Check that a row exists.
+	 * 
+	 * @param row The row
+	 */
+	private void checkRow(int row){
+		if(row < 0 || row >= _size)
+			throw new IndexOutOfBoundsException("Row " + row + " of " + _size);
+	}
+	/**
+	 * Allocate a text buffer.
+	 * 
+	 * @param capacity The capacity of the buffer
+	 * @return The new buffer
+	 */
+	private ByteBuffer allocate(int capacity){
+		return _direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+	
+	/**
+	 * A reusable view of one row of the store.
+	 * Moving the cursor does not create any objects, values are only
+	 * decoded when asked for.
+	 * 
+	 * @author SilverFishCat
+	 *
+	 */
+	public class Cursor{
+		private int _row;
+		
+		private Cursor(){
+			_row = -1;
+		}
+		
+		/**
+		 * Move to the next row.
+		 * 
+		 * @return True if there is a next row
+		 */
+		public boolean next(){
+			if(_row + 1 >= _size)
+				return false;
+			_row++;
+			return true;
+		}
+		/**
+		 * Move to a row.
+		 * 
+		 * @param row The row
+		 */
+		public void moveTo(int row){
+			checkRow(row);
+			_row = row;
+		}
+		/**
+		 * Get the current row.
+		 * 
+		 * @return The current row
+		 */
+		public int getRow(){
+			return _row;
+		}
+		/**
+		 * Get the name of the current item.
+		 * 
+		 * @return The name of the item
+		 */
+		public String getItemName(){
+			return ItemStore.this.getItemName(_row);
+		}
+		/**
+		 * Get the rarity of the current item.
+		 * 
+		 * @return The rarity of the item
+		 */
+		public Rarity getRarity(){
+			return ItemStore.this.getRarity(_row);
+		}
+		/**
+		 * Get the description of the current item.
+		 * 
+		 * @return The description of the item
+		 */
+		public String getDescription(){
+			return ItemStore.this.getDescription(_row);
+		}
+		/**
+		 * Get the short description of the current item.
+		 * 
+		 * @return The short description of the item
+		 */
+		public String getShortDescription(){
+			return ItemStore.this.getShortDescription(_row);
+		}
+		/**
+		 * Get the relative path to the icon file of the current item.
+		 * 
+		 * @return The relative path to the icon file
+		 */
+		public String getInventoryIcon(){
+			return ItemStore.this.getInventoryIcon(_row);
+		}
+		/**
+		 * Get the file of the current item.
+		 * 
+		 * @return The file of the item
+		 */
+		public File getFile(){
+			return ItemStore.this.getFile(_row);
+		}
+		/**
+		 * Get the blueprints learned when the current item is picked up.
+		 * 
+		 * @return A new list of the blueprints
+		 */
+		public List<String> getBlueprintsLearnedOnPickup(){
+			return ItemStore.this.getBlueprintsLearnedOnPickup(_row);
+		}
+		/**
+		 * Create a standalone item from the current row.
+		 * 
+		 * @return A new item
+		 */
+		public Item toItem(){
+			return ItemStore.this.toItem(_row);
+		}
+	}
+}
@@ -0,0 +1,234 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import silver.starbound.data.Item.Rarity;
+import silver.starbound.util.ExecutorUtil;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * The fields of an item shown in listings.
+ * A summary is read by streaming the item file only until its name,
+ * rarity and icon are found, so descriptions and the rest of the
+ * file are never parsed.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class ItemSummary {
+	private static final String ITEM_NAME_KEY = "itemName";
+	private static final String RARITY_KEY = "rarity";
+	private static final String INVENTORY_ICON_KEY = "inventoryIcon";
+	private static final int FIELD_COUNT = 3;
+	
+	private final File _file;
+	private final String _itemName;
+	private final Rarity _rarity;
+	private final String _inventoryIcon;
+	
+	/**
+	 * Create an item summary.
+	 * 
+	 * @param file The file of the item
+	 * @param itemName The name of the item
+	 * @param rarity The rarity of the item
+	 * @param inventoryIcon The relative path to the icon file
+	 */
+	public ItemSummary(File file, String itemName, Rarity rarity, String inventoryIcon){
+		_file = file;
+		_itemName = itemName;
+		_rarity = rarity;
+		_inventoryIcon = inventoryIcon;
+	}
+	
+	/**
+	 * Get the file of the item.
+	 * 
+	 * @return The file of the item
+	 */
+	public File getFile(){
+		return _file;
+	}
+	/**
+	 * Get the name of the item.
+	 * 
+	 * @return The name of the item, null if the file has none
+	 */
+	public String getItemName(){
+		return _itemName;
+	}
+	/**
+	 * Get the rarity of the item.
+	 * 
+	 * @return The rarity of the item, null if the file has none
+	 */
+	public Rarity getRarity(){
+		return _rarity;
+	}
+	/**
+	 * Get the relative path to the icon file.
+	 * 
+	 * @return The relative path to the icon file, null if the file has none
+	 */
+	public String getInventoryIcon(){
+		return _inventoryIcon;
+	}
+	/**
+	 * Get the inventory icon file.
+	 * 
+	 * @return The inventory icon file, null if the file has none
+	 */
+	public File getInventoryIconFile(){
+		if(_inventoryIcon == null)
+			return null;
+		
+		return _file == null ? new File(_inventoryIcon) : new File(_file.getParentFile(), _inventoryIcon);
+	}
+	/**
+	 * Load the full item this summary was read from.
+	 * 
+	 * @return The loaded item
+	 * @throws IOException If there was an error in the file
+	 */
+	public Item loadItem() throws IOException{
+		if(_file == null)
+			throw new IllegalStateException("Summary has no file");
+		
+		return Item.loadFromFile(_file);
+	}
+	
+	@Override
+	public String toString() {
+		return _itemName;
+	}
+	
+	/**
+	 * Read the summary of an item file.
+	 * 
+	 * @param file The item file
+	 * @return The item summary
+	 * @throws IOException If the file could not be read or is not a json object
+	 */
+	public static ItemSummary loadFromFile(File file) throws IOException{
+		if(file == null)
+			throw new NullPointerException("File is null");
+		
+		if(!file.isFile())
+			throw new IllegalArgumentException("Given path is not a file");
+		
+		// The json reader buffers by itself, and stops reading the file early
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			return readFrom(new JsonReader(reader), file);
+		} catch (JsonParseException | IllegalStateException e) {
+			throw new IOException(e);
+		}
+	}
+	/**
+	 * Read the summaries of many item files in parallel.
+	 * 
+	 * @param files The item files
+	 * @return The item summaries, in the order of the files
+	 * @throws IOException If a file could not be read
+	 */
+	public static List<ItemSummary> loadFromFiles(Collection<File> files) throws IOException{
+		List<Callable<ItemSummary>> tasks = new ArrayList<>(files.size());
+		for (final File file : files) {
+			tasks.add(new Callable<ItemSummary>() {
+				@Override
+				public ItemSummary call() throws IOException {
+					return loadFromFile(file);
+				}
+			});
+		}
+		
+		return ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), tasks);
+	}
+	/**
+	 * Read a summary from a json reader positioned before an item object.
+	 * Reading stops as soon as every summary field was found.
+	 * 
+	 * @param reader The json reader
+	 * @param file The file of the item
+	 * @return The item summary
+	 * @throws IOException If there was an error reading
+	 */
+	public static ItemSummary readFrom(JsonReader reader, File file) throws IOException{
+		reader.setLenient(true);
+		
+		String itemName = null;
+		Rarity rarity = null;
+		String inventoryIcon = null;
+		int found = 0;
+		
+		reader.beginObject();
+		while(found < FIELD_COUNT && reader.hasNext()){
+			String name = reader.nextName();
+			if(name.equals(ITEM_NAME_KEY) && itemName == null && reader.peek() == JsonToken.STRING){
+				itemName = reader.nextString();
+				found++;
+			}
+			else if(name.equals(RARITY_KEY) && rarity == null && reader.peek() == JsonToken.STRING){
+				rarity = readRarity(reader.nextString());
+				found++;
+			}
+			else if(name.equals(INVENTORY_ICON_KEY) && inventoryIcon == null && reader.peek() == JsonToken.STRING){
+				inventoryIcon = reader.nextString();
+				found++;
+			}
+			else{
+				reader.skipValue();
+			}
+		}
+		
+		return new ItemSummary(file, itemName, rarity, inventoryIcon);
+	}
+	
+	/**
+	 * Parse a rarity value, ignoring unknown values.
+	 * 
+	 * @param value The json rarity value
+	 * @return The rarity, null if unknown
+	 */
+	private static Rarity readRarity(String value){
+		try{
+			return Rarity.valueOf(value.toUpperCase());
+		}
+		catch(IllegalArgumentException ex){
+			return null;
+		}
+	}
+}
@@ -22,10 +22,17 @@
 
 package silver.starbound.data;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import silver.starbound.util.FileStatCache;
+import silver.starbound.util.FileTransaction;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
@@ -47,9 +54,27 @@ public class Mod {
 	private static final String JSON_FOLDER_PATH_KEY = "folder";
 	private static final String JSON_MOD_INFO_KEY = "modinfo_filename";
 	
+	/**
+	 * The name of the mod name property in change events.
+	 */
+	public static final String PROPERTY_NAME = "name";
+	/**
+	 * The name of the folder property in change events.
+	 */
+	public static final String PROPERTY_FOLDER = "folder";
+	/**
+	 * The name of the modinfo filename property in change events.
+	 */
+	public static final String PROPERTY_MOD_INFO_FILENAME = "modInfoFilename";
+	/**
+	 * The name of the modinfo object property in change events.
+	 */
+	public static final String PROPERTY_MOD_INFO = "modInfo";
+	
 	private File _folder;
 	private String _modInfoFilename;
 	private ModInfo _modInfo;
+	private ChangeSupport _changeSupport;
 	
 	/**
 	 * Create a new mod details container.
@@ -116,13 +141,27 @@ public class Mod {
 		return _modInfo;
 	}
 	
+	/**
+	 * Set the underlying modinfo object.
+	 * 
+	 * @param modInfo The new modinfo object
+	 */
+	public void setModInfo(ModInfo modInfo){
+		if(modInfo == null)
+			modInfo = new ModInfo();
+		ModInfo oldModInfo = _modInfo;
+		this._modInfo = modInfo;
+		fireChange(PROPERTY_MOD_INFO, oldModInfo, modInfo);
+	}
 	/**
 	 * Set the name of the mod.
 	 * 
 	 * @param name The new name of the mod
 	 */
 	public void setName(String name) {
+		String oldName = getName();
 		this._modInfo.setModName(name);
+		fireChange(PROPERTY_NAME, oldName, getName());
 	}
 	/**
 	 * Set the folder of the mod.
@@ -130,7 +169,9 @@ public class Mod {
 	 * @param folder The folder of the mod
 	 */
 	public void setFolder(File folder) {
+		File oldFolder = _folder;
 		this._folder = folder;
+		fireChange(PROPERTY_FOLDER, oldFolder, folder);
 	}
 	/**
 	 * Set the modinfo file name.
@@ -138,7 +179,9 @@ public class Mod {
 	 * @param modInfoFilename The name of the mod info file
 	 */
 	public void setModInfoFilename(String modInfoFilename) {
+		String oldModInfoFilename = _modInfoFilename;
 		this._modInfoFilename = modInfoFilename;
+		fireChange(PROPERTY_MOD_INFO_FILENAME, oldModInfoFilename, modInfoFilename);
 	}
 	
 	/**
@@ -155,7 +198,7 @@ public class Mod {
 	 * @return True if the folder is not null and is a directory
 	 */
 	public boolean isFolderValid(){
-		return getFolder() != null && getFolder().isDirectory();
+		return FileStatCache.getDefault().isDirectory(getFolder());
 	}
 	public boolean isModInfoFilenameValid(){
 		return _modInfoFilename != null && !_modInfoFilename.trim().isEmpty();
@@ -169,6 +212,79 @@ public class Mod {
 		return isFolderValid() && isModInfoFilenameValid();
 	}
 	
+	/**
+	 * Replace the underlying modinfo object with the content of the modinfo file.
+	 * Nothing is changed if the modinfo file does not exist.
+	 * 
+	 * @return True if the modinfo file was loaded
+	 * @throws IOException If there was an error in the modinfo file
+	 */
+	public boolean loadModInfo() throws IOException{
+		File modinfoFile = getModinfoFile();
+		if(modinfoFile == null || !modinfoFile.isFile())
+			return false;
+		
+		setModInfo(ModInfo.loadFromFile(modinfoFile));
+		return true;
+	}
+	
+	/**
+	 * Add a listener for changes of this mod.
+	 * 
+	 * @param listener The listener to add
+	 */
+	public void addChangeListener(ChangeListener listener){
+		if(_changeSupport == null)
+			_changeSupport = new ChangeSupport();
+		_changeSupport.addListener(listener);
+	}
+	/**
+	 * Remove a listener for changes of this mod.
+	 * 
+	 * @param listener The listener to remove
+	 */
+	public void removeChangeListener(ChangeListener listener){
+		if(_changeSupport != null)
+			_changeSupport.removeListener(listener);
+	}
+	/**
+	 * Start a batch of changes, sent to the listeners together when it ends.
+	 */
+	public void beginChangeBatch(){
+		if(_changeSupport == null)
+			_changeSupport = new ChangeSupport();
+		_changeSupport.beginBatch();
+	}
+	/**
+	 * End a batch of changes, sending them to the listeners.
+	 */
+	public void endChangeBatch(){
+		if(_changeSupport == null)
+			throw new IllegalStateException("No batch in progress");
+		_changeSupport.endBatch();
+	}
+	
+	/**
+	 * Create an immutable copy of the mod and its mod info.
+	 * 
+	 * @return A snapshot of the mod
+	 */
+	public ModSnapshot snapshot(){
+		return new ModSnapshot(this);
+	}
+	
+	/**
+	 * Report a change of a property to the listeners, if there are any.
+	 * 
+	 * @param property The name of the property
+	 * @param oldValue The value before the change
+	 * @param newValue The value after the change
+	 */
+	private void fireChange(String property, Object oldValue, Object newValue){
+		if(_changeSupport != null)
+			_changeSupport.fire(this, property, oldValue, newValue);
+	}
+	
 	// --- OLD SAVE MECHANISM ---
 	
 	/**
@@ -240,31 +356,30 @@ public class Mod {
 	 * @throws IOException An error in writing occured
 	 */
 	public void saveToFile(File file) throws IllegalArgumentException, IOException{
-		boolean created = file.createNewFile();
+		FileTransaction transaction = new FileTransaction();
 		try{
-			if(file.canWrite()){
-				FileWriter writer = null; 
-				try{
-					writer = new FileWriter(file);
-					
-					writer.write(getJSON().toString());
-				}
-				finally{
-					if(writer != null)
-						writer.close();
-				}
-			}
-			else{
-				throw new IllegalArgumentException("Can not write to file");
-			}
+			saveToFile(file, transaction);
+			transaction.commit();
 		}
-		catch(Exception ex){
-			if(created)
-				file.delete();
-			
-			throw ex;
+		finally{
+			transaction.close();
 		}
 	}
+	/**
+	 * Stage saving the mod into a file as part of a transaction.
+	 * The file is only replaced when the transaction is committed.
+	 * 
+	 * @param file The target to save into
+	 * @param transaction The transaction to stage the write in
+	 * @throws IllegalArgumentException File is not writable
+	 * @throws IOException An error in writing occured
+	 */
+	public void saveToFile(File file, FileTransaction transaction) throws IllegalArgumentException, IOException{
+		if(file.exists() && !file.canWrite())
+			throw new IllegalArgumentException("Can not write to file");
+		
+		transaction.write(file, getJSON().toString());
+	}
 	/**
 	 * Load a Mod object from file
 	 * 
@@ -276,20 +391,8 @@ public class Mod {
 	 */
 	public static Mod loadFromFile(File file) throws IllegalArgumentException, IOException, JsonParseException{
 		if(file.canRead()){
-			FileReader reader = null;
-			try{
-				StringBuffer jsonStringBuffer = new StringBuffer();
-				char[] buffer = new char[1024];
-				reader = new FileReader(file);
-				int read = 0;
-				while((read = reader.read(buffer)) != -1){
-					jsonStringBuffer.append(String.valueOf(buffer, 0, read));
-				}
-				return parseJSON(jsonStringBuffer.toString());
-			}
-			finally{
-				if(reader != null)
-					reader.close();
+			try(Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))){
+				return parseJSON(new JsonParser().parse(reader));
 			}
 		}
 		else{
@@ -305,7 +408,7 @@ public class Mod {
 	 * @return True if the mod directory can be created
 	 */
 	public boolean isDirectoryReadToBuild(){
-		return _folder != null && new File(_folder.getParent()).isDirectory();
+		return _folder != null && FileStatCache.getDefault().isDirectory(_folder.getParentFile());
 	}
 	/**
 	 * Check if the mod structure can be built.
@@ -335,6 +438,7 @@ public class Mod {
 			throw new IllegalArgumentException("Invalid directory");
 		
 		getFolder().mkdirs();
+		FileStatCache.getDefault().invalidate(getFolder());
 	}
 	/**
 	 * Create the mod info file.
@@ -343,6 +447,24 @@ public class Mod {
 	 * @throws IOException if there was a problem opening the file for writing
 	 */
 	public void createModInfoFile() throws JsonIOException, IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			createModInfoFile(transaction);
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Stage creating the mod info file as part of a transaction.
+	 * The file is only replaced when the transaction is committed.
+	 * 
+	 * @param transaction The transaction to stage the write in
+	 * @throws JsonIOException if there was a problem writing the modinfo json file
+	 * @throws IOException if there was a problem opening the file for writing
+	 */
+	public void createModInfoFile(FileTransaction transaction) throws JsonIOException, IOException{
 		if(!isModInfoFilenameValid())
 			throw new IllegalArgumentException("Modinfo file name is not valid");
 		else if(!isNameValid())
@@ -350,8 +472,14 @@ public class Mod {
 		
 		File modinfoFile = getModinfoFile();		
 		
-		FileWriter writer = new FileWriter(modinfoFile);
-		new Gson().toJson(getModInfo(), writer);
-		writer.close();
+		Writer writer = transaction.openWriter(modinfoFile);
+		try{
+			new Gson().toJson(getModInfo(), writer);
+			writer.close();
+		}
+		catch(IOException | RuntimeException ex){
+			transaction.unstage(modinfoFile);
+			throw ex;
+		}
 	}
 }
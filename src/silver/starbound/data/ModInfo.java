@@ -22,11 +22,21 @@
 
 package silver.starbound.data;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
 
 /**
  * A mod info object that represents the mod info file.
@@ -35,9 +45,23 @@ import com.google.gson.annotations.SerializedName;
  *
  */
 public class ModInfo {
+	/**
+	 * The name of the mod name property in change events.
+	 */
+	public static final String PROPERTY_MOD_NAME = "name";
+	/**
+	 * The name of the requires property in change events.
+	 */
+	public static final String PROPERTY_REQUIRES = "requires";
+	/**
+	 * The name of the includes property in change events.
+	 */
+	public static final String PROPERTY_INCLUDES = "includes";
+	
 	@SerializedName("name")		private String mModName;
 	@SerializedName("requires")	private Collection<String> mRequires;
 	@SerializedName("includes")	private Collection<String> mIncludes;
+								private transient ChangeSupport mChangeSupport;
 	
 	/**
 	 * Create a blank mod info object.
@@ -68,19 +92,21 @@ public class ModInfo {
 	}
 	/**
 	 * Get the names of the mods this mod requires.
+	 * The collection can not be changed, edits go through the setter.
 	 * 
 	 * @return The names of the mods this mod requires
 	 */
 	public Collection<String> getRequires() {
-		return mRequires;
+		return mRequires == null ? null : Collections.unmodifiableCollection(mRequires);
 	}
 	/**
 	 * Get the names of the mods this mod includes.
+	 * The collection can not be changed, edits go through the setter.
 	 * 
 	 * @return The names of the mods this mod includes
 	 */
 	public Collection<String> getIncludes() {
-		return mIncludes;
+		return mIncludes == null ? null : Collections.unmodifiableCollection(mIncludes);
 	}
 	
 	/**
@@ -91,7 +117,9 @@ public class ModInfo {
 	public void setModName(String modName){
 		if(modName == null)
 			modName = "";
+		String oldModName = mModName;
 		mModName = modName;
+		fireChange(PROPERTY_MOD_NAME, oldModName, modName);
 	}
 	/**
 	 * Set the names of the mods this mod requires.
@@ -99,9 +127,14 @@ public class ModInfo {
 	 * @param requires The requires to set
 	 */
 	public void setRequires(Collection<String> requires) {
+		// Copied, so the caller can not change the mod info through its collection
 		if(requires == null)
 			requires = new ArrayList<>();
+		else
+			requires = new ArrayList<>(requires);
+		Collection<String> oldRequires = mRequires;
 		this.mRequires = requires;
+		fireChange(PROPERTY_REQUIRES, oldRequires, requires);
 	}
 	/**
 	 * Set the names of the mods this mod includes.
@@ -109,8 +142,99 @@ public class ModInfo {
 	 * @param includes The includes to set
 	 */
 	public void setIncludes(Collection<String> includes) {
+		// Copied, so the caller can not change the mod info through its collection
 		if(includes == null)
 			includes = new ArrayList<>();
+		else
+			includes = new ArrayList<>(includes);
+		Collection<String> oldIncludes = mIncludes;
 		this.mIncludes = includes;
+		fireChange(PROPERTY_INCLUDES, oldIncludes, includes);
+	}
+	
+	/**
+	 * Add a listener for changes of this mod info.
+	 * 
+	 * @param listener The listener to add
+	 */
+	public void addChangeListener(ChangeListener listener){
+		if(mChangeSupport == null)
+			mChangeSupport = new ChangeSupport();
+		mChangeSupport.addListener(listener);
+	}
+	/**
+	 * Remove a listener for changes of this mod info.
+	 * 
+	 * @param listener The listener to remove
+	 */
+	public void removeChangeListener(ChangeListener listener){
+		if(mChangeSupport != null)
+			mChangeSupport.removeListener(listener);
+	}
+	/**
+	 * Start a batch of changes, sent to the listeners together when it ends.
+	 */
+	public void beginChangeBatch(){
+		if(mChangeSupport == null)
+			mChangeSupport = new ChangeSupport();
+		mChangeSupport.beginBatch();
+	}
+	/**
+	 * End a batch of changes, sending them to the listeners.
+	 */
+	public void endChangeBatch(){
+		if(mChangeSupport == null)
+			throw new IllegalStateException("No batch in progress");
+		mChangeSupport.endBatch();
+	}
+	
+	/**
+	 * Create an immutable copy of the mod info.
+	 * 
+	 * @return A snapshot of the mod info
+	 */
+	public ModInfoSnapshot snapshot(){
+		return new ModInfoSnapshot(this);
+	}
+	
+	/**
+	 * Report a change of a property to the listeners, if there are any.
+	 * 
+	 * @param property The name of the property
+	 * @param oldValue The value before the change
+	 * @param newValue The value after the change
+	 */
+	private void fireChange(String property, Object oldValue, Object newValue){
+		if(mChangeSupport != null)
+			mChangeSupport.fire(this, property, oldValue, newValue);
+	}
+	
+	/**
+	 * A convience method for loading a mod info from file.
+	 * 
+	 * @param file The modinfo file
+	 * @return The mod info stored in the file
+	 * @throws IOException If there was an error in the file
+	 */
+	public static ModInfo loadFromFile(File file) throws IOException{
+		if(file == null)
+			throw new NullPointerException("File is null");
+		
+		try(JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))){
+			// Starbound allows comments in its json files
+			reader.setLenient(true);
+			ModInfo result = new Gson().fromJson(reader, ModInfo.class);
+			if(result == null)
+				result = new ModInfo();
+			
+			// Gson bypasses the setters, so explicit nulls are kept
+			result.setModName(result.getModName());
+			result.setRequires(result.getRequires());
+			result.setIncludes(result.getIncludes());
+			return result;
+		}
+		catch(JsonParseException e){
+			throw new IOException(e);
+		}
 	}
 }
@@ -0,0 +1,83 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.util.List;
+
+/**
+ * An immutable copy of a mod info.
+ * Snapshots can be shared between threads without locking.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public final class ModInfoSnapshot {
+	private final String _modName;
+	private final List<String> _requires;
+	private final List<String> _includes;
+	
+	/**
+	 * Copy the current state of a mod info.
+	 * 
+	 * @param modInfo The mod info to copy
+	 */
+	public ModInfoSnapshot(ModInfo modInfo){
+		_modName = modInfo.getModName();
+		_requires = ItemSnapshot.copy(modInfo.getRequires());
+		_includes = ItemSnapshot.copy(modInfo.getIncludes());
+	}
+	
+	/**
+	 * Get the name of the mod.
+	 * 
+	 * @return The name of the mod
+	 */
+	public String getModName(){
+		return _modName;
+	}
+	/**
+	 * Get the names of the mods this mod requires.
+	 * 
+	 * @return An unmodifiable list of the required mods
+	 */
+	public List<String> getRequires(){
+		return _requires;
+	}
+	/**
+	 * Get the names of the mods this mod includes.
+	 * 
+	 * @return An unmodifiable list of the included mods
+	 */
+	public List<String> getIncludes(){
+		return _includes;
+	}
+	
+	/**
+	 * Create a mutable mod info with the state of this snapshot.
+	 * 
+	 * @return A new mod info
+	 */
+	public ModInfo toModInfo(){
+		return new ModInfo(_modName, _requires, _includes);
+	}
+}
@@ -0,0 +1,93 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.File;
+
+/**
+ * An immutable copy of a mod and its mod info.
+ * Snapshots can be shared between threads without locking.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public final class ModSnapshot {
+	private final File _folder;
+	private final String _modInfoFilename;
+	private final ModInfoSnapshot _modInfo;
+	
+	/**
+	 * Copy the current state of a mod.
+	 * 
+	 * @param mod The mod to copy
+	 */
+	public ModSnapshot(Mod mod){
+		_folder = mod.getFolder();
+		_modInfoFilename = mod.getModInfoFilename();
+		_modInfo = mod.getModInfo().snapshot();
+	}
+	
+	/**
+	 * Get the name of the mod.
+	 * 
+	 * @return The mod's name
+	 */
+	public String getName(){
+		return _modInfo.getModName();
+	}
+	/**
+	 * Get the mod's folder.
+	 * 
+	 * @return The mod's folder, null if none set
+	 */
+	public File getFolder(){
+		return _folder;
+	}
+	/**
+	 * Get the name of the modinfo file.
+	 * 
+	 * @return The name of the modinfo file, if set
+	 */
+	public String getModInfoFilename(){
+		return _modInfoFilename;
+	}
+	/**
+	 * Get the snapshot of the mod info.
+	 * 
+	 * @return The mod info snapshot
+	 */
+	public ModInfoSnapshot getModInfo(){
+		return _modInfo;
+	}
+	
+	/**
+	 * Create a mutable mod with the state of this snapshot.
+	 * 
+	 * @return A new mod
+	 */
+	public Mod toMod(){
+		Mod result = new Mod(null, _folder, _modInfoFilename);
+		result.setModInfo(_modInfo.toModInfo());
+		return result;
+	}
+}
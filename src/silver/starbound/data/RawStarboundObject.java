@@ -0,0 +1,142 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import silver.starbound.util.JsonAssetCache;
+import silver.starbound.util.JsonUtil;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A starbound object of a type without its own model.
+ * The json of the object is only parsed when first requested.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class RawStarboundObject extends StarboundObject {
+	private transient JsonElement _json;
+	
+	/**
+	 * Create a raw object for an asset file.
+	 * 
+	 * @param file The asset file
+	 */
+	public RawStarboundObject(File file){
+		super(file);
+	}
+	/**
+	 * Create a raw object with already parsed json.
+	 * 
+	 * @param file The asset file
+	 * @param json The parsed json of the file
+	 */
+	public RawStarboundObject(File file, JsonElement json){
+		super(file);
+		_json = json;
+	}
+	
+	/**
+	 * Get a copy of the json of the object, parsing the file on first use.
+	 * 
+	 * @return A copy of the json of the object, free to modify
+	 * @throws IOException If the file could not be read or parsed
+	 */
+	public JsonElement getJson() throws IOException{
+		return JsonUtil.copy(getSharedJson());
+	}
+	/**
+	 * Get the json of the object, parsing the file on first use.
+	 * The json is shared through the asset cache and must not be modified.
+	 * 
+	 * @return The json of the object
+	 * @throws IOException If the file could not be read or parsed
+	 */
+	private synchronized JsonElement getSharedJson() throws IOException{
+		if(_json == null){
+			if(getFile() == null)
+				throw new IllegalStateException("Object has no file");
+			_json = JsonAssetCache.getDefault().get(getFile());
+		}
+		return _json;
+	}
+	/**
+	 * Check if the json was already parsed.
+	 * 
+	 * @return True if the json is parsed
+	 */
+	public synchronized boolean isParsed(){
+		return _json != null;
+	}
+	/**
+	 * Get a string member of the object's json.
+	 * 
+	 * @param member The name of the member
+	 * @return The value of the member, null if missing or not a string
+	 * @throws IOException If the file could not be read or parsed
+	 */
+	public String getString(String member) throws IOException{
+		JsonElement json = getSharedJson();
+		if(!json.isJsonObject())
+			return null;
+		
+		JsonElement value = ((JsonObject)json).get(member);
+		if(value == null || !value.isJsonPrimitive() || !value.getAsJsonPrimitive().isString())
+			return null;
+		return value.getAsString();
+	}
+	
+	@Override
+	public synchronized void setFile(File file) {
+		super.setFile(file);
+		_json = null;
+	}
+	
+	/**
+	 * Parse an asset file, allowing the comments starbound allows.
+	 * 
+	 * @param file The asset file
+	 * @return The parsed json
+	 * @throws IOException If the file could not be read or parsed
+	 */
+	public static JsonElement parseFile(File file) throws IOException{
+		try(JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))){
+			reader.setLenient(true);
+			return new JsonParser().parse(reader);
+		}
+		catch(JsonParseException e){
+			throw new IOException("Malformed json in " + file, e);
+		}
+	}
+}
@@ -0,0 +1,294 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import silver.starbound.util.JsonAssetCache;
+import silver.starbound.util.JsonUtil;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A starbound crafting recipe.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class Recipe extends StarboundObject {
+	/**
+	 * An item and a count, used as recipe input and output.
+	 * 
+	 * @author SilverFishCat
+	 *
+	 */
+	@JsonAdapter(Ingredient.IngredientJsonAdapter.class)
+	public static class Ingredient{
+		private final String _itemName;
+		private final int _count;
+		
+		/**
+		 * Create an ingredient.
+		 * 
+		 * @param itemName The name of the item
+		 * @param count The number of items
+		 */
+		public Ingredient(String itemName, int count){
+			_itemName = itemName;
+			_count = count;
+		}
+		
+		/**
+		 * Get the name of the item.
+		 * 
+		 * @return The name of the item
+		 */
+		public String getItemName(){
+			return _itemName;
+		}
+		/**
+		 * Get the number of items.
+		 * 
+		 * @return The number of items
+		 */
+		public int getCount(){
+			return _count;
+		}
+		
+		@Override
+		public String toString() {
+			return _count + "x " + _itemName;
+		}
+		
+		/**
+		 * A json adapter for ingredients.
+		 * Newer recipes name the item with "item", older ones with "name".
+		 * 
+		 * @author SilverFishCat
+		 *
+		 */
+		public static class IngredientJsonAdapter extends TypeAdapter<Ingredient>{
+			private static final String ITEM_KEY = "item";
+			private static final String OLD_ITEM_KEY = "name";
+			private static final String COUNT_KEY = "count";
+			
+			@Override
+			public void write(JsonWriter out, Ingredient value) throws IOException {
+				if(value == null){
+					out.nullValue();
+					return;
+				}
+				
+				out.beginObject();
+				out.name(ITEM_KEY).value(value.getItemName());
+				out.name(COUNT_KEY).value(value.getCount());
+				out.endObject();
+			}
+			
+			@Override
+			public Ingredient read(JsonReader in) throws IOException {
+				if(in.peek() == JsonToken.STRING)
+					return new Ingredient(in.nextString(), 1);
+				if(in.peek() != JsonToken.BEGIN_OBJECT){
+					in.skipValue();
+					return null;
+				}
+				
+				String itemName = null;
+				int count = 1;
+				in.beginObject();
+				while(in.hasNext()){
+					String name = in.nextName();
+					if((name.equals(ITEM_KEY) || name.equals(OLD_ITEM_KEY)) && in.peek() == JsonToken.STRING)
+						itemName = in.nextString();
+					else if(name.equals(COUNT_KEY) && in.peek() == JsonToken.NUMBER)
+						count = (int)in.nextDouble();
+					else
+						in.skipValue();
+				}
+				in.endObject();
+				
+				return itemName == null ? null : new Ingredient(itemName, count);
+			}
+		}
+	}
+	
+	/**
+	 * The name of the input property in change events.
+	 */
+	public static final String PROPERTY_INPUT = "input";
+	/**
+	 * The name of the output property in change events.
+	 */
+	public static final String PROPERTY_OUTPUT = "output";
+	/**
+	 * The name of the groups property in change events.
+	 */
+	public static final String PROPERTY_GROUPS = "groups";
+	
+	@SerializedName("input")	private List<Ingredient> _input;
+	@SerializedName("output")	private Ingredient _output;
+	@SerializedName("groups")	private Collection<String> _groups;
+	
+	/**
+	 * Create a blank recipe.
+	 */
+	public Recipe(){
+		this(null, null, null, null);
+	}
+	/**
+	 * Create a recipe.
+	 * 
+	 * @param file The file associated with this recipe
+	 * @param input The ingredients of the recipe
+	 * @param output The result of the recipe
+	 * @param groups The crafting groups the recipe belongs to
+	 */
+	public Recipe(File file, List<Ingredient> input, Ingredient output, Collection<String> groups){
+		super(file);
+		
+		setInput(input);
+		setOutput(output);
+		setGroups(groups);
+	}
+	
+	/**
+	 * Get the ingredients of the recipe.
+	 * The list can not be changed, edits go through the setter.
+	 * 
+	 * @return The ingredients of the recipe
+	 */
+	public List<Ingredient> getInput(){
+		return _input == null ? null : Collections.unmodifiableList(_input);
+	}
+	/**
+	 * Get the result of the recipe.
+	 * 
+	 * @return The result of the recipe, null if none
+	 */
+	public Ingredient getOutput(){
+		return _output;
+	}
+	/**
+	 * Get the crafting groups the recipe belongs to.
+	 * The collection can not be changed, edits go through the setter.
+	 * 
+	 * @return The crafting groups
+	 */
+	public Collection<String> getGroups(){
+		return _groups == null ? null : Collections.unmodifiableCollection(_groups);
+	}
+	/**
+	 * Get the name of the item this recipe makes.
+	 * 
+	 * @return The name of the output item, null if none
+	 */
+	public String getOutputItemName(){
+		return _output == null ? null : _output.getItemName();
+	}
+	
+	/**
+	 * Set the ingredients of the recipe.
+	 * Missing ingredients are dropped.
+	 * 
+	 * @param input The ingredients of the recipe
+	 */
+	public void setInput(List<Ingredient> input){
+		// Copied, so the caller can not change the recipe through its list
+		List<Ingredient> copy = new ArrayList<>();
+		if(input != null){
+			for (Ingredient ingredient : input) {
+				if(ingredient != null)
+					copy.add(ingredient);
+			}
+		}
+		List<Ingredient> oldInput = _input;
+		_input = copy;
+		fireChange(PROPERTY_INPUT, oldInput, copy);
+	}
+	/**
+	 * Set the result of the recipe.
+	 * 
+	 * @param output The result of the recipe
+	 */
+	public void setOutput(Ingredient output){
+		Ingredient oldOutput = _output;
+		_output = output;
+		fireChange(PROPERTY_OUTPUT, oldOutput, output);
+	}
+	/**
+	 * Set the crafting groups the recipe belongs to.
+	 * 
+	 * @param groups The crafting groups
+	 */
+	public void setGroups(Collection<String> groups){
+		// Copied, so the caller can not change the recipe through its collection
+		if(groups == null)
+			groups = new ArrayList<>();
+		else
+			groups = new ArrayList<>(groups);
+		Collection<String> oldGroups = _groups;
+		_groups = groups;
+		fireChange(PROPERTY_GROUPS, oldGroups, groups);
+	}
+	
+	/**
+	 * A convience method for loading a recipe from file.
+	 * 
+	 * @param file The file where the recipe is stored
+	 * @return The loaded recipe
+	 * @throws IOException If there was an error in the file
+	 */
+	public static Recipe loadFromFile(File file) throws IOException{
+		if(file == null)
+			throw new NullPointerException("File is null");
+		
+		if(!file.isFile())
+			throw new IllegalArgumentException("Given path is not a file");
+		
+		try {
+			Recipe result = JsonUtil.getGsonInstance().fromJson(JsonAssetCache.getDefault().get(file), Recipe.class);
+			if(result == null)
+				result = new Recipe();
+			
+			// Gson bypasses the setters, so explicit nulls are kept
+			result.setInput(result.getInput());
+			result.setGroups(result.getGroups());
+			result.setFile(file);
+			return result;
+		} catch (JsonParseException | IllegalStateException | IllegalArgumentException | ClassCastException e) {
+			throw new IOException("Could not read recipe " + file + ": " + e.getMessage(), e);
+		}
+	}
+}
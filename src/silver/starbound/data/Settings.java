@@ -24,6 +24,7 @@ package silver.starbound.data;
 
 import java.io.File;
 
+import silver.starbound.util.FileStatCache;
 import silver.starbound.util.OSUtil.Architecture;
 import silver.starbound.util.OSUtil.OperatingSystem;
 import silver.starbound.util.PathUtil;
@@ -37,7 +38,7 @@ import silver.starbound.util.SettingsUtil;
  *
  */
 public class Settings {
-	private static Settings _currentSettings;
+	private static volatile Settings _currentSettings;
 	/**
 	 * Get the current settings.
 	 * 
@@ -204,7 +205,7 @@ public class Settings {
 	 * @return True if the starbound directory is valid
 	 */
 	public boolean isStarboundFolderValid(){
-		return _starboundFolder != null && _starboundFolder.isDirectory();
+		return FileStatCache.getDefault().isDirectory(_starboundFolder);
 	}
 	/**
 	 * Check if the text editor is a valid file.
@@ -212,7 +213,7 @@ public class Settings {
 	 * @return True if the text editor is valid
 	 */
 	public boolean isTextEditorValid(){
-		return _textEditor != null && _textEditor.isFile();
+		return FileStatCache.getDefault().isFile(_textEditor);
 	}
 	/**
 	 * Check if the image editor is a valid file.
@@ -220,7 +221,7 @@ public class Settings {
 	 * @return True if the image editor is valid
 	 */
 	public boolean isImageEditorValid(){
-		return _imageEditor != null && _imageEditor.isFile();
+		return FileStatCache.getDefault().isFile(_imageEditor);
 	}
 	/**
 	 * Check if the tool directory can be retreived from the given settings.
@@ -232,6 +233,14 @@ public class Settings {
 			|| ((getArchitecture() == null || getArchitecture() == Architecture.UNKNOWN) && getOperationSystem() != OperatingSystem.OSX));
 	}
 	
+	/**
+	 * Create an immutable copy of the settings.
+	 * 
+	 * @return A snapshot of the settings
+	 */
+	public SettingsSnapshot snapshot(){
+		return new SettingsSnapshot(this);
+	}
 	/**
 	 * Makes a shallow copy of this settings object.
 	 */
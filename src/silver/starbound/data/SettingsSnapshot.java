@@ -0,0 +1,112 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.File;
+
+import silver.starbound.util.OSUtil.Architecture;
+import silver.starbound.util.OSUtil.OperatingSystem;
+
+/**
+ * An immutable copy of the settings.
+ * Snapshots can be shared between threads without locking.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public final class SettingsSnapshot {
+	private final File _starboundFolder;
+	private final File _textEditor;
+	private final File _imageEditor;
+	private final OperatingSystem _operationSystem;
+	private final Architecture _architecture;
+	
+	/**
+	 * Copy the current state of settings.
+	 * 
+	 * @param settings The settings to copy
+	 */
+	public SettingsSnapshot(Settings settings){
+		_starboundFolder = settings.getStarboundFolder();
+		_textEditor = settings.getTextEditor();
+		_imageEditor = settings.getImageEditor();
+		_operationSystem = settings.getOperationSystem();
+		_architecture = settings.getArchitecture();
+	}
+	
+	/**
+	 * Get the starbound directory.
+	 * 
+	 * @return The starbound directory
+	 */
+	public File getStarboundFolder(){
+		return _starboundFolder;
+	}
+	/**
+	 * Get the text editor.
+	 * 
+	 * @return The text editor
+	 */
+	public File getTextEditor(){
+		return _textEditor;
+	}
+	/**
+	 * Get the image editor.
+	 * 
+	 * @return The image editor
+	 */
+	public File getImageEditor(){
+		return _imageEditor;
+	}
+	/**
+	 * Get the operating system.
+	 * 
+	 * @return The operating system
+	 */
+	public OperatingSystem getOperationSystem(){
+		return _operationSystem;
+	}
+	/**
+	 * Get the operating system architecture.
+	 * 
+	 * @return The operating system architecture
+	 */
+	public Architecture getArchitecture(){
+		return _architecture;
+	}
+	
+	/**
+	 * Create mutable settings with the state of this snapshot.
+	 * 
+	 * @return New settings
+	 */
+	public Settings toSettings(){
+		Settings result = new Settings();
+		result.setStarboundFolder(_starboundFolder);
+		result.setTextEditor(_textEditor);
+		result.setImageEditor(_imageEditor);
+		result.setOperationSystem(_operationSystem);
+		result.setArchitecture(_architecture);
+		return result;
+	}
+}
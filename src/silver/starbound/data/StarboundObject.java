@@ -9,7 +9,15 @@ import java.io.File;
  *
  */
 public abstract class StarboundObject {
+	/**
+	 * The name of the file property in change events.
+	 */
+	public static final String PROPERTY_FILE = "file";
+	
 	private transient File _file;
+	private transient ChangeSupport _changeSupport;
+	private transient long _sourceLastModified = -1;
+	private transient long _sourceLength = -1;
 
 	/**
 	 * Create a new starbound object with no file associated with it.
@@ -41,6 +49,86 @@ public abstract class StarboundObject {
 	 * @param file
 	 */
 	public void setFile(File file){
+		File oldFile = _file;
 		_file = file;
+		if(file == null ? oldFile != null : !file.equals(oldFile))
+			setSourceStat(-1, -1);
+		fireChange(PROPERTY_FILE, oldFile, file);
+	}
+	
+	/**
+	 * Get the modification time of the file when this object was loaded from it.
+	 * 
+	 * @return The modification time, -1 if not loaded from a file
+	 */
+	public long getSourceLastModified(){
+		return _sourceLastModified;
+	}
+	/**
+	 * Get the length of the file when this object was loaded from it.
+	 * 
+	 * @return The length of the file, -1 if not loaded from a file
+	 */
+	public long getSourceLength(){
+		return _sourceLength;
+	}
+	/**
+	 * Record the state of the file this object is loaded from.
+	 * Must be read before the file content, so a later edit is never missed.
+	 * 
+	 * @param lastModified The modification time of the file
+	 * @param length The length of the file
+	 */
+	protected void setSourceStat(long lastModified, long length){
+		_sourceLastModified = lastModified;
+		_sourceLength = length;
+	}
+	
+	/**
+	 * Add a listener for changes of this object.
+	 * 
+	 * @param listener The listener to add
+	 */
+	public void addChangeListener(ChangeListener listener){
+		if(_changeSupport == null)
+			_changeSupport = new ChangeSupport();
+		_changeSupport.addListener(listener);
+	}
+	/**
+	 * Remove a listener for changes of this object.
+	 * 
+	 * @param listener The listener to remove
+	 */
+	public void removeChangeListener(ChangeListener listener){
+		if(_changeSupport != null)
+			_changeSupport.removeListener(listener);
+	}
+	/**
+	 * Start a batch of changes, sent to the listeners together when it ends.
+	 */
+	public void beginChangeBatch(){
+		if(_changeSupport == null)
+			_changeSupport = new ChangeSupport();
+		_changeSupport.beginBatch();
+	}
+	/**
+	 * End a batch of changes, sending them to the listeners.
+	 */
+	public void endChangeBatch(){
+		if(_changeSupport == null)
+			throw new IllegalStateException("No batch in progress");
+		_changeSupport.endBatch();
+	}
+	
+	/**
+	 * Report a change of a property to the listeners, if there are any.
+	 * 
+	 * @param property The name of the property
+	 * @param oldValue The value before the change
+	 * @param newValue The value after the change
+	 */
+	protected void fireChange(String property, Object oldValue, Object newValue){
+		if(_changeSupport != null)
+			_changeSupport.fire(this, property, oldValue, newValue);
 	}
 }
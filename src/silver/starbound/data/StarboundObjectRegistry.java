@@ -0,0 +1,271 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import silver.starbound.util.ExecutorUtil;
+import silver.starbound.util.PathUtil;
+
+/**
+ * A registry of loaders for starbound objects, by asset file extension.
+ * Finding the loader of a file is a single hash lookup, no content is read.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class StarboundObjectRegistry {
+	/**
+	 * Extensions of assets that share the item fields.
+	 */
+	public static final String[] ITEM_EXTENSIONS = {
+		"item", "activeitem", "consumable", "matitem", "liqitem", "augment",
+		"currency", "instrument", "thrownitem", "beamaxe", "flashlight",
+		"harvestingtool", "miningtool", "painttool", "wiretool", "inspectiontool",
+		"tillingtool", "head", "chest", "legs", "back"
+	};
+	/**
+	 * Extension of crafting recipes.
+	 */
+	public static final String RECIPE_EXTENSION = "recipe";
+	/**
+	 * Extensions of json assets that are loaded as raw json.
+	 */
+	public static final String[] RAW_EXTENSIONS = {
+		"object", "projectile", "monstertype", "npctype", "species",
+		"tech", "statuseffect", "material", "matmod", "liquid", "biome",
+		"treasurepools", "config", "animation", "particle", "frames", "codex"
+	};
+	
+	private static StarboundObjectRegistry _defaultRegistry;
+	/**
+	 * Get the default registry, with loaders for every known asset type.
+	 * 
+	 * @return The default registry
+	 */
+	public static synchronized StarboundObjectRegistry getDefault(){
+		if(_defaultRegistry == null)
+			_defaultRegistry = createDefault();
+		return _defaultRegistry;
+	}
+	
+	private final ConcurrentHashMap<String, StarboundObjectLoader> _loaders;
+	
+	/**
+	 * Create a new empty registry.
+	 */
+	public StarboundObjectRegistry(){
+		_loaders = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Register the loader of an asset extension, replacing any previous loader.
+	 * 
+	 * @param extension The extension, without the dot
+	 * @param loader The loader of assets with the extension
+	 */
+	public void register(String extension, StarboundObjectLoader loader){
+		if(loader == null)
+			throw new NullPointerException("Loader is null");
+		
+		_loaders.put(normalizeExtension(extension), loader);
+	}
+	/**
+	 * Get the loader of an asset extension.
+	 * 
+	 * @param extension The extension, without the dot
+	 * @return The loader, null if the extension is not registered
+	 */
+	public StarboundObjectLoader getLoader(String extension){
+		if(extension == null)
+			return null;
+		return _loaders.get(normalizeExtension(extension));
+	}
+	/**
+	 * Get the loader of an asset file by its extension.
+	 * 
+	 * @param file The asset file
+	 * @return The loader, null if the extension is not registered
+	 */
+	public StarboundObjectLoader getLoader(File file){
+		return getLoader(getExtension(file));
+	}
+	/**
+	 * Check if a file has a registered extension.
+	 * 
+	 * @param file The file to check
+	 * @return True if the file can be loaded by a registered loader
+	 */
+	public boolean isRegistered(File file){
+		return getLoader(file) != null;
+	}
+	/**
+	 * Get the registered extensions.
+	 * 
+	 * @return The registered extensions
+	 */
+	public Set<String> getExtensions(){
+		return Collections.unmodifiableSet(_loaders.keySet());
+	}
+	
+	/**
+	 * Load an asset with the loader of its extension.
+	 * Assets without a registered loader are loaded as raw json.
+	 * 
+	 * @param file The asset file
+	 * @return The loaded object
+	 * @throws IOException If the file could not be loaded
+	 */
+	public StarboundObject load(File file) throws IOException{
+		StarboundObjectLoader loader = getLoader(file);
+		if(loader == null)
+			return new RawStarboundObject(file);
+		return loader.load(file);
+	}
+	/**
+	 * Load every asset with a registered extension in a folder and its subfolders.
+	 * Assets that fail to load are skipped.
+	 * 
+	 * @param folder The folder to scan
+	 * @return The loaded objects
+	 * @throws IOException If the folder could not be listed
+	 */
+	public List<StarboundObject> scan(File folder) throws IOException{
+		return scan(folder, null);
+	}
+	/**
+	 * Load every asset with a registered extension in a folder and its subfolders.
+	 * Assets that fail to load are skipped, and their errors collected.
+	 * 
+	 * @param folder The folder to scan
+	 * @param failures Receives the error of every asset that failed to load, null to ignore them
+	 * @return The loaded objects
+	 * @throws IOException If the folder could not be listed
+	 */
+	public List<StarboundObject> scan(File folder, Map<File, IOException> failures) throws IOException{
+		final Map<File, IOException> errors = new ConcurrentHashMap<>();
+		List<Callable<StarboundObject>> tasks = new ArrayList<>();
+		for (final File file : PathUtil.listFiles(folder)) {
+			final StarboundObjectLoader loader = getLoader(file);
+			if(loader == null)
+				continue;
+			
+			tasks.add(new Callable<StarboundObject>() {
+				@Override
+				public StarboundObject call() {
+					try{
+						return loader.load(file);
+					}
+					catch(IOException ex){
+						errors.put(file, ex);
+						return null;
+					}
+				}
+			});
+		}
+		
+		List<StarboundObject> result = new ArrayList<>(tasks.size());
+		for (StarboundObject object : ExecutorUtil.invokeAll(ExecutorUtil.Strategy.cpu(), tasks)) {
+			if(object != null)
+				result.add(object);
+		}
+		if(failures != null)
+			failures.putAll(errors);
+		return result;
+	}
+	
+	/**
+	 * Get the extension of a file.
+	 * 
+	 * @param file The file
+	 * @return The extension without the dot, null if the file has none
+	 */
+	public static String getExtension(File file){
+		if(file == null)
+			return null;
+		
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		if(dot < 0 || dot == name.length() - 1)
+			return null;
+		return name.substring(dot + 1);
+	}
+	
+	/**
+	 * Create a registry with loaders for every known asset type.
+	 * 
+	 * @return The new registry
+	 */
+	private static StarboundObjectRegistry createDefault(){
+		StarboundObjectRegistry result = new StarboundObjectRegistry();
+		
+		StarboundObjectLoader itemLoader = new StarboundObjectLoader() {
+			@Override
+			public StarboundObject load(File file) throws IOException {
+				return Item.loadFromFile(file);
+			}
+		};
+		for (String extension : ITEM_EXTENSIONS) {
+			result.register(extension, itemLoader);
+		}
+		
+		result.register(RECIPE_EXTENSION, new StarboundObjectLoader() {
+			@Override
+			public StarboundObject load(File file) throws IOException {
+				return Recipe.loadFromFile(file);
+			}
+		});
+		
+		StarboundObjectLoader rawLoader = new StarboundObjectLoader() {
+			@Override
+			public StarboundObject load(File file) {
+				return new RawStarboundObject(file);
+			}
+		};
+		for (String extension : RAW_EXTENSIONS) {
+			result.register(extension, rawLoader);
+		}
+		
+		return result;
+	}
+	/**
+	 * Normalize an extension for lookup.
+	 * 
+	 * @param extension The extension
+	 * @return The lower case extension
+	 */
+	private static String normalizeExtension(String extension){
+		if(extension == null)
+			throw new NullPointerException("Extension is null");
+		return extension.toLowerCase(Locale.ENGLISH);
+	}
+}
@@ -62,6 +62,9 @@ public class TypedFile {
 		 */
 		UNKNOWN
 	}
+	
+	private static Tika _tika;
+	
 	/**
 	 * The file.
 	 */
@@ -70,6 +73,8 @@ public class TypedFile {
 	 * The type of the file.
 	 */
 	private FileType _type;
+	private long _sourceLastModified;
+	private long _sourceLength;
 	
 	/**
 	 * Create a new typed file.
@@ -79,6 +84,8 @@ public class TypedFile {
 	 */
 	public TypedFile(File file){
 		_file = file;
+		_sourceLastModified = file == null ? -1 : file.lastModified();
+		_sourceLength = file == null ? -1 : file.length();
 		_type = getFileType(_file);
 	}
 	/**
@@ -88,8 +95,21 @@ public class TypedFile {
 	 * @param type The type of the file
 	 */
 	public TypedFile(File file, FileType type){
+		this(file, type, -1, -1);
+	}
+	/**
+	 * Create a new typed file, whose type was detected earlier.
+	 * 
+	 * @param file The file to encapsulate
+	 * @param type The type of the file
+	 * @param sourceLastModified The modification time of the file when its type was detected, -1 if unknown
+	 * @param sourceLength The length of the file when its type was detected, -1 if unknown
+	 */
+	public TypedFile(File file, FileType type, long sourceLastModified, long sourceLength){
 		_file = file;
 		_type = type;
+		_sourceLastModified = sourceLastModified;
+		_sourceLength = sourceLength;
 	}
 	
 	/**
@@ -108,6 +128,22 @@ public class TypedFile {
 	public FileType getFileType(){
 		return _type;
 	}
+	/**
+	 * Get the modification time of the file when its type was detected.
+	 * 
+	 * @return The modification time, -1 if the type was given
+	 */
+	public long getSourceLastModified(){
+		return _sourceLastModified;
+	}
+	/**
+	 * Get the length of the file when its type was detected.
+	 * 
+	 * @return The length of the file, -1 if the type was given
+	 */
+	public long getSourceLength(){
+		return _sourceLength;
+	}
 	/**
 	 * Set the underlying file.
 	 * 
@@ -115,6 +151,8 @@ public class TypedFile {
 	 */
 	public void setFile(File file){
 		_file = file;
+		_sourceLastModified = -1;
+		_sourceLength = -1;
 	}
 	/**
 	 * Set the file type.
@@ -123,6 +161,8 @@ public class TypedFile {
 	 */
 	public void setFileType(FileType type){
 		_type = type;
+		_sourceLastModified = -1;
+		_sourceLength = -1;
 	}
 	
 	/**
@@ -134,6 +174,10 @@ public class TypedFile {
 	public static FileType getFileType(File file){
 		FileType result = FileType.UNKNOWN;
 		
+		// Known asset extensions are json, no need to read them
+		if(file != null && StarboundObjectRegistry.getDefault().isRegistered(file))
+			return FileType.JSON;
+		
 		// Check if file is a json object
 		if(file != null){
 			try{
@@ -148,7 +192,7 @@ public class TypedFile {
 			
 			try{
 				if(result == FileType.UNKNOWN){
-					String typeMIME = new Tika().detect(file);
+					String typeMIME = getTika().detect(file);
 					
 					if(typeMIME != null){
 						if(typeMIME.endsWith("png"))
@@ -165,4 +209,15 @@ public class TypedFile {
 		
 		return result;
 	}
+	/**
+	 * Get the shared type detector.
+	 * Creating a detector loads every known mime type, so it is done once.
+	 * 
+	 * @return The shared type detector
+	 */
+	public static synchronized Tika getTika(){
+		if(_tika == null)
+			_tika = new Tika();
+		return _tika;
+	}
 }
@@ -0,0 +1,489 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import silver.starbound.util.ExecutorUtil;
+import silver.starbound.util.FileTransaction;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A single manifest listing every mod of a workspace.
+ * The manifest is a journal of json lines, each line holding the
+ * latest state of one mod by id, so a change to one mod appends a
+ * single line. The journal is rewritten once it holds mostly outdated
+ * lines. The modinfo files of the mods are only read when needed.
+ * 
+ * @author SilverFishCat
+ *
+ */
+public class Workspace {
+	private static final String JSON_ID_KEY = "id";
+	private static final String JSON_MOD_KEY = "mod";
+	private static final String JSON_REMOVED_KEY = "removed";
+	private static final String LINE_SEPARATOR = "\n";
+	private static final int COMPACT_MIN_LINES = 64;
+	private static final int COMPACT_RATIO = 2;
+	
+	private final File _file;
+	private final Map<String, Entry> _entries;
+	private int _journalLength;
+	private boolean _journalDamaged;
+	
+	/**
+	 * A mod listed in the workspace.
+	 * 
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Entry{
+		private final String _id;
+		private final Mod _mod;
+		private volatile boolean _loaded;
+		
+		private Entry(String id, Mod mod, boolean loaded){
+			_id = id;
+			_mod = mod;
+			_loaded = loaded;
+		}
+		
+		/**
+		 * Get the id of the mod in the workspace.
+		 * 
+		 * @return The id of the mod
+		 */
+		public String getId(){
+			return _id;
+		}
+		/**
+		 * Get the mod, without reading its modinfo file.
+		 * 
+		 * @return The mod as listed in the manifest
+		 */
+		public Mod getMod(){
+			return _mod;
+		}
+		/**
+		 * Check if the modinfo file of the mod was read.
+		 * 
+		 * @return True if the modinfo file was read
+		 */
+		public boolean isLoaded(){
+			return _loaded;
+		}
+		
+		/**
+		 * Read the modinfo file of the mod, once.
+		 * 
+		 * @throws IOException If there was an error in the modinfo file
+		 */
+		private void load() throws IOException{
+			if(_loaded)
+				return;
+			
+			synchronized (this) {
+				if(!_loaded){
+					_mod.loadModInfo();
+					_loaded = true;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Create an empty workspace.
+	 * Nothing is written until a mod is added.
+	 * 
+	 * @param file The manifest file of the workspace
+	 */
+	public Workspace(File file){
+		if(file == null)
+			throw new NullPointerException("File is null");
+		
+		_file = file;
+		_entries = new LinkedHashMap<>();
+		_journalLength = 0;
+		_journalDamaged = false;
+	}
+	
+	/**
+	 * Open a workspace manifest.
+	 * Only the manifest is read, the modinfo files are read on demand.
+	 * A partial last line, left by a crash while appending, is dropped
+	 * and the manifest is compacted. Any other broken line fails the open
+	 * and leaves the manifest untouched.
+	 * 
+	 * @param file The manifest file
+	 * @return The workspace, empty if the file does not exist
+	 * @throws IOException If the manifest could not be read or is corrupt
+	 */
+	public static Workspace open(File file) throws IOException{
+		Workspace result = new Workspace(file);
+		if(!file.isFile())
+			return result;
+		
+		boolean torn = false;
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))){
+			JsonParser parser = new JsonParser();
+			int lineNumber = 0;
+			String line;
+			while((line = reader.readLine()) != null){
+				lineNumber++;
+				if(line.trim().isEmpty())
+					continue;
+				
+				JsonElement json;
+				try{
+					json = parser.parse(line);
+				}
+				catch(JsonParseException e){
+					if(!isRestBlank(reader))
+						throw new IOException("Corrupt workspace manifest at line " + lineNumber + ": " + file, e);
+					torn = true;
+					break;
+				}
+				if(!json.isJsonObject())
+					throw new IOException("Corrupt workspace manifest at line " + lineNumber + ": " + file);
+				
+				result.replay(json.getAsJsonObject());
+				result._journalLength++;
+			}
+		}
+		
+		if(torn)
+			result.compact();
+		return result;
+	}
+	
+	/**
+	 * Get the manifest file of the workspace.
+	 * 
+	 * @return The manifest file
+	 */
+	public File getFile(){
+		return _file;
+	}
+	/**
+	 * Get the number of mods in the workspace.
+	 * 
+	 * @return The number of mods
+	 */
+	public synchronized int size(){
+		return _entries.size();
+	}
+	/**
+	 * Get the number of lines in the manifest journal.
+	 * 
+	 * @return The number of lines
+	 */
+	public synchronized int getJournalLength(){
+		return _journalLength;
+	}
+	/**
+	 * Get the ids of the mods, in the order they were added.
+	 * 
+	 * @return The ids of the mods
+	 */
+	public synchronized Set<String> getIds(){
+		return Collections.unmodifiableSet(new LinkedHashSet<>(_entries.keySet()));
+	}
+	/**
+	 * Get the entries of the mods, without reading any modinfo file.
+	 * 
+	 * @return The entries, in the order they were added
+	 */
+	public synchronized List<Entry> getEntries(){
+		return new ArrayList<>(_entries.values());
+	}
+	/**
+	 * Get a mod, reading its modinfo file if not read yet.
+	 * 
+	 * @param id The id of the mod
+	 * @return The mod, null if there is no mod with the id
+	 * @throws IOException If there was an error in the modinfo file
+	 */
+	public Mod getMod(String id) throws IOException{
+		Entry entry;
+		synchronized (this) {
+			entry = _entries.get(id);
+		}
+		if(entry == null)
+			return null;
+		
+		entry.load();
+		return entry.getMod();
+	}
+	/**
+	 * Get every mod, reading the modinfo files not read yet in parallel.
+	 * 
+	 * @return The mods, in the order they were added
+	 * @throws IOException If there was an error in a modinfo file
+	 */
+	public List<Mod> getMods() throws IOException{
+		List<Entry> entries = getEntries();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (final Entry entry : entries) {
+			if(entry.isLoaded())
+				continue;
+			
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					entry.load();
+					return null;
+				}
+			});
+		}
+		ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), tasks);
+		
+		List<Mod> result = new ArrayList<>(entries.size());
+		for (Entry entry : entries) {
+			result.add(entry.getMod());
+		}
+		return result;
+	}
+	
+	/**
+	 * Add a mod to the workspace under a new id.
+	 * 
+	 * @param mod The mod to add
+	 * @return The id of the mod
+	 * @throws IOException If the manifest could not be written
+	 */
+	public String add(Mod mod) throws IOException{
+		String id = UUID.randomUUID().toString();
+		put(id, mod);
+		return id;
+	}
+	/**
+	 * Add or replace a mod in the workspace.
+	 * 
+	 * @param id The id of the mod
+	 * @param mod The mod
+	 * @throws IOException If the manifest could not be written
+	 */
+	public synchronized void put(String id, Mod mod) throws IOException{
+		if(id == null)
+			throw new NullPointerException("Id is null");
+		checkStorable(mod);
+		
+		append(createLine(id, mod));
+		_entries.put(id, new Entry(id, mod, true));
+		compactIfOutdated();
+	}
+	/**
+	 * Record the current state of a mod after it was edited.
+	 * 
+	 * @param id The id of the mod
+	 * @throws IOException If the manifest could not be written
+	 */
+	public synchronized void update(String id) throws IOException{
+		Entry entry = _entries.get(id);
+		if(entry == null)
+			throw new IllegalArgumentException("No mod with id " + id);
+		checkStorable(entry.getMod());
+		
+		append(createLine(id, entry.getMod()));
+		compactIfOutdated();
+	}
+	/**
+	 * Remove a mod from the workspace.
+	 * 
+	 * @param id The id of the mod
+	 * @return True if there was a mod with the id
+	 * @throws IOException If the manifest could not be written
+	 */
+	public synchronized boolean remove(String id) throws IOException{
+		if(!_entries.containsKey(id))
+			return false;
+		
+		JsonObject line = new JsonObject();
+		line.add(JSON_ID_KEY, new JsonPrimitive(id));
+		line.add(JSON_REMOVED_KEY, new JsonPrimitive(true));
+		append(line);
+		_entries.remove(id);
+		compactIfOutdated();
+		return true;
+	}
+	/**
+	 * Rewrite the manifest with a single line per mod.
+	 * 
+	 * @throws IOException If the manifest could not be written
+	 */
+	public synchronized void compact() throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			Writer writer = transaction.openWriter(_file);
+			try{
+				for (Entry entry : _entries.values()) {
+					writer.write(createLine(entry.getId(), entry.getMod()).toString());
+					writer.write(LINE_SEPARATOR);
+				}
+			}
+			finally{
+				writer.close();
+			}
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+		_journalLength = _entries.size();
+		_journalDamaged = false;
+	}
+	
+	/**
+	 * Apply a journal line read from the manifest.
+	 * 
+	 * @param line The journal line
+	 * @throws IOException If the line is not a valid journal line
+	 */
+	private void replay(JsonObject line) throws IOException{
+		try{
+			String id = line.get(JSON_ID_KEY).getAsString();
+			if(line.has(JSON_REMOVED_KEY) && line.get(JSON_REMOVED_KEY).getAsBoolean()){
+				_entries.remove(id);
+				return;
+			}
+			
+			JsonElement modJson = line.get(JSON_MOD_KEY);
+			if(modJson == null)
+				throw new IOException("Workspace entry " + id + " has no mod");
+			Mod mod = Mod.parseJSON(modJson);
+			checkStorable(mod);
+			_entries.put(id, new Entry(id, mod, false));
+		}
+		catch(JsonParseException | IllegalStateException | IllegalArgumentException
+				| UnsupportedOperationException | ClassCastException | NullPointerException e){
+			throw new IOException("Invalid workspace entry: " + line, e);
+		}
+	}
+	/**
+	 * Check if the rest of a reader is only whitespace.
+	 * 
+	 * @param reader The reader
+	 * @return True if nothing but whitespace is left
+	 * @throws IOException If the reader could not be read
+	 */
+	private static boolean isRestBlank(BufferedReader reader) throws IOException{
+		String line;
+		while((line = reader.readLine()) != null){
+			if(!line.trim().isEmpty())
+				return false;
+		}
+		return true;
+	}
+	/**
+	 * Check that a mod can be written into the manifest.
+	 * 
+	 * @param mod The mod
+	 */
+	private static void checkStorable(Mod mod){
+		if(mod.getName() == null)
+			throw new IllegalArgumentException("Mod has no name");
+		if(mod.getFolder() == null)
+			throw new IllegalArgumentException("Mod has no folder");
+		if(mod.getModInfoFilename() == null)
+			throw new IllegalArgumentException("Mod has no modinfo file name");
+	}
+	/**
+	 * Append a line to the manifest journal.
+	 * A failed write is cut off again, so it leaves no partial line.
+	 * If that fails too, the manifest is rewritten before the next append.
+	 * 
+	 * @param line The journal line
+	 * @throws IOException If the manifest could not be written
+	 */
+	private void append(JsonElement line) throws IOException{
+		if(_journalDamaged)
+			compact();
+		
+		byte[] bytes = (line.toString() + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+		try(FileOutputStream stream = new FileOutputStream(_file, true)){
+			FileChannel channel = stream.getChannel();
+			long previousLength = channel.size();
+			try{
+				stream.write(bytes);
+				stream.getFD().sync();
+			}
+			catch(IOException | RuntimeException e){
+				try{
+					channel.truncate(previousLength);
+					stream.getFD().sync();
+				}
+				catch(IOException | RuntimeException truncateException){
+					_journalDamaged = true;
+					e.addSuppressed(truncateException);
+				}
+				throw e;
+			}
+		}
+		_journalLength++;
+	}
+	/**
+	 * Compact the manifest journal if it holds mostly outdated lines.
+	 * 
+	 * @throws IOException If the manifest could not be written
+	 */
+	private void compactIfOutdated() throws IOException{
+		if(_journalLength > COMPACT_MIN_LINES && _journalLength > _entries.size() * COMPACT_RATIO)
+			compact();
+	}
+	
+	/**
+	 * Create the journal line of a mod.
+	 * 
+	 * @param id The id of the mod
+	 * @param mod The mod
+	 * @return The journal line
+	 */
+	private static JsonObject createLine(String id, Mod mod){
+		JsonObject line = new JsonObject();
+		line.add(JSON_ID_KEY, new JsonPrimitive(id));
+		line.add(JSON_MOD_KEY, mod.getJSON());
+		return line;
+	}
+}
@@ -0,0 +1,312 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import silver.starbound.data.ChangeEvent;
+import silver.starbound.data.ChangeListener;
+import silver.starbound.data.Item;
+
+/**
+ * Applies an edit to many items in parallel, and writes back only the
+ * items the edit actually changed. Changes are noticed through the
+ * change events of the items. Only the changed values are spliced into
+ * each file, and every write is staged in a single transaction, so
+ * either all changed files are replaced or none are.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class BatchTransform {
+	/**
+	 * Chooses the items a transform is applied to.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public interface Selector{
+		/**
+		 * Check if an item should be transformed.
+		 *
+		 * @param item The item
+		 * @return True to transform the item
+		 */
+		boolean select(Item item);
+	}
+	/**
+	 * An edit applied to each selected item.
+	 * Transforms run on many threads at once, each on a different item.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public interface Transform{
+		/**
+		 * Edit an item through its setters.
+		 *
+		 * @param item The item to edit
+		 * @throws IOException If the edit failed, which aborts the batch
+		 */
+		void apply(Item item) throws IOException;
+	}
+
+	/**
+	 * A selector that selects every item.
+	 */
+	public static final Selector ALL = new Selector() {
+		@Override
+		public boolean select(Item item) {
+			return true;
+		}
+	};
+
+	/**
+	 * The outcome of a batch transform.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Result{
+		private final int _total;
+		private final int _selected;
+		private final List<Item> _changed;
+		private final List<File> _written;
+		private final long _elapsedMillis;
+
+		private Result(int total, int selected, List<Item> changed, List<File> written, long elapsedMillis){
+			_total = total;
+			_selected = selected;
+			_changed = Collections.unmodifiableList(changed);
+			_written = Collections.unmodifiableList(written);
+			_elapsedMillis = elapsedMillis;
+		}
+
+		/**
+		 * Get the number of items considered.
+		 *
+		 * @return The number of items
+		 */
+		public int getTotalCount(){
+			return _total;
+		}
+		/**
+		 * Get the number of items the transform was applied to.
+		 *
+		 * @return The number of selected items
+		 */
+		public int getSelectedCount(){
+			return _selected;
+		}
+		/**
+		 * Get the items the transform changed.
+		 *
+		 * @return The changed items
+		 */
+		public List<Item> getChangedItems(){
+			return _changed;
+		}
+		/**
+		 * Get the files that were rewritten.
+		 * Changed items without a file are not written.
+		 *
+		 * @return The written files
+		 */
+		public List<File> getWrittenFiles(){
+			return _written;
+		}
+		/**
+		 * Get the time the batch took.
+		 *
+		 * @return The elapsed time in milliseconds
+		 */
+		public long getElapsedMillis(){
+			return _elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return _selected + " of " + _total + " items selected, " + _changed.size() + " changed, "
+					+ _written.size() + " files written in " + _elapsedMillis + "ms";
+		}
+	}
+
+	/**
+	 * Transform loaded items and write back the changed ones.
+	 *
+	 * @param items The items to consider
+	 * @param selector Chooses the items to transform
+	 * @param transform The edit to apply
+	 * @return The outcome of the batch
+	 * @throws IOException If a transform failed or a file could not be written, nothing is written then
+	 */
+	public static Result apply(Collection<Item> items, final Selector selector, final Transform transform) throws IOException{
+		long start = System.currentTimeMillis();
+		FileTransaction transaction = new FileTransaction();
+		try{
+			List<Callable<Outcome>> tasks = new ArrayList<>(items.size());
+			for (final Item item : items) {
+				tasks.add(createTask(item, selector, transform, transaction));
+			}
+
+			Result result = collect(items.size(), ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), tasks), start);
+			transaction.commit();
+			return result;
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Load item files, transform them and write back the changed ones.
+	 * Each file is loaded, edited and staged by the same task.
+	 *
+	 * @param files The item files to consider
+	 * @param selector Chooses the items to transform
+	 * @param transform The edit to apply
+	 * @return The outcome of the batch
+	 * @throws IOException If a file could not be loaded, a transform failed or a file could not be written, nothing is written then
+	 */
+	public static Result applyToFiles(Collection<File> files, final Selector selector, final Transform transform) throws IOException{
+		long start = System.currentTimeMillis();
+		final FileTransaction transaction = new FileTransaction();
+		try{
+			List<Callable<Outcome>> tasks = new ArrayList<>(files.size());
+			for (final File file : files) {
+				tasks.add(new Callable<Outcome>() {
+					@Override
+					public Outcome call() throws Exception {
+						return createTask(Item.loadFromFile(file), selector, transform, transaction).call();
+					}
+				});
+			}
+
+			Result result = collect(files.size(), ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), tasks), start);
+			transaction.commit();
+			return result;
+		}
+		finally{
+			transaction.close();
+		}
+	}
+
+	/**
+	 * Create the task transforming a single item.
+	 *
+	 * @param item The item
+	 * @param selector Chooses the items to transform
+	 * @param transform The edit to apply
+	 * @param transaction The transaction staging the writes
+	 * @return The task
+	 */
+	private static Callable<Outcome> createTask(final Item item, final Selector selector, final Transform transform, final FileTransaction transaction){
+		return new Callable<Outcome>() {
+			@Override
+			public Outcome call() throws IOException {
+				if(!selector.select(item))
+					return new Outcome(item, false, false, false);
+
+				DirtyFlag dirty = new DirtyFlag();
+				item.addChangeListener(dirty);
+				try{
+					transform.apply(item);
+				}
+				finally{
+					item.removeChangeListener(dirty);
+				}
+
+				boolean written = false;
+				if(dirty.isDirty() && item.getFile() != null)
+					written = item.saveInPlace(transaction);
+				return new Outcome(item, true, dirty.isDirty(), written);
+			}
+		};
+	}
+	/**
+	 * Summarize the outcomes of every item.
+	 *
+	 * @param total The number of items considered
+	 * @param outcomes The outcome of each item
+	 * @param start The time the batch started
+	 * @return The batch result
+	 */
+	private static Result collect(int total, List<Outcome> outcomes, long start){
+		int selected = 0;
+		List<Item> changed = new ArrayList<>();
+		List<File> written = new ArrayList<>();
+		for (Outcome outcome : outcomes) {
+			if(outcome.selected)
+				selected++;
+			if(outcome.changed)
+				changed.add(outcome.item);
+			if(outcome.written)
+				written.add(outcome.item.getFile());
+		}
+		return new Result(total, selected, changed, written, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * What happened to a single item.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Outcome{
+		public final Item item;
+		public final boolean selected;
+		public final boolean changed;
+		public final boolean written;
+
+		public Outcome(Item item, boolean selected, boolean changed, boolean written){
+			this.item = item;
+			this.selected = selected;
+			this.changed = changed;
+			this.written = written;
+		}
+	}
+	/**
+	 * A change listener remembering if any change happened.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class DirtyFlag implements ChangeListener{
+		private boolean _dirty;
+
+		@Override
+		public void changed(List<ChangeEvent> events) {
+			if(!events.isEmpty())
+				_dirty = true;
+		}
+
+		public boolean isDirty(){
+			return _dirty;
+		}
+	}
+}
@@ -0,0 +1,676 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import silver.starbound.data.Item;
+import silver.starbound.data.Item.Rarity;
+import silver.starbound.data.ModInfo;
+import silver.starbound.data.TypedFile;
+import silver.starbound.data.TypedFile.FileType;
+
+/**
+ * A compact binary snapshot of a loaded catalog of items,
+ * mod infos and typed files.
+ * The snapshot is memory mapped and every entry is decoded only
+ * when requested. Entries whose source file changed since the
+ * snapshot was written are loaded from the json source instead.
+ *
+ * <p>The layout is a header, a table of string offsets, a table of
+ * entry offsets, the strings (varint length and utf-8 bytes) and
+ * the entries (varint encoded string references and values).
+ *
+ * @author SilverFishCat
+ *
+ */
+public class CatalogSnapshot {
+	private static final int MAGIC = 0x53424353; // SBCS
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+	private static final int NULL_REFERENCE = 0;
+
+	/**
+	 * The kind of an entry in a snapshot.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public enum EntryType{
+		/**
+		 * An item loaded from an item file.
+		 */
+		ITEM,
+		/**
+		 * A mod info loaded from a modinfo file.
+		 */
+		MOD_INFO,
+		/**
+		 * A file classification.
+		 */
+		TYPED_FILE
+	}
+
+	private final ByteBuffer _buffer;
+	private final int _stringCount;
+	private final int _entryCount;
+	private final String[] _strings;
+
+	/**
+	 * Create a snapshot over a buffer holding a snapshot file.
+	 *
+	 * @param buffer The snapshot content
+	 * @throws IOException If the buffer is not a supported snapshot
+	 */
+	private CatalogSnapshot(ByteBuffer buffer) throws IOException{
+		_buffer = buffer;
+		if(_buffer.capacity() < HEADER_SIZE || _buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a catalog snapshot");
+		if(_buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported catalog snapshot version " + _buffer.getInt(4));
+
+		_stringCount = _buffer.getInt(8);
+		_entryCount = _buffer.getInt(12);
+		if(_stringCount < 0 || _entryCount < 0 ||
+				HEADER_SIZE + 4L * (_stringCount + _entryCount) > _buffer.capacity())
+			throw new IOException("Corrupt catalog snapshot");
+		_strings = new String[_stringCount];
+	}
+
+	/**
+	 * Open a snapshot file by memory mapping it.
+	 *
+	 * @param file The snapshot file
+	 * @return The opened snapshot
+	 * @throws IOException If the file could not be read or is not a supported snapshot
+	 */
+	public static CatalogSnapshot open(File file) throws IOException{
+		if(file == null)
+			throw new NullPointerException("File is null");
+
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Get the number of entries in the snapshot.
+	 *
+	 * @return The number of entries
+	 */
+	public int getEntryCount(){
+		return _entryCount;
+	}
+	/**
+	 * Get the type of an entry.
+	 *
+	 * @param index The index of the entry
+	 * @return The type of the entry
+	 */
+	public EntryType getEntryType(int index){
+		return EntryType.values()[_buffer.get(getEntryOffset(index))];
+	}
+	/**
+	 * Get the source file of an entry.
+	 *
+	 * @param index The index of the entry
+	 * @return The file the entry was loaded from
+	 */
+	public File getSourceFile(int index){
+		Cursor cursor = new Cursor(getEntryOffset(index) + 1);
+		return toFile(readString(cursor));
+	}
+	/**
+	 * Check if the source file of an entry is unchanged since the entry was loaded.
+	 * Entries added without the state of their source are never fresh.
+	 *
+	 * @param index The index of the entry
+	 * @return True if the entry can be used as is
+	 */
+	public boolean isFresh(int index){
+		File source = getSourceFile(index);
+		long length = getSourceLength(index);
+
+		return source != null && length >= 0 && source.isFile()
+				&& source.lastModified() == getSourceLastModified(index) && source.length() == length;
+	}
+	/**
+	 * Get the modification time the source file of an entry had when it was loaded.
+	 *
+	 * @param index The index of the entry
+	 * @return The modification time, -1 if unknown
+	 */
+	public long getSourceLastModified(int index){
+		if(getSourceLength(index) < 0)
+			return -1;
+
+		Cursor cursor = new Cursor(getEntryOffset(index) + 1);
+		readVarInt(cursor);
+		return readVarLong(cursor);
+	}
+	/**
+	 * Get the length the source file of an entry had when it was loaded.
+	 *
+	 * @param index The index of the entry
+	 * @return The length, -1 if unknown
+	 */
+	public long getSourceLength(int index){
+		Cursor cursor = new Cursor(getEntryOffset(index) + 1);
+		readVarInt(cursor);
+		readVarLong(cursor);
+		return readVarLong(cursor) - 1;
+	}
+	/**
+	 * Check if every entry of the snapshot is unchanged.
+	 *
+	 * @return True if every entry is fresh
+	 */
+	public boolean isFresh(){
+		for (int i = 0; i < _entryCount; i++) {
+			if(!isFresh(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get an item entry, reloading it from json if its source changed.
+	 *
+	 * @param index The index of the entry
+	 * @return The item of the entry
+	 * @throws IOException If the entry is stale and its source could not be loaded
+	 */
+	public Item getItem(int index) throws IOException{
+		checkType(index, EntryType.ITEM);
+		if(!isFresh(index))
+			return Item.loadFromFile(getExistingSourceFile(index));
+
+		Cursor cursor = skipEntryHeader(index);
+		String itemName = readString(cursor);
+		int rarity = readVarInt(cursor);
+		File inventoryIconFile = toFile(readString(cursor));
+		String description = readString(cursor);
+		String shortDescription = readString(cursor);
+		List<String> blueprints = readStringList(cursor);
+
+		return new Item(getSourceFile(index), itemName,
+				rarity == NULL_REFERENCE ? null : Rarity.values()[rarity - 1],
+				inventoryIconFile, description, shortDescription, blueprints,
+				getSourceLastModified(index), getSourceLength(index));
+	}
+	/**
+	 * Get a mod info entry, reloading it from json if its source changed.
+	 *
+	 * @param index The index of the entry
+	 * @return The mod info of the entry
+	 * @throws IOException If the entry is stale and its source could not be loaded
+	 */
+	public ModInfo getModInfo(int index) throws IOException{
+		checkType(index, EntryType.MOD_INFO);
+		if(!isFresh(index))
+			return ModInfo.loadFromFile(getExistingSourceFile(index));
+
+		Cursor cursor = skipEntryHeader(index);
+		String modName = readString(cursor);
+		List<String> requires = readStringList(cursor);
+		List<String> includes = readStringList(cursor);
+
+		return new ModInfo(modName, requires, includes);
+	}
+	/**
+	 * Get a typed file entry, reclassifying it if its source changed.
+	 *
+	 * @param index The index of the entry
+	 * @return The typed file of the entry
+	 */
+	public TypedFile getTypedFile(int index){
+		checkType(index, EntryType.TYPED_FILE);
+		if(!isFresh(index))
+			return new TypedFile(getSourceFile(index));
+
+		Cursor cursor = skipEntryHeader(index);
+		int type = readVarInt(cursor);
+
+		return new TypedFile(getSourceFile(index), FileType.values()[type],
+				getSourceLastModified(index), getSourceLength(index));
+	}
+	/**
+	 * Get every item in the snapshot.
+	 *
+	 * @return The items of the snapshot
+	 * @throws IOException If a stale item could not be loaded
+	 */
+	public List<Item> getItems() throws IOException{
+		List<Item> result = new ArrayList<>();
+		for (int i = 0; i < _entryCount; i++) {
+			if(getEntryType(i) == EntryType.ITEM)
+				result.add(getItem(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the source file of a stale entry, which must still exist to be reloaded.
+	 *
+	 * @param index The index of the entry
+	 * @return The source file
+	 * @throws IOException If the source file no longer exists
+	 */
+	private File getExistingSourceFile(int index) throws IOException{
+		File source = getSourceFile(index);
+		if(source == null || !source.isFile())
+			throw new IOException("Source file no longer exists: " + source);
+		return source;
+	}
+	/**
+	 * Get the offset of an entry in the buffer.
+	 *
+	 * @param index The index of the entry
+	 * @return The offset of the entry
+	 */
+	private int getEntryOffset(int index){
+		if(index < 0 || index >= _entryCount)
+			throw new IndexOutOfBoundsException("Entry " + index + " of " + _entryCount);
+		return _buffer.getInt(HEADER_SIZE + 4 * (_stringCount + index));
+	}
+	/**
+	 * Get a cursor positioned after the common entry header.
+	 *
+	 * @param index The index of the entry
+	 * @return A cursor at the start of the entry payload
+	 */
+	private Cursor skipEntryHeader(int index){
+		Cursor cursor = new Cursor(getEntryOffset(index) + 1);
+		readVarInt(cursor);
+		readVarLong(cursor);
+		readVarLong(cursor);
+		return cursor;
+	}
+	/**
+	 * Make sure an entry is of the expected type.
+	 *
+	 * @param index The index of the entry
+	 * @param type The expected type
+	 */
+	private void checkType(int index, EntryType type){
+		if(getEntryType(index) != type)
+			throw new IllegalArgumentException("Entry " + index + " is not of type " + type);
+	}
+	/**
+	 * Read a string reference and resolve it through the string table.
+	 *
+	 * @param cursor The cursor to read from
+	 * @return The referenced string, null for a null reference
+	 */
+	private String readString(Cursor cursor){
+		int reference = readVarInt(cursor);
+		if(reference == NULL_REFERENCE)
+			return null;
+
+		return getString(reference - 1);
+	}
+	/**
+	 * Read a list of string references.
+	 *
+	 * @param cursor The cursor to read from
+	 * @return The referenced strings
+	 */
+	private List<String> readStringList(Cursor cursor){
+		int count = readVarInt(cursor);
+		List<String> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(readString(cursor));
+		}
+		return result;
+	}
+	/**
+	 * Get a string from the string table, decoding it on first use.
+	 *
+	 * @param index The index of the string
+	 * @return The string
+	 */
+	private String getString(int index){
+		synchronized (_strings) {
+			String result = _strings[index];
+			if(result == null){
+				Cursor cursor = new Cursor(_buffer.getInt(HEADER_SIZE + 4 * index));
+				int length = readVarInt(cursor);
+				byte[] bytes = new byte[length];
+				for (int i = 0; i < length; i++) {
+					bytes[i] = _buffer.get(cursor.position++);
+				}
+				result = new String(bytes, StandardCharsets.UTF_8);
+				_strings[index] = result;
+			}
+			return result;
+		}
+	}
+	/**
+	 * Read an unsigned varint.
+	 *
+	 * @param cursor The cursor to read from
+	 * @return The value read
+	 */
+	private int readVarInt(Cursor cursor){
+		return (int)readVarLong(cursor);
+	}
+	/**
+	 * Read an unsigned varlong.
+	 *
+	 * @param cursor The cursor to read from
+	 * @return The value read
+	 */
+	private long readVarLong(Cursor cursor){
+		long result = 0;
+		int shift = 0;
+		byte current;
+		do{
+			current = _buffer.get(cursor.position++);
+			result |= (long)(current & 0x7f) << shift;
+			shift += 7;
+		}while((current & 0x80) != 0);
+
+		return result;
+	}
+	/**
+	 * Convert a stored path into a file.
+	 *
+	 * @param path The stored path
+	 * @return The file, null if the path is null
+	 */
+	private static File toFile(String path){
+		return path == null ? null : new File(path);
+	}
+
+	/**
+	 * A read position inside the snapshot buffer.
+	 * Keeps reads independent of the shared buffer position.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Cursor{
+		public int position;
+
+		public Cursor(int position){
+			this.position = position;
+		}
+	}
+
+	/**
+	 * A builder that collects loaded objects and writes them as a snapshot.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Builder{
+		private final Map<String, Integer> _stringIndices;
+		private final List<String> _strings;
+		private final List<byte[]> _entries;
+
+		/**
+		 * Create a new empty snapshot builder.
+		 */
+		public Builder(){
+			_stringIndices = new HashMap<>();
+			_strings = new ArrayList<>();
+			_entries = new ArrayList<>();
+		}
+
+		/**
+		 * Add a loaded item to the snapshot.
+		 * The item is fresh while its file is as it was when the item was loaded.
+		 *
+		 * @param item The item to add, must have a file
+		 * @return This builder
+		 */
+		public Builder addItem(Item item){
+			EntryWriter entry = new EntryWriter(EntryType.ITEM, item.getFile(), item.getSourceLastModified(), item.getSourceLength());
+			entry.writeString(item.getItemName());
+			entry.writeVarLong(item.getRarity() == null ? NULL_REFERENCE : item.getRarity().ordinal() + 1);
+			entry.writeString(item.getInventoryIconFile() == null ? null : item.getInventoryIconFile().getAbsolutePath());
+			entry.writeString(item.getDescription());
+			entry.writeString(item.getShortDescription());
+			entry.writeStrings(item.getBlueprintsLearnedOnPickup());
+			_entries.add(entry.toByteArray());
+			return this;
+		}
+		/**
+		 * Load a mod info file and add it to the snapshot.
+		 *
+		 * @param file The modinfo file
+		 * @return This builder
+		 * @throws IOException If the modinfo file could not be loaded
+		 */
+		public Builder addModInfo(File file) throws IOException{
+			long lastModified = file.lastModified();
+			long length = file.length();
+			return addModInfo(file, ModInfo.loadFromFile(file), lastModified, length);
+		}
+		/**
+		 * Add a loaded mod info to the snapshot.
+		 * Since the state of its file is not known, it is always reloaded.
+		 *
+		 * @param file The modinfo file the mod info was loaded from
+		 * @param modInfo The mod info to add
+		 * @return This builder
+		 */
+		public Builder addModInfo(File file, ModInfo modInfo){
+			return addModInfo(file, modInfo, -1, -1);
+		}
+		/**
+		 * Add a loaded mod info to the snapshot.
+		 *
+		 * @param file The modinfo file the mod info was loaded from
+		 * @param modInfo The mod info to add
+		 * @param lastModified The modification time of the file before it was loaded
+		 * @param length The length of the file before it was loaded
+		 * @return This builder
+		 */
+		public Builder addModInfo(File file, ModInfo modInfo, long lastModified, long length){
+			EntryWriter entry = new EntryWriter(EntryType.MOD_INFO, file, lastModified, length);
+			entry.writeString(modInfo.getModName());
+			entry.writeStrings(modInfo.getRequires());
+			entry.writeStrings(modInfo.getIncludes());
+			_entries.add(entry.toByteArray());
+			return this;
+		}
+		/**
+		 * Add a file classification to the snapshot.
+		 * The classification is fresh while the file is as it was when it was detected.
+		 *
+		 * @param typedFile The typed file to add
+		 * @return This builder
+		 */
+		public Builder addTypedFile(TypedFile typedFile){
+			EntryWriter entry = new EntryWriter(EntryType.TYPED_FILE, typedFile.getFile(),
+					typedFile.getSourceLastModified(), typedFile.getSourceLength());
+			FileType type = typedFile.getFileType() == null ? FileType.UNKNOWN : typedFile.getFileType();
+			entry.writeVarLong(type.ordinal());
+			_entries.add(entry.toByteArray());
+			return this;
+		}
+		/**
+		 * Write the snapshot into a file, replacing it atomically.
+		 *
+		 * @param target The snapshot file to write
+		 * @throws IOException If there was an error writing the snapshot
+		 */
+		public void write(File target) throws IOException{
+			FileTransaction transaction = new FileTransaction();
+			try{
+				OutputStream stream = transaction.openOutputStream(target);
+				try{
+					writeTo(stream);
+				}
+				finally{
+					stream.close();
+				}
+				transaction.commit();
+			}
+			finally{
+				transaction.close();
+			}
+		}
+		/**
+		 * Write the snapshot into a stream.
+		 *
+		 * @param stream The stream to write into
+		 * @throws IOException If there was an error writing the snapshot
+		 */
+		public void writeTo(OutputStream stream) throws IOException{
+			List<byte[]> encodedStrings = new ArrayList<>(_strings.size());
+			for (String string : _strings) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				ByteArrayOutputStream encoded = new ByteArrayOutputStream(bytes.length + 5);
+				writeVarLong(encoded, bytes.length);
+				encoded.write(bytes);
+				encodedStrings.add(encoded.toByteArray());
+			}
+
+			DataOutputStream output = new DataOutputStream(stream);
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(encodedStrings.size());
+			output.writeInt(_entries.size());
+
+			long offset = HEADER_SIZE + 4L * (encodedStrings.size() + _entries.size());
+			for (byte[] string : encodedStrings) {
+				output.writeInt(checkOffset(offset));
+				offset += string.length;
+			}
+			for (byte[] entry : _entries) {
+				output.writeInt(checkOffset(offset));
+				offset += entry.length;
+			}
+			for (byte[] string : encodedStrings) {
+				output.write(string);
+			}
+			for (byte[] entry : _entries) {
+				output.write(entry);
+			}
+			output.flush();
+		}
+
+		/**
+		 * Get the string table reference of a string, adding it if needed.
+		 *
+		 * @param string The string to reference
+		 * @return The reference of the string
+		 */
+		private int reference(String string){
+			if(string == null)
+				return NULL_REFERENCE;
+
+			Integer index = _stringIndices.get(string);
+			if(index == null){
+				index = _strings.size();
+				_strings.add(string);
+				_stringIndices.put(string, index);
+			}
+			return index + 1;
+		}
+		/**
+		 * Make sure an offset can be stored in the offset tables.
+		 *
+		 * @param offset The offset to store
+		 * @return The offset as an int
+		 * @throws IOException If the snapshot is too large
+		 */
+		private static int checkOffset(long offset) throws IOException{
+			if(offset > Integer.MAX_VALUE)
+				throw new IOException("Catalog snapshot is too large");
+			return (int)offset;
+		}
+
+		/**
+		 * An encoder of a single entry.
+		 *
+		 * @author SilverFishCat
+		 *
+		 */
+		private class EntryWriter{
+			private final ByteArrayOutputStream _bytes;
+
+			public EntryWriter(EntryType type, File source, long lastModified, long length){
+				if(source == null)
+					throw new IllegalArgumentException("Snapshot entries must have a source file");
+
+				// A length of 0 marks a source whose state is unknown
+				_bytes = new ByteArrayOutputStream();
+				_bytes.write(type.ordinal());
+				writeString(source.getAbsolutePath());
+				writeVarLong(Math.max(0, lastModified));
+				writeVarLong(length < 0 ? 0 : length + 1);
+			}
+
+			public void writeString(String string){
+				writeVarLong(reference(string));
+			}
+			public void writeStrings(Collection<String> strings){
+				if(strings == null){
+					writeVarLong(0);
+					return;
+				}
+
+				writeVarLong(strings.size());
+				for (String string : strings) {
+					writeString(string);
+				}
+			}
+			public void writeVarLong(long value){
+				Builder.writeVarLong(_bytes, value);
+			}
+			public byte[] toByteArray(){
+				return _bytes.toByteArray();
+			}
+		}
+
+		/**
+		 * Write an unsigned varlong.
+		 *
+		 * @param stream The stream to write into
+		 * @param value The value to write
+		 */
+		private static void writeVarLong(ByteArrayOutputStream stream, long value){
+			while((value & ~0x7fL) != 0){
+				stream.write((int)((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			stream.write((int)value);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import silver.starbound.data.Item;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Utilities for exporting and importing whole item catalogs.
+ * Catalogs are stored as json lines, one compact json object per item,
+ * and are streamed so only a single item is held in memory at a time.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class CatalogUtil {
+	private static final String JSON_FILE_KEY = "file";
+	private static final String JSON_ITEM_KEY = "item";
+	private static final char LINE_SEPARATOR = '\n';
+
+	/**
+	 * A receiver of items read from a catalog.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public interface ItemHandler{
+		/**
+		 * Handle a single item read from a catalog.
+		 *
+		 * @param item The item read
+		 * @throws IOException If the item could not be handled
+		 */
+		void handle(Item item) throws IOException;
+	}
+
+	/**
+	 * Export items into a json lines catalog file.
+	 * The items are only iterated once, so a lazily loading iterable
+	 * keeps the export in constant memory.
+	 *
+	 * @param items The items to export
+	 * @param target The catalog file to write
+	 * @return The number of items exported
+	 * @throws IOException If there was an error writing the catalog
+	 */
+	public static int exportJsonLines(Iterable<Item> items, File target) throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			int count;
+			Writer writer = transaction.openWriter(target);
+			try{
+				count = exportJsonLines(items, writer);
+			}
+			finally{
+				writer.close();
+			}
+			transaction.commit();
+			return count;
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Export items as json lines into a writer.
+	 * The writer is flushed but not closed.
+	 *
+	 * @param items The items to export
+	 * @param writer The writer to write into
+	 * @return The number of items exported
+	 * @throws IOException If there was an error writing the catalog
+	 */
+	public static int exportJsonLines(Iterable<Item> items, Writer writer) throws IOException{
+		int count = 0;
+		for (Item item : items) {
+			JsonWriter jsonWriter = new JsonWriter(writer);
+			jsonWriter.beginObject();
+			if(item.getFile() != null)
+				jsonWriter.name(JSON_FILE_KEY).value(item.getFile().getAbsolutePath());
+			jsonWriter.name(JSON_ITEM_KEY);
+			item.writeTo(jsonWriter);
+			jsonWriter.endObject();
+			jsonWriter.flush();
+			writer.write(LINE_SEPARATOR);
+			count++;
+		}
+		writer.flush();
+
+		return count;
+	}
+	/**
+	 * Import every item of a json lines catalog file.
+	 * Each item is handed over as soon as it is read.
+	 *
+	 * @param source The catalog file to read
+	 * @param handler The receiver of the items
+	 * @return The number of items imported
+	 * @throws IOException If there was an error reading the catalog
+	 */
+	public static int importJsonLines(File source, ItemHandler handler) throws IOException{
+		if(source == null)
+			throw new NullPointerException("File is null");
+
+		try(JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8)))){
+			return importJsonLines(reader, handler);
+		}
+	}
+	/**
+	 * Import every item from a json lines reader.
+	 *
+	 * @param reader The reader of the catalog, positioned before the first line
+	 * @param handler The receiver of the items
+	 * @return The number of items imported
+	 * @throws IOException If there was an error reading the catalog
+	 */
+	public static int importJsonLines(JsonReader reader, ItemHandler handler) throws IOException{
+		// Lenient readers accept a stream of top level values
+		reader.setLenient(true);
+
+		int count = 0;
+		try{
+			while(reader.peek() != JsonToken.END_DOCUMENT){
+				File file = null;
+				Item item = null;
+
+				reader.beginObject();
+				while(reader.hasNext()){
+					String name = reader.nextName();
+					if(name.equals(JSON_FILE_KEY))
+						file = new File(reader.nextString());
+					else if(name.equals(JSON_ITEM_KEY))
+						item = Item.readFrom(reader, null);
+					else
+						reader.skipValue();
+				}
+				reader.endObject();
+
+				if(item != null){
+					if(file != null)
+						item.setFile(file);
+					handler.handle(item);
+					count++;
+				}
+			}
+		}
+		catch(JsonParseException | IllegalStateException e){
+			throw new IOException("Malformed catalog at item " + count, e);
+		}
+
+		return count;
+	}
+}
@@ -0,0 +1,274 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import silver.starbound.data.Mod;
+
+/**
+ * Finds byte identical files across mod folders.
+ * Files are grouped by size first, and only files sharing a size
+ * with another file are hashed, in parallel.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class DuplicateAnalyzer {
+	private static final String LINK_TEMP_SUFFIX = ".link.tmp";
+
+	/**
+	 * A group of files with identical content.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class DuplicateCluster{
+		private final long _size;
+		private final String _hash;
+		private final List<File> _files;
+
+		private DuplicateCluster(long size, String hash, List<File> files){
+			_size = size;
+			_hash = hash;
+			_files = Collections.unmodifiableList(files);
+		}
+
+		/**
+		 * Get the size of each file in the cluster.
+		 *
+		 * @return The size of a single file in bytes
+		 */
+		public long getSize(){
+			return _size;
+		}
+		/**
+		 * Get the content hash shared by the files.
+		 *
+		 * @return The content hash
+		 */
+		public String getHash(){
+			return _hash;
+		}
+		/**
+		 * Get the identical files, in the order they were found.
+		 *
+		 * @return The identical files
+		 */
+		public List<File> getFiles(){
+			return _files;
+		}
+		/**
+		 * Get the bytes that would be saved by keeping a single copy.
+		 *
+		 * @return The bytes taken by the extra copies
+		 */
+		public long getWastedBytes(){
+			return _size * (_files.size() - 1);
+		}
+	}
+
+	/**
+	 * Find the duplicate files across the folders of the given mods.
+	 *
+	 * @param mods The mods to analyze
+	 * @return The duplicate clusters, most wasteful first
+	 * @throws IOException If the folders could not be read
+	 */
+	public static List<DuplicateCluster> findDuplicates(Collection<Mod> mods) throws IOException{
+		List<File> folders = new ArrayList<>(mods.size());
+		for (Mod mod : mods) {
+			if(mod.isFolderValid())
+				folders.add(mod.getFolder());
+		}
+		return findDuplicatesInFolders(folders);
+	}
+	/**
+	 * Find the duplicate files across the given folders.
+	 *
+	 * A file reached through several paths, by overlapping folders or
+	 * hard links, is counted once.
+	 *
+	 * @param folders The folders to analyze
+	 * @return The duplicate clusters, most wasteful first
+	 * @throws IOException If the folders could not be read
+	 */
+	public static List<DuplicateCluster> findDuplicatesInFolders(Collection<File> folders) throws IOException{
+		// Only files sharing a size can be identical
+		Map<Long, List<File>> bySize = new HashMap<>();
+		Set<Object> seen = new HashSet<>();
+		for (File folder : folders) {
+			for (File file : PathUtil.listFiles(folder)) {
+				BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+				long size = attributes.size();
+				if(size == 0)
+					continue;
+
+				// Overlapping folders and hard links reach the same data through several paths
+				Object key = attributes.fileKey() != null ? attributes.fileKey() : file.getCanonicalFile();
+				if(!seen.add(key))
+					continue;
+
+				List<File> sameSize = bySize.get(size);
+				if(sameSize == null){
+					sameSize = new ArrayList<>(1);
+					bySize.put(size, sameSize);
+				}
+				sameSize.add(file);
+			}
+		}
+
+		List<List<File>> groups = new ArrayList<>();
+		List<File> candidates = new ArrayList<>();
+		for (List<File> sameSize : bySize.values()) {
+			if(sameSize.size() > 1){
+				groups.add(sameSize);
+				candidates.addAll(sameSize);
+			}
+		}
+
+		List<Callable<String>> tasks = new ArrayList<>(candidates.size());
+		for (final File candidate : candidates) {
+			tasks.add(new Callable<String>() {
+				@Override
+				public String call() throws IOException {
+					return HashUtil.hashFile(candidate);
+				}
+			});
+		}
+		List<String> hashes = ExecutorUtil.invokeAll(ExecutorUtil.Strategy.cpu(), tasks);
+
+		// The hashes are in candidate order, which is group order
+		List<DuplicateCluster> result = new ArrayList<>();
+		int hashIndex = 0;
+		for (List<File> sameSize : groups) {
+			Map<String, List<File>> byHash = new LinkedHashMap<>();
+			for (File file : sameSize) {
+				String hash = hashes.get(hashIndex++);
+				List<File> sameContent = byHash.get(hash);
+				if(sameContent == null){
+					sameContent = new ArrayList<>(2);
+					byHash.put(hash, sameContent);
+				}
+				sameContent.add(file);
+			}
+
+			long size = sameSize.get(0).length();
+			for (Map.Entry<String, List<File>> entry : byHash.entrySet()) {
+				if(entry.getValue().size() > 1)
+					result.add(new DuplicateCluster(size, entry.getKey(), entry.getValue()));
+			}
+		}
+		Collections.sort(result, new Comparator<DuplicateCluster>() {
+			@Override
+			public int compare(DuplicateCluster first, DuplicateCluster second) {
+				return Long.compare(second.getWastedBytes(), first.getWastedBytes());
+			}
+		});
+
+		return result;
+	}
+	/**
+	 * Replace every extra copy in the clusters with a hard link to the first file.
+	 * Meant for build output, since edits to any linked file change all of them,
+	 * so every file must be inside the given root. All files are checked before
+	 * anything is linked, so a cluster that cannot be linked changes nothing.
+	 *
+	 * @param root The build or output folder holding the files
+	 * @param clusters The duplicate clusters to link
+	 * @return The number of files replaced by links
+	 * @throws IOException If a file is outside the root, on another file store than
+	 * its original, or a link could not be created
+	 */
+	public static int linkDuplicates(File root, Collection<DuplicateCluster> clusters) throws IOException{
+		Path realRoot = root.toPath().toRealPath();
+		if(!Files.isDirectory(realRoot))
+			throw new IOException("Not a folder: " + root);
+		for (DuplicateCluster cluster : clusters) {
+			Path original = cluster.getFiles().get(0).toPath();
+			checkLinkable(realRoot, original);
+			FileStore store = Files.getFileStore(original);
+			for (File copy : cluster.getFiles().subList(1, cluster.getFiles().size())) {
+				checkLinkable(realRoot, copy.toPath());
+				if(!Files.getFileStore(copy.toPath()).equals(store))
+					throw new IOException("Cannot link across file stores: " + copy + " to " + original);
+			}
+		}
+
+		int linked = 0;
+		for (DuplicateCluster cluster : clusters) {
+			Path original = cluster.getFiles().get(0).toPath();
+			for (File copy : cluster.getFiles().subList(1, cluster.getFiles().size())) {
+				Path target = copy.toPath();
+				if(Files.isSameFile(original, target))
+					continue;
+
+				// Link beside the copy first, so the copy is never missing
+				Path temp = target.resolveSibling(target.getFileName() + LINK_TEMP_SUFFIX);
+				Files.deleteIfExists(temp);
+				Files.createLink(temp, original);
+				try{
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch(IOException ex){
+					Files.deleteIfExists(temp);
+					throw ex;
+				}
+				linked++;
+			}
+		}
+
+		return linked;
+	}
+	/**
+	 * Check that a file is a regular file inside the root folder.
+	 *
+	 * @param realRoot The real path of the root folder
+	 * @param file The file
+	 * @throws IOException If the file is not a regular file inside the root
+	 */
+	private static void checkLinkable(Path realRoot, Path file) throws IOException{
+		if(!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+			throw new IOException("Not a regular file: " + file);
+		if(!file.toRealPath().startsWith(realRoot))
+			throw new IOException("File is outside of " + realRoot + ": " + file);
+	}
+}
@@ -0,0 +1,194 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small benchmark comparing the executor strategies of {@link ExecutorUtil}.
+ * Each workload runs a batch of tasks on every strategy, and on a cached
+ * platform thread pool, which is the io fallback before java 21.
+ * The median time of several rounds is printed, after warm up rounds.
+ * <p>
+ * Usage: ExecutorBenchmark [folder to hash]
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ExecutorBenchmark {
+	private static final int WARM_UP_ROUNDS = 2;
+	private static final int ROUNDS = 5;
+	private static final int BLOCKING_TASKS = 500;
+	private static final long BLOCKING_MILLIS = 5;
+	private static final int CPU_TASKS = 200;
+	private static final int CPU_BUFFER_SIZE = 256 * 1024;
+
+	/**
+	 * Run the benchmark and print the results.
+	 *
+	 * @param args An optional folder whose files are hashed as a real io workload
+	 * @throws Exception If a workload failed
+	 */
+	public static void main(String[] args) throws Exception{
+		Map<String, ExecutorService> executors = new LinkedHashMap<>();
+		executors.put("fork join", ExecutorUtil.getExecutor(ExecutorUtil.Strategy.FORK_JOIN));
+		executors.put(ExecutorUtil.isVirtualThreadsSupported() ? "virtual threads" : "virtual threads (fallback)",
+				ExecutorUtil.getExecutor(ExecutorUtil.Strategy.VIRTUAL_THREADS));
+		executors.put("fixed", ExecutorUtil.getExecutor(ExecutorUtil.Strategy.FIXED));
+		ExecutorService cached = Executors.newCachedThreadPool();
+		executors.put("cached platform threads", cached);
+
+		Map<String, List<Callable<Object>>> workloads = new LinkedHashMap<>();
+		workloads.put("blocking " + BLOCKING_TASKS + "x" + BLOCKING_MILLIS + "ms", createBlockingTasks());
+		workloads.put("sha-256 " + CPU_TASKS + "x" + (CPU_BUFFER_SIZE / 1024) + "kb", createCpuTasks());
+		if(args.length > 0)
+			workloads.put("hash files of " + args[0], createFileTasks(new File(args[0])));
+
+		try{
+			for (Map.Entry<String, List<Callable<Object>>> workload : workloads.entrySet()) {
+				System.out.println(workload.getKey() + " (" + workload.getValue().size() + " tasks)");
+				for (Map.Entry<String, ExecutorService> executor : executors.entrySet()) {
+					long millis = measure(executor.getValue(), workload.getValue());
+					System.out.println(String.format("  %-28s %8d ms", executor.getKey(), millis));
+				}
+			}
+		}
+		finally{
+			cached.shutdown();
+		}
+	}
+
+	/**
+	 * Measure the median time of running the tasks on an executor.
+	 *
+	 * @param executor The executor
+	 * @param tasks The tasks
+	 * @return The median time in milliseconds
+	 * @throws Exception If a task failed
+	 */
+	private static long measure(ExecutorService executor, List<Callable<Object>> tasks) throws Exception{
+		long[] times = new long[ROUNDS];
+		for (int round = -WARM_UP_ROUNDS; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			run(executor, tasks);
+			if(round >= 0)
+				times[round] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+		return TimeUnit.NANOSECONDS.toMillis(times[ROUNDS / 2]);
+	}
+	/**
+	 * Run every task and wait for all of them.
+	 *
+	 * @param executor The executor
+	 * @param tasks The tasks
+	 * @throws Exception If a task failed
+	 */
+	private static void run(ExecutorService executor, List<Callable<Object>> tasks) throws Exception{
+		List<Future<Object>> futures = new ArrayList<>(tasks.size());
+		for (Callable<Object> task : tasks) {
+			futures.add(executor.submit(task));
+		}
+		for (Future<Object> future : futures) {
+			try{
+				future.get();
+			}
+			catch(ExecutionException ex){
+				throw (Exception)ex.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Create tasks that only wait, like reads from a slow disk.
+	 *
+	 * @return The tasks
+	 */
+	private static List<Callable<Object>> createBlockingTasks(){
+		List<Callable<Object>> result = new ArrayList<>(BLOCKING_TASKS);
+		for (int i = 0; i < BLOCKING_TASKS; i++) {
+			result.add(new Callable<Object>() {
+				@Override
+				public Object call() throws InterruptedException {
+					Thread.sleep(BLOCKING_MILLIS);
+					return null;
+				}
+			});
+		}
+		return result;
+	}
+	/**
+	 * Create tasks that only compute.
+	 *
+	 * @return The tasks
+	 */
+	private static List<Callable<Object>> createCpuTasks(){
+		final byte[] buffer = new byte[CPU_BUFFER_SIZE];
+		Arrays.fill(buffer, (byte)7);
+
+		List<Callable<Object>> result = new ArrayList<>(CPU_TASKS);
+		for (int i = 0; i < CPU_TASKS; i++) {
+			result.add(new Callable<Object>() {
+				@Override
+				public Object call() throws NoSuchAlgorithmException {
+					return MessageDigest.getInstance("SHA-256").digest(buffer);
+				}
+			});
+		}
+		return result;
+	}
+	/**
+	 * Create tasks hashing every file of a folder.
+	 *
+	 * @param folder The folder
+	 * @return The tasks
+	 * @throws IOException If the folder could not be listed
+	 */
+	private static List<Callable<Object>> createFileTasks(File folder) throws IOException{
+		List<File> files = PathUtil.listFiles(folder);
+		List<Callable<Object>> result = new ArrayList<>(files.size());
+		for (final File file : files) {
+			result.add(new Callable<Object>() {
+				@Override
+				public Object call() throws IOException {
+					return HashUtil.hashFile(file);
+				}
+			});
+		}
+		return result;
+	}
+}
@@ -0,0 +1,271 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utilities for running work in parallel.
+ * Every parallel path in the library gets its executor from here,
+ * so the strategy can be picked in one place.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ExecutorUtil {
+	/**
+	 * A way of running parallel work.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public enum Strategy{
+		/**
+		 * A work stealing pool sized to the processor count.
+		 * Best for cpu bound work such as parsing and hashing.
+		 */
+		FORK_JOIN,
+		/**
+		 * A new virtual thread for every task.
+		 * Best for blocking io, falls back to a cached thread pool
+		 * when the jvm has no virtual threads (before java 21).
+		 */
+		VIRTUAL_THREADS,
+		/**
+		 * A fixed pool of platform threads.
+		 */
+		FIXED;
+
+		/**
+		 * Get the strategy to use for cpu bound work.
+		 *
+		 * @return The strategy for cpu bound work
+		 */
+		public static Strategy cpu(){
+			return FORK_JOIN;
+		}
+		/**
+		 * Get the strategy to use for io bound work.
+		 *
+		 * @return The strategy for io bound work
+		 */
+		public static Strategy io(){
+			return VIRTUAL_THREADS;
+		}
+	}
+
+	private static final String THREAD_NAME_PREFIX = "sbmodmake-";
+
+	private static ExecutorService _forkJoinExecutor;
+	private static ExecutorService _virtualThreadExecutor;
+	private static ExecutorService _fixedExecutor;
+	private static Boolean _virtualThreadsSupported;
+
+	/**
+	 * Get the shared executor for the given strategy.
+	 * The shared executors must not be shut down by the caller.
+	 *
+	 * @param strategy The strategy of the executor
+	 * @return The shared executor of the given strategy
+	 */
+	public static synchronized ExecutorService getExecutor(Strategy strategy){
+		if(strategy == null)
+			throw new NullPointerException("Strategy is null");
+
+		switch (strategy) {
+			case FORK_JOIN:
+				if(_forkJoinExecutor == null)
+					_forkJoinExecutor = new ForkJoinPool(getProcessorCount());
+				return _forkJoinExecutor;
+			case VIRTUAL_THREADS:
+				if(_virtualThreadExecutor == null)
+					_virtualThreadExecutor = createVirtualThreadExecutor();
+				return _virtualThreadExecutor;
+			case FIXED:
+			default:
+				if(_fixedExecutor == null)
+					_fixedExecutor = Executors.newFixedThreadPool(getProcessorCount(), new DaemonThreadFactory("fixed"));
+				return _fixedExecutor;
+		}
+	}
+	/**
+	 * Get the shared executor for cpu bound work.
+	 *
+	 * @return The shared cpu executor
+	 */
+	public static ExecutorService getCpuExecutor(){
+		return getExecutor(Strategy.cpu());
+	}
+	/**
+	 * Get the shared executor for io bound work.
+	 *
+	 * @return The shared io executor
+	 */
+	public static ExecutorService getIOExecutor(){
+		return getExecutor(Strategy.io());
+	}
+	/**
+	 * Check if this jvm can run virtual threads.
+	 *
+	 * @return True if virtual threads are available
+	 */
+	public static synchronized boolean isVirtualThreadsSupported(){
+		if(_virtualThreadsSupported == null){
+			try{
+				Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				_virtualThreadsSupported = true;
+			}
+			catch(NoSuchMethodException ex){
+				_virtualThreadsSupported = false;
+			}
+		}
+		return _virtualThreadsSupported;
+	}
+	/**
+	 * Run all the given tasks with the given strategy and wait for them.
+	 * The results are in the order of the tasks.
+	 *
+	 * @param strategy The strategy to run the tasks with
+	 * @param tasks The tasks to run
+	 * @return The results of the tasks
+	 * @throws IOException If any of the tasks failed
+	 */
+	public static <T> List<T> invokeAll(Strategy strategy, Collection<? extends Callable<T>> tasks) throws IOException{
+		List<T> results = new ArrayList<>(tasks.size());
+		if(tasks.isEmpty())
+			return results;
+
+		ExecutorService executor = getExecutor(strategy);
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		try{
+			for (Callable<T> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			for (Future<T> future : futures) {
+				results.add(getResult(future));
+			}
+		}
+		finally{
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+
+		return results;
+	}
+	/**
+	 * Wait for a future, translating its failure into an io exception.
+	 *
+	 * @param future The future to wait for
+	 * @return The result of the future
+	 * @throws IOException If the task failed or the wait was interrupted
+	 */
+	public static <T> T getResult(Future<T> future) throws IOException{
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for task", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			// Fork join pools wrap checked exceptions of callables, and may wrap them again across threads
+			Throwable wrapped = cause;
+			while(wrapped != null && wrapped.getClass() == RuntimeException.class)
+				wrapped = wrapped.getCause();
+			if(wrapped instanceof IOException)
+				cause = wrapped;
+			if(cause instanceof IOException)
+				throw (IOException)cause;
+			else if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			else if(cause instanceof Error)
+				throw (Error)cause;
+			else
+				throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Get the number of processors available to the jvm.
+	 *
+	 * @return The number of processors
+	 */
+	private static int getProcessorCount(){
+		return Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+	/**
+	 * Create a virtual thread per task executor, or a cached
+	 * platform thread pool if virtual threads are not available.
+	 * The fallback is not bounded, since io tasks may wait on other
+	 * io tasks and a full pool would deadlock.
+	 *
+	 * @return An executor for io bound work
+	 */
+	private static ExecutorService createVirtualThreadExecutor(){
+		if(isVirtualThreadsSupported()){
+			try{
+				return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			}
+			catch(ReflectiveOperationException | RuntimeException ex){
+				// Fall back to platform threads
+			}
+		}
+
+		return Executors.newCachedThreadPool(new DaemonThreadFactory("io"));
+	}
+
+	/**
+	 * A thread factory of named daemon threads, so pools never
+	 * keep the application alive.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory{
+		private final String _name;
+		private final AtomicInteger _count;
+
+		public DaemonThreadFactory(String name){
+			_name = THREAD_NAME_PREFIX + name + "-";
+			_count = new AtomicInteger();
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, _name + _count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,344 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A shared cache of file system checks.
+ * Each path is checked at most once per time to live, and paths
+ * inside watched directories stay cached until the watcher reports a
+ * change to them.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class FileStatCache {
+	/**
+	 * The default time a check is trusted, in milliseconds.
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 1000;
+
+	private static FileStatCache _defaultCache;
+
+	private final Map<String, Stat> _stats;
+	private final Map<WatchKey, Path> _watched;
+	private final Set<Path> _watchedPaths;
+	private final AtomicLong _changes;
+	private final AtomicLong _hits;
+	private final AtomicLong _misses;
+	private volatile long _timeToLive;
+	private WatchService _watchService;
+
+	/**
+	 * Create a stat cache.
+	 *
+	 * @param timeToLive The time a check is trusted, in milliseconds
+	 */
+	public FileStatCache(long timeToLive){
+		_stats = new ConcurrentHashMap<>();
+		_watched = new ConcurrentHashMap<>();
+		_watchedPaths = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+		_changes = new AtomicLong();
+		_hits = new AtomicLong();
+		_misses = new AtomicLong();
+		setTimeToLive(timeToLive);
+	}
+
+	/**
+	 * Get the cache shared by the validation checks.
+	 *
+	 * @return The shared stat cache
+	 */
+	public static synchronized FileStatCache getDefault(){
+		if(_defaultCache == null)
+			_defaultCache = new FileStatCache(DEFAULT_TIME_TO_LIVE_MILLIS);
+		return _defaultCache;
+	}
+
+	/**
+	 * Check if a file exists.
+	 *
+	 * @param file The file to check, may be null
+	 * @return True if the file exists
+	 */
+	public boolean exists(File file){
+		return file != null && getStat(file).exists;
+	}
+	/**
+	 * Check if a file is a directory.
+	 *
+	 * @param file The file to check, may be null
+	 * @return True if the file is a directory
+	 */
+	public boolean isDirectory(File file){
+		return file != null && getStat(file).directory;
+	}
+	/**
+	 * Check if a file is a normal file.
+	 *
+	 * @param file The file to check, may be null
+	 * @return True if the file is a normal file
+	 */
+	public boolean isFile(File file){
+		return file != null && getStat(file).regularFile;
+	}
+	/**
+	 * Get the length of a file.
+	 *
+	 * @param file The file to check
+	 * @return The length of the file, 0 if it does not exist
+	 */
+	public long length(File file){
+		return getStat(file).length;
+	}
+	/**
+	 * Get the last modification time of a file.
+	 *
+	 * @param file The file to check
+	 * @return The modification time, 0 if the file does not exist
+	 */
+	public long lastModified(File file){
+		return getStat(file).lastModified;
+	}
+
+	/**
+	 * Forget the cached check of a file, after changing it.
+	 *
+	 * @param file The changed file
+	 */
+	public void invalidate(File file){
+		if(file != null)
+			_stats.remove(file.getAbsolutePath());
+	}
+	/**
+	 * Forget every cached check.
+	 */
+	public void clear(){
+		_stats.clear();
+	}
+	/**
+	 * Watch a directory, so checks of its direct children are kept until
+	 * they change instead of expiring.
+	 *
+	 * @param directory The directory to watch
+	 * @throws IOException If the directory could not be watched
+	 */
+	public void watch(File directory) throws IOException{
+		Path path = directory.getAbsoluteFile().toPath();
+		WatchKey key = path.register(getWatchService(),
+				StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		_watched.put(key, path);
+		_watchedPaths.add(path);
+		clearChildren(path);
+	}
+	/**
+	 * Get the time a check is trusted.
+	 *
+	 * @return The time to live, in milliseconds
+	 */
+	public long getTimeToLive(){
+		return _timeToLive;
+	}
+	/**
+	 * Set the time a check is trusted.
+	 *
+	 * @param timeToLive The time to live, in milliseconds
+	 */
+	public void setTimeToLive(long timeToLive){
+		if(timeToLive < 0)
+			throw new IllegalArgumentException("Time to live is negative");
+		_timeToLive = timeToLive;
+	}
+	/**
+	 * Get the number of checks answered from the cache.
+	 *
+	 * @return The hit count
+	 */
+	public long getHits(){
+		return _hits.get();
+	}
+	/**
+	 * Get the number of checks that touched the file system.
+	 *
+	 * @return The miss count
+	 */
+	public long getMisses(){
+		return _misses.get();
+	}
+
+	/**
+	 * Get the cached check of a file, checking it again if expired.
+	 *
+	 * @param file The file
+	 * @return The file check
+	 */
+	private Stat getStat(File file){
+		String key = file.getAbsolutePath();
+		long now = System.currentTimeMillis();
+		Stat stat = _stats.get(key);
+		if(stat != null && now < stat.expires){
+			_hits.incrementAndGet();
+			return stat;
+		}
+
+		_misses.incrementAndGet();
+		Path path = new File(key).toPath();
+		boolean watched = _watchedPaths.contains(path.getParent());
+		long changes = _changes.get();
+		stat = Stat.read(path, watched ? Long.MAX_VALUE : now + _timeToLive);
+		_stats.put(key, stat);
+
+		// A change reported while checking may be older than the check
+		if(watched && changes != _changes.get())
+			_stats.remove(key);
+		return stat;
+	}
+	/**
+	 * Forget the cached checks of every child of a directory.
+	 *
+	 * @param directory The directory
+	 */
+	private void clearChildren(Path directory){
+		for (String key : _stats.keySet()) {
+			Path parent = new File(key).toPath().getParent();
+			if(directory.equals(parent))
+				_stats.remove(key);
+		}
+	}
+	/**
+	 * Get the watch service, starting it if needed.
+	 *
+	 * @return The watch service
+	 * @throws IOException If the watch service could not be started
+	 */
+	private synchronized WatchService getWatchService() throws IOException{
+		if(_watchService == null){
+			_watchService = FileSystems.getDefault().newWatchService();
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					processEvents();
+				}
+			}, "stat-cache-watcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return _watchService;
+	}
+	/**
+	 * Invalidate checks as the watch service reports changes.
+	 */
+	private void processEvents(){
+		while(true){
+			WatchKey key;
+			try{
+				key = _watchService.take();
+			}
+			catch(InterruptedException | ClosedWatchServiceException ex){
+				return;
+			}
+
+			Path directory = _watched.get(key);
+			_changes.incrementAndGet();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if(directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW)
+					clear();
+				else
+					_stats.remove(directory.resolve((Path)event.context()).toString());
+			}
+
+			if(!key.reset()){
+				// The directory is gone, its children fall back to expiring
+				_watched.remove(key);
+				if(directory != null){
+					_watchedPaths.remove(directory);
+					clearChildren(directory);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The result of checking a file.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Stat{
+		public final boolean exists;
+		public final boolean directory;
+		public final boolean regularFile;
+		public final long length;
+		public final long lastModified;
+		public final long expires;
+
+		private Stat(boolean exists, boolean directory, boolean regularFile, long length, long lastModified, long expires){
+			this.exists = exists;
+			this.directory = directory;
+			this.regularFile = regularFile;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.expires = expires;
+		}
+
+		/**
+		 * Check a file with a single file system call.
+		 *
+		 * @param path The file
+		 * @param expires The time the check expires
+		 * @return The file check
+		 */
+		public static Stat read(Path path, long expires){
+			try{
+				BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				return new Stat(true, attributes.isDirectory(), attributes.isRegularFile(),
+						attributes.size(), attributes.lastModifiedTime().toMillis(), expires);
+			}
+			catch(NoSuchFileException ex){
+				return new Stat(false, false, false, 0, 0, expires);
+			}
+			catch(IOException ex){
+				// Unreadable attributes are treated like a missing file
+				return new Stat(Files.exists(path, LinkOption.NOFOLLOW_LINKS), false, false, 0, 0, expires);
+			}
+		}
+	}
+}
@@ -0,0 +1,475 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A group of file writes that are applied together.
+ * Every write is staged into a temporary file next to its target,
+ * and only replaces the target when the transaction is committed.
+ * A crash before the commit leaves every target untouched, and so does
+ * a commit while a staged stream failed or is still open.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class FileTransaction implements Closeable {
+	private static final String TEMP_FILE_PREFIX = ".";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Map<File, Staged> _staged;
+	private boolean _finished;
+
+	/**
+	 * Create a new empty file transaction.
+	 */
+	public FileTransaction(){
+		_staged = new LinkedHashMap<>();
+		_finished = false;
+	}
+
+	/**
+	 * Get the number of files staged in this transaction.
+	 *
+	 * @return The number of staged files
+	 */
+	public synchronized int getStagedCount(){
+		return _staged.size();
+	}
+
+	/**
+	 * Open a stream that stages the content of the target file.
+	 * The stream must be closed before the transaction is committed,
+	 * and a write that fails leaves the stream unusable for the commit.
+	 *
+	 * @param target The file to write
+	 * @return A buffered stream into the staged file
+	 * @throws IOException If the staged file can not be created
+	 */
+	public OutputStream openOutputStream(File target) throws IOException{
+		if(target == null)
+			throw new NullPointerException("File is null");
+
+		File absoluteTarget = target.getAbsoluteFile();
+		File parent = absoluteTarget.getParentFile();
+		if(parent == null || !parent.isDirectory())
+			throw new IOException("Parent directory does not exist: " + parent);
+
+		File temp = createStagingFile(absoluteTarget);
+		Staged staged;
+		try{
+			staged = new Staged(temp, new SyncingOutputStream(new FileOutputStream(temp)));
+		}
+		catch(IOException | RuntimeException ex){
+			temp.delete();
+			throw ex;
+		}
+		Staged previous;
+		synchronized (this) {
+			if(_finished){
+				staged.discard();
+				throw new IllegalStateException("Transaction already finished");
+			}
+			previous = _staged.put(absoluteTarget, staged);
+		}
+		if(previous != null)
+			previous.discard();
+
+		return staged.stream;
+	}
+	/**
+	 * Open a utf-8 writer that stages the content of the target file.
+	 * The writer must be closed before the transaction is committed.
+	 *
+	 * @param target The file to write
+	 * @return A buffered writer into the staged file
+	 * @throws IOException If the staged file can not be created
+	 */
+	public Writer openWriter(File target) throws IOException{
+		return new BufferedWriter(new OutputStreamWriter(openOutputStream(target), StandardCharsets.UTF_8));
+	}
+	/**
+	 * Discard the staged content of a target file, after writing it failed.
+	 * The stream of the file is closed without being synced.
+	 *
+	 * @param target The file that was being written
+	 * @return True if the file was staged
+	 */
+	public boolean unstage(File target){
+		Staged staged;
+		synchronized (this) {
+			staged = _staged.remove(target.getAbsoluteFile());
+		}
+		if(staged == null)
+			return false;
+
+		staged.discard();
+		return true;
+	}
+	/**
+	 * Stage the given content as the content of the target file.
+	 *
+	 * @param target The file to write
+	 * @param content The new content of the file
+	 * @throws IOException If the content could not be staged
+	 */
+	public void write(File target, String content) throws IOException{
+		Writer writer = openWriter(target);
+		try{
+			writer.write(content);
+		}
+		finally{
+			writer.close();
+		}
+	}
+	/**
+	 * Stage the given bytes as the content of the target file.
+	 *
+	 * @param target The file to write
+	 * @param content The new content of the file
+	 * @throws IOException If the content could not be staged
+	 */
+	public void write(File target, byte[] content) throws IOException{
+		OutputStream stream = openOutputStream(target);
+		try{
+			stream.write(content);
+		}
+		finally{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Replace every target with its staged file.
+	 * Each staged file is renamed atomically when the file system allows it,
+	 * and every touched directory is synced once at the end.
+	 * If any staged stream failed or is still open, nothing is replaced
+	 * and the transaction is rolled back.
+	 *
+	 * @throws IOException If a staged file is incomplete or could not be moved into place
+	 */
+	public void commit() throws IOException{
+		Map<File, Staged> staged;
+		synchronized (this) {
+			if(_finished)
+				throw new IllegalStateException("Transaction already finished");
+			_finished = true;
+			staged = new LinkedHashMap<>(_staged);
+			_staged.clear();
+		}
+
+		Set<File> directories = new LinkedHashSet<>();
+		try{
+			for (Map.Entry<File, Staged> entry : staged.entrySet()) {
+				if(!entry.getValue().stream.isComplete())
+					throw new IOException("Staged file was not completely written: " + entry.getKey());
+			}
+			for (Map.Entry<File, Staged> entry : staged.entrySet()) {
+				moveIntoPlace(entry.getValue().temp, entry.getKey());
+				directories.add(entry.getKey().getParentFile());
+			}
+		}
+		finally{
+			for (Staged entry : staged.values()) {
+				if(entry.temp.exists())
+					entry.discard();
+			}
+		}
+
+		for (File directory : directories) {
+			syncDirectory(directory);
+		}
+	}
+	/**
+	 * Discard every staged file, leaving the targets untouched.
+	 */
+	public void rollback(){
+		Map<File, Staged> staged;
+		synchronized (this) {
+			_finished = true;
+			staged = new LinkedHashMap<>(_staged);
+			_staged.clear();
+		}
+
+		for (Staged entry : staged.values()) {
+			entry.discard();
+		}
+	}
+	/**
+	 * Roll back the transaction if it was not committed.
+	 */
+	@Override
+	public void close(){
+		rollback();
+	}
+
+	/**
+	 * A convience method for atomically replacing a single file.
+	 *
+	 * @param target The file to write
+	 * @param content The new content of the file
+	 * @throws IOException If the file could not be written
+	 */
+	public static void writeAtomically(File target, String content) throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			transaction.write(target, content);
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * A convience method for atomically replacing a single file with bytes.
+	 *
+	 * @param target The file to write
+	 * @param content The new content of the file
+	 * @throws IOException If the file could not be written
+	 */
+	public static void writeAtomically(File target, byte[] content) throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			transaction.write(target, content);
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+	}
+
+	/**
+	 * Create an empty staging file next to a target.
+	 * Unlike a temp file, it gets the default permissions of new files,
+	 * or the permissions of the target if it exists, so replacing the
+	 * target does not change who can read it.
+	 *
+	 * @param target The target file
+	 * @return The staging file
+	 * @throws IOException If the staging file could not be created
+	 */
+	private static File createStagingFile(File target) throws IOException{
+		Path temp;
+		while(true){
+			temp = target.toPath().resolveSibling(TEMP_FILE_PREFIX + target.getName() + "."
+					+ Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_FILE_SUFFIX);
+			try{
+				Files.createFile(temp);
+				break;
+			}
+			catch(FileAlreadyExistsException ex){
+				// Try another name
+			}
+		}
+
+		if(target.exists()){
+			try{
+				Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target.toPath()));
+			}
+			catch(UnsupportedOperationException | IOException ex){
+				// Not a posix file system, the default permissions are kept
+			}
+		}
+		return temp.toFile();
+	}
+	/**
+	 * Move a staged file over its target.
+	 *
+	 * @param temp The staged file
+	 * @param target The target file
+	 * @throws IOException If the file could not be moved
+	 */
+	private static void moveIntoPlace(File temp, File target) throws IOException{
+		try{
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(AtomicMoveNotSupportedException ex){
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	/**
+	 * Flush a directory entry to disk, so renames inside it survive a crash.
+	 * Not every platform allows opening directories, those are skipped.
+	 *
+	 * @param directory The directory to sync
+	 */
+	private static void syncDirectory(File directory){
+		try(FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)){
+			channel.force(true);
+		}
+		catch(IOException ex){
+			// Directories can not be synced on this platform
+		}
+	}
+
+	/**
+	 * A staged file and the stream writing it.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Staged{
+		public final File temp;
+		public final SyncingOutputStream stream;
+
+		public Staged(File temp, SyncingOutputStream stream){
+			this.temp = temp;
+			this.stream = stream;
+		}
+
+		/**
+		 * Close the stream without syncing it and delete the staged file.
+		 */
+		public void discard(){
+			stream.abort();
+			temp.delete();
+		}
+	}
+	/**
+	 * A buffered file stream that syncs the file to disk when closed.
+	 * It remembers whether every write succeeded and it was closed.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class SyncingOutputStream extends FilterOutputStream{
+		private final FileOutputStream _fileStream;
+		private volatile boolean _closed;
+		private volatile boolean _failed;
+
+		public SyncingOutputStream(FileOutputStream fileStream){
+			super(new BufferedOutputStream(fileStream, BUFFER_SIZE));
+			_fileStream = fileStream;
+			_closed = false;
+			_failed = false;
+		}
+
+		/**
+		 * Check that every write succeeded and the stream was closed.
+		 *
+		 * @return True if the staged file is complete
+		 */
+		public boolean isComplete(){
+			return _closed && !_failed;
+		}
+		/**
+		 * Close the stream without flushing it, leaving it incomplete.
+		 */
+		public void abort(){
+			_failed = true;
+			_closed = true;
+			try{
+				_fileStream.close();
+			}
+			catch(IOException ex){
+				// The staged file is deleted either way
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			checkOpen();
+			try{
+				out.write(b);
+			}
+			catch(IOException | RuntimeException ex){
+				_failed = true;
+				throw ex;
+			}
+		}
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkOpen();
+			try{
+				out.write(b, off, len);
+			}
+			catch(IOException | RuntimeException ex){
+				_failed = true;
+				throw ex;
+			}
+		}
+		@Override
+		public void flush() throws IOException {
+			checkOpen();
+			try{
+				out.flush();
+			}
+			catch(IOException | RuntimeException ex){
+				_failed = true;
+				throw ex;
+			}
+		}
+		@Override
+		public void close() throws IOException {
+			if(_closed)
+				return;
+
+			try{
+				out.flush();
+				_fileStream.getFD().sync();
+			}
+			catch(IOException | RuntimeException ex){
+				_failed = true;
+				throw ex;
+			}
+			finally{
+				_closed = true;
+				out.close();
+			}
+		}
+
+		/**
+		 * Make sure the stream was not closed.
+		 *
+		 * @throws IOException If the stream was closed
+		 */
+		private void checkOpen() throws IOException{
+			if(_closed)
+				throw new IOException("Stream closed");
+		}
+	}
+}
@@ -0,0 +1,114 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utilities for hashing file contents.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class HashUtil {
+	private static final String HASH_ALGORITHM = "SHA-256";
+	private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+	private static final long MIN_MAPPED_FILE_SIZE = 64L * 1024;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Hash the content of a file.
+	 * Large files are memory mapped, small files are read directly
+	 * since mapping them costs more than reading them.
+	 *
+	 * @param file The file to hash
+	 * @return The hex encoded hash of the file content
+	 * @throws IOException If the file could not be read
+	 */
+	public static String hashFile(File file) throws IOException{
+		MessageDigest digest = createDigest();
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			long size = channel.size();
+			if(size >= MIN_MAPPED_FILE_SIZE){
+				for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+					long length = Math.min(MAPPED_REGION_SIZE, size - position);
+					digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+				}
+			}
+			else{
+				ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+				while(channel.read(buffer) != -1){
+					buffer.flip();
+					digest.update(buffer);
+					buffer.clear();
+				}
+			}
+		}
+
+		return toHex(digest.digest());
+	}
+	/**
+	 * Hash a byte array.
+	 *
+	 * @param bytes The bytes to hash
+	 * @return The hex encoded hash of the bytes
+	 */
+	public static String hashBytes(byte[] bytes){
+		return toHex(createDigest().digest(bytes));
+	}
+
+	/**
+	 * Create a new message digest of the hash algorithm.
+	 *
+	 * @return A new message digest
+	 */
+	private static MessageDigest createDigest(){
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	/**
+	 * Encode bytes as lower case hex.
+	 *
+	 * @param bytes The bytes to encode
+	 * @return The hex string
+	 */
+	private static String toHex(byte[] bytes){
+		char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			result[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			result[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(result);
+	}
+}
@@ -0,0 +1,233 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import silver.starbound.data.Item;
+import silver.starbound.util.PngUtil.PngHeader;
+
+/**
+ * Validates the inventory icons of a catalog of items.
+ * Icons are checked in parallel by reading only their png headers.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class IconValidator {
+	/**
+	 * The default largest accepted icon width and height.
+	 */
+	public static final int DEFAULT_MAX_ICON_SIZE = 64;
+
+	/**
+	 * A kind of problem with an inventory icon.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public enum ProblemType{
+		/**
+		 * The item has no icon, or the icon file does not exist.
+		 */
+		MISSING,
+		/**
+		 * The icon is outside the item's folder and can only be reached with ..
+		 */
+		MISPLACED,
+		/**
+		 * The icon file is not a png.
+		 */
+		NOT_PNG,
+		/**
+		 * The icon is larger than allowed.
+		 */
+		OVERSIZED
+	}
+
+	/**
+	 * A problem found with the icon of an item.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class IconProblem{
+		private final Item _item;
+		private final File _iconFile;
+		private final ProblemType _type;
+		private final String _details;
+
+		private IconProblem(Item item, File iconFile, ProblemType type, String details){
+			_item = item;
+			_iconFile = iconFile;
+			_type = type;
+			_details = details;
+		}
+
+		/**
+		 * Get the item whose icon has the problem.
+		 *
+		 * @return The item
+		 */
+		public Item getItem(){
+			return _item;
+		}
+		/**
+		 * Get the icon file of the item.
+		 *
+		 * @return The icon file, null if the item has none
+		 */
+		public File getIconFile(){
+			return _iconFile;
+		}
+		/**
+		 * Get the kind of the problem.
+		 *
+		 * @return The problem type
+		 */
+		public ProblemType getType(){
+			return _type;
+		}
+		/**
+		 * Get a human readable description of the problem.
+		 *
+		 * @return The problem details
+		 */
+		public String getDetails(){
+			return _details;
+		}
+
+		@Override
+		public String toString() {
+			return _type + ": " + _details;
+		}
+	}
+
+	/**
+	 * Validate the icons of the items with the default size limit.
+	 *
+	 * @param items The items to validate
+	 * @return The problems found, in the order of the items
+	 * @throws IOException If the validation was interrupted
+	 */
+	public static List<IconProblem> validate(Collection<Item> items) throws IOException{
+		return validate(items, DEFAULT_MAX_ICON_SIZE, DEFAULT_MAX_ICON_SIZE);
+	}
+	/**
+	 * Validate the icons of the items in parallel.
+	 *
+	 * @param items The items to validate
+	 * @param maxWidth The largest accepted icon width
+	 * @param maxHeight The largest accepted icon height
+	 * @return The problems found, in the order of the items
+	 * @throws IOException If the validation was interrupted
+	 */
+	public static List<IconProblem> validate(Collection<Item> items, final int maxWidth, final int maxHeight) throws IOException{
+		List<Callable<List<IconProblem>>> tasks = new ArrayList<>(items.size());
+		for (final Item item : items) {
+			tasks.add(new Callable<List<IconProblem>>() {
+				@Override
+				public List<IconProblem> call() {
+					return validate(item, maxWidth, maxHeight);
+				}
+			});
+		}
+
+		List<IconProblem> result = new ArrayList<>();
+		for (List<IconProblem> problems : ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), tasks)) {
+			result.addAll(problems);
+		}
+		return result;
+	}
+	/**
+	 * Validate the icon of a single item.
+	 *
+	 * @param item The item to validate
+	 * @param maxWidth The largest accepted icon width
+	 * @param maxHeight The largest accepted icon height
+	 * @return The problems found, empty if the icon is valid
+	 */
+	public static List<IconProblem> validate(Item item, int maxWidth, int maxHeight){
+		List<IconProblem> result = new ArrayList<>(1);
+		File iconFile = getIconImageFile(item);
+		if(iconFile == null){
+			result.add(new IconProblem(item, null, ProblemType.MISSING, "Item has no inventory icon"));
+			return result;
+		}
+
+		if(item.getFile() != null){
+			String relativePath = PathUtil.getRelativePath(item.getFile(), iconFile);
+			if(relativePath != null && relativePath.contains(".."))
+				result.add(new IconProblem(item, iconFile, ProblemType.MISPLACED, "Icon is outside the item folder: " + relativePath));
+		}
+
+		if(!iconFile.isFile()){
+			result.add(new IconProblem(item, iconFile, ProblemType.MISSING, "Icon file does not exist: " + iconFile));
+			return result;
+		}
+
+		try{
+			PngHeader header = PngUtil.readHeader(iconFile);
+			if(header.getWidth() > maxWidth || header.getHeight() > maxHeight)
+				result.add(new IconProblem(item, iconFile, ProblemType.OVERSIZED,
+						"Icon is " + header.getWidth() + "x" + header.getHeight() + ", at most " + maxWidth + "x" + maxHeight + " allowed"));
+		}
+		catch(IOException ex){
+			result.add(new IconProblem(item, iconFile, ProblemType.NOT_PNG, ex.getMessage()));
+		}
+
+		return result;
+	}
+	/**
+	 * Get the image file of an item's icon.
+	 * Starbound icon paths may select a frame (icon.png:frame) or add
+	 * image directives (icon.png?flipx), neither is part of the file name.
+	 *
+	 * @param item The item
+	 * @return The icon image file, null if the item has no icon
+	 */
+	public static File getIconImageFile(Item item){
+		File iconFile = item.getInventoryIconFile();
+		if(iconFile == null)
+			return null;
+
+		String name = iconFile.getName();
+		int end = name.length();
+		int frameStart = name.indexOf(':');
+		int directivesStart = name.indexOf('?');
+		if(frameStart >= 0)
+			end = Math.min(end, frameStart);
+		if(directivesStart >= 0)
+			end = Math.min(end, directivesStart);
+
+		if(end == name.length())
+			return iconFile;
+		else
+			return new File(iconFile.getParentFile(), name.substring(0, end));
+	}
+}
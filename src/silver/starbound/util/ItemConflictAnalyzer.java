@@ -0,0 +1,295 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import silver.starbound.data.Mod;
+import silver.starbound.data.ModInfo;
+import silver.starbound.data.StarboundObjectRegistry;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Finds items defined by more than one asset across mods.
+ * Starbound keeps only the definition loaded last, so the others are
+ * silently overridden. Every item and object asset is streamed only
+ * until its name is found, and the names are indexed in a hash map.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ItemConflictAnalyzer {
+	private static final String ITEM_NAME_KEY = "itemName";
+	private static final String OBJECT_NAME_KEY = "objectName";
+	private static final String OBJECT_EXTENSION = "object";
+
+	/**
+	 * An asset defining an item.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Definition{
+		private final Mod _mod;
+		private final File _file;
+		private final String _name;
+
+		private Definition(Mod mod, File file, String name){
+			_mod = mod;
+			_file = file;
+			_name = name;
+		}
+
+		/**
+		 * Get the mod containing the asset.
+		 *
+		 * @return The mod
+		 */
+		public Mod getMod(){
+			return _mod;
+		}
+		/**
+		 * Get the asset file.
+		 *
+		 * @return The asset file
+		 */
+		public File getFile(){
+			return _file;
+		}
+		/**
+		 * Get the name of the defined item.
+		 *
+		 * @return The item name
+		 */
+		public String getName(){
+			return _name;
+		}
+
+		@Override
+		public String toString() {
+			return _mod.getName() + ": " + _file;
+		}
+	}
+
+	/**
+	 * An item name defined by more than one asset.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Conflict{
+		private final String _name;
+		private final List<Definition> _definitions;
+
+		private Conflict(String name, List<Definition> definitions){
+			_name = name;
+			_definitions = Collections.unmodifiableList(definitions);
+		}
+
+		/**
+		 * Get the conflicting item name.
+		 *
+		 * @return The item name
+		 */
+		public String getName(){
+			return _name;
+		}
+		/**
+		 * Get every asset defining the item.
+		 *
+		 * @return The definitions, in load order
+		 */
+		public List<Definition> getDefinitions(){
+			return _definitions;
+		}
+		/**
+		 * Get the definition used by the game, which is the one loaded last.
+		 *
+		 * @return The winning definition
+		 */
+		public Definition getWinner(){
+			return _definitions.get(_definitions.size() - 1);
+		}
+
+		@Override
+		public String toString() {
+			return _name + " defined " + _definitions.size() + " times, " + getWinner() + " wins";
+		}
+	}
+
+	/**
+	 * Find the item names defined more than once across the mods.
+	 * Assets that can not be parsed are skipped.
+	 *
+	 * @param mods The mods to analyze
+	 * @return The conflicts, sorted by item name
+	 * @throws IOException If a mod folder could not be read
+	 */
+	public static List<Conflict> findConflicts(Collection<Mod> mods) throws IOException{
+		final Map<String, String> nameKeys = new HashMap<>();
+		for (String extension : StarboundObjectRegistry.ITEM_EXTENSIONS) {
+			nameKeys.put(extension, ITEM_NAME_KEY);
+		}
+		nameKeys.put(OBJECT_EXTENSION, OBJECT_NAME_KEY);
+
+		List<Mod> loadOrder = getLoadOrder(mods);
+		List<Callable<Definition>> tasks = new ArrayList<>();
+		for (final Mod mod : loadOrder) {
+			if(!mod.isFolderValid())
+				continue;
+
+			List<File> files = PathUtil.listFiles(mod.getFolder());
+			Collections.sort(files);
+			for (final File file : files) {
+				final String nameKey = nameKeys.get(StarboundObjectRegistry.getExtension(file));
+				if(nameKey == null)
+					continue;
+
+				tasks.add(new Callable<Definition>() {
+					@Override
+					public Definition call() {
+						String name = readName(file, nameKey);
+						return name == null ? null : new Definition(mod, file, name);
+					}
+				});
+			}
+		}
+
+		// The definitions are in load order, so the last of each name wins
+		Map<String, List<Definition>> index = new HashMap<>();
+		for (Definition definition : ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), tasks)) {
+			if(definition == null)
+				continue;
+
+			List<Definition> definitions = index.get(definition.getName());
+			if(definitions == null){
+				definitions = new ArrayList<>(1);
+				index.put(definition.getName(), definitions);
+			}
+			definitions.add(definition);
+		}
+
+		List<Conflict> result = new ArrayList<>();
+		for (Map.Entry<String, List<Definition>> entry : index.entrySet()) {
+			if(entry.getValue().size() > 1)
+				result.add(new Conflict(entry.getKey(), entry.getValue()));
+		}
+		Collections.sort(result, new Comparator<Conflict>() {
+			@Override
+			public int compare(Conflict first, Conflict second) {
+				return first.getName().compareTo(second.getName());
+			}
+		});
+		return result;
+	}
+	/**
+	 * Order mods the way the game loads them.
+	 * Every mod is loaded after the mods it requires or includes,
+	 * otherwise the given order is kept. Dependency cycles are broken
+	 * at the mod reached first.
+	 *
+	 * @param mods The mods, in their default order
+	 * @return The mods in load order
+	 */
+	public static List<Mod> getLoadOrder(Collection<Mod> mods){
+		Map<String, Mod> byName = new LinkedHashMap<>();
+		for (Mod mod : mods) {
+			if(mod.isNameValid())
+				byName.put(mod.getName(), mod);
+		}
+
+		List<Mod> result = new ArrayList<>(mods.size());
+		Set<Mod> visited = new HashSet<>();
+		for (Mod mod : mods) {
+			addInLoadOrder(mod, byName, visited, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Add a mod to the load order after its dependencies.
+	 *
+	 * @param mod The mod to add
+	 * @param byName The mods by name
+	 * @param visited The mods already added or being added
+	 * @param result The load order
+	 */
+	private static void addInLoadOrder(Mod mod, Map<String, Mod> byName, Set<Mod> visited, List<Mod> result){
+		if(!visited.add(mod))
+			return;
+
+		ModInfo modInfo = mod.getModInfo();
+		List<String> dependencies = new ArrayList<>();
+		if(modInfo.getRequires() != null)
+			dependencies.addAll(modInfo.getRequires());
+		if(modInfo.getIncludes() != null)
+			dependencies.addAll(modInfo.getIncludes());
+		for (String dependency : dependencies) {
+			Mod dependencyMod = byName.get(dependency);
+			if(dependencyMod != null)
+				addInLoadOrder(dependencyMod, byName, visited, result);
+		}
+		result.add(mod);
+	}
+	/**
+	 * Read the name an asset defines, streaming it only until the name is found.
+	 *
+	 * @param file The asset file
+	 * @param nameKey The key of the name in the asset
+	 * @return The name, null if the asset has none or can not be parsed
+	 */
+	private static String readName(File file, String nameKey){
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			JsonReader json = new JsonReader(reader);
+			json.setLenient(true);
+			json.beginObject();
+			while(json.hasNext()){
+				if(json.nextName().equals(nameKey) && json.peek() == JsonToken.STRING)
+					return json.nextString();
+				json.skipValue();
+			}
+			return null;
+		} catch (IOException | JsonParseException | IllegalStateException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,273 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import silver.starbound.data.RawStarboundObject;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A cache of parsed json assets shared by the loaders.
+ * Assets are keyed by path and checked against the size and modification
+ * time of their file, so a changed file is parsed again. The cache is
+ * bounded by the estimated memory of the parsed trees, and the garbage
+ * collector may also reclaim entries when memory runs low. Reclaimed
+ * entries are removed from the cache, so they stop counting against the budget.
+ * <p>
+ * Cached trees are shared between every caller and must not be modified.
+ * Callers that hand the json out should return a {@link JsonUtil#copy(JsonElement)}.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class JsonAssetCache {
+	/**
+	 * The default memory budget of the cache.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+	private static final long OBJECT_WEIGHT = 56;
+	private static final long MEMBER_WEIGHT = 48;
+	private static final long ARRAY_WEIGHT = 40;
+	private static final long ELEMENT_WEIGHT = 8;
+	private static final long PRIMITIVE_WEIGHT = 32;
+	private static final long STRING_WEIGHT = 40;
+
+	private static JsonAssetCache _defaultCache;
+
+	private final WeightedLruCache<String, Entry> _entries;
+	private final ReferenceQueue<JsonElement> _reclaimedQueue;
+	private final AtomicLong _hits;
+	private final AtomicLong _misses;
+	private final AtomicLong _reclaimed;
+
+	/**
+	 * Create a json asset cache.
+	 *
+	 * @param memoryBudget The most estimated bytes of parsed trees kept
+	 */
+	public JsonAssetCache(long memoryBudget){
+		_entries = new WeightedLruCache<>(memoryBudget, new WeightedLruCache.Weigher<Entry>() {
+			@Override
+			public long weigh(Entry value) {
+				return value.weight;
+			}
+		});
+		_reclaimedQueue = new ReferenceQueue<>();
+		_hits = new AtomicLong();
+		_misses = new AtomicLong();
+		_reclaimed = new AtomicLong();
+	}
+
+	/**
+	 * Get the cache shared by the loaders.
+	 *
+	 * @return The shared json asset cache
+	 */
+	public static synchronized JsonAssetCache getDefault(){
+		if(_defaultCache == null)
+			_defaultCache = new JsonAssetCache(DEFAULT_MEMORY_BUDGET);
+		return _defaultCache;
+	}
+
+	/**
+	 * Get the parsed json of an asset file, parsing it if not cached or changed.
+	 *
+	 * @param file The asset file
+	 * @return The parsed json, which must not be modified
+	 * @throws IOException If the file could not be read or parsed
+	 */
+	public JsonElement get(File file) throws IOException{
+		removeReclaimed();
+		String key = file.getAbsolutePath();
+		BasicFileAttributes attributes;
+		try{
+			attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		}
+		catch(NoSuchFileException ex){
+			_entries.remove(key);
+			throw ex;
+		}
+		long length = attributes.size();
+		// Nanoseconds, so a quick rewrite of the same size is still noticed
+		long lastModified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+
+		Entry entry = _entries.get(key);
+		if(entry != null && entry.length == length && entry.lastModified == lastModified){
+			JsonElement json = entry.get();
+			if(json != null){
+				_hits.incrementAndGet();
+				return json;
+			}
+			if(_entries.remove(key, entry))
+				_reclaimed.incrementAndGet();
+		}
+
+		_misses.incrementAndGet();
+		JsonElement json = RawStarboundObject.parseFile(file);
+		_entries.put(key, new Entry(key, json, length, lastModified, estimateSize(json), _reclaimedQueue));
+		return json;
+	}
+	/**
+	 * Forget the cached json of an asset file.
+	 *
+	 * @param file The asset file
+	 */
+	public void invalidate(File file){
+		_entries.remove(file.getAbsolutePath());
+	}
+	/**
+	 * Forget every cached asset.
+	 */
+	public void clear(){
+		_entries.clear();
+	}
+	/**
+	 * Change the memory budget, evicting assets if needed.
+	 *
+	 * @param memoryBudget The most estimated bytes of parsed trees kept
+	 */
+	public void setMemoryBudget(long memoryBudget){
+		removeReclaimed();
+		_entries.setMaxWeight(memoryBudget);
+	}
+	/**
+	 * Get the number of lookups answered from the cache.
+	 *
+	 * @return The hit count
+	 */
+	public long getHits(){
+		return _hits.get();
+	}
+	/**
+	 * Get the number of lookups that parsed the file.
+	 *
+	 * @return The miss count
+	 */
+	public long getMisses(){
+		return _misses.get();
+	}
+	/**
+	 * Get the number of cached assets the garbage collector reclaimed.
+	 *
+	 * @return The reclaimed count
+	 */
+	public long getReclaimed(){
+		return _reclaimed.get();
+	}
+	/**
+	 * Get the underlying cache, for its size and eviction metrics.
+	 *
+	 * @return The underlying cache
+	 */
+	public WeightedLruCache<String, ?> getMemoryCache(){
+		removeReclaimed();
+		return _entries;
+	}
+	/**
+	 * Remove the entries whose tree the garbage collector reclaimed.
+	 */
+	private void removeReclaimed(){
+		Reference<? extends JsonElement> reference;
+		while((reference = _reclaimedQueue.poll()) != null){
+			Entry entry = (Entry)reference;
+			if(_entries.remove(entry.key, entry))
+				_reclaimed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Estimate the memory retained by a parsed json tree.
+	 *
+	 * @param json The json tree
+	 * @return The estimated size in bytes
+	 */
+	public static long estimateSize(JsonElement json){
+		long result = 0;
+		Deque<JsonElement> pending = new ArrayDeque<>();
+		pending.push(json);
+		while(!pending.isEmpty()){
+			JsonElement current = pending.pop();
+			if(current.isJsonObject()){
+				result += OBJECT_WEIGHT;
+				for (Map.Entry<String, JsonElement> member : current.getAsJsonObject().entrySet()) {
+					result += MEMBER_WEIGHT + STRING_WEIGHT + 2L * member.getKey().length();
+					pending.push(member.getValue());
+				}
+			}
+			else if(current.isJsonArray()){
+				JsonArray array = current.getAsJsonArray();
+				result += ARRAY_WEIGHT + ELEMENT_WEIGHT * array.size();
+				for (JsonElement element : array) {
+					pending.push(element);
+				}
+			}
+			else if(current.isJsonPrimitive()){
+				JsonPrimitive primitive = current.getAsJsonPrimitive();
+				result += PRIMITIVE_WEIGHT;
+				if(!primitive.isBoolean())
+					result += STRING_WEIGHT + 2L * primitive.getAsString().length();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A parsed asset, the version of its file and its estimated size.
+	 * The tree is softly referenced, so it can be reclaimed under memory pressure.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Entry extends SoftReference<JsonElement>{
+		public final String key;
+		public final long length;
+		public final long lastModified;
+		public final long weight;
+
+		public Entry(String key, JsonElement json, long length, long lastModified, long weight,
+				ReferenceQueue<JsonElement> queue){
+			super(json, queue);
+			this.key = key;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.weight = weight;
+		}
+	}
+}
@@ -0,0 +1,762 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A json document that remembers where every value is in its source.
+ * Edits are recorded as splices of the changed value spans only, so
+ * when the document is written, untouched bytes, comments and
+ * formatting are copied through unchanged and only new values are
+ * encoded.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class JsonDocument {
+	private static final Gson VALUE_GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+	/**
+	 * The kind of a json value.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public enum Type{
+		/**
+		 * A json object.
+		 */
+		OBJECT,
+		/**
+		 * A json array.
+		 */
+		ARRAY,
+		/**
+		 * A string, number, boolean or null.
+		 */
+		PRIMITIVE
+	}
+
+	/**
+	 * A value of the document and its span in the source bytes.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Node{
+		private final Type _type;
+		private final int _start;
+		private int _end;
+		private final Map<String, Member> _members;
+		private final List<Node> _elements;
+
+		private Node(Type type, int start){
+			_type = type;
+			_start = start;
+			_members = type == Type.OBJECT ? new LinkedHashMap<String, Member>() : null;
+			_elements = type == Type.ARRAY ? new ArrayList<Node>() : null;
+		}
+
+		/**
+		 * Get the kind of the value.
+		 *
+		 * @return The type of the value
+		 */
+		public Type getType(){
+			return _type;
+		}
+		/**
+		 * Get the offset of the first byte of the value.
+		 *
+		 * @return The start offset
+		 */
+		public int getStart(){
+			return _start;
+		}
+		/**
+		 * Get the offset after the last byte of the value.
+		 *
+		 * @return The end offset
+		 */
+		public int getEnd(){
+			return _end;
+		}
+		/**
+		 * Get a member of an object value.
+		 * Removed members are skipped.
+		 *
+		 * @param name The name of the member
+		 * @return The member value, null if none or not an object
+		 */
+		public Node getMember(String name){
+			if(_members == null)
+				return null;
+			Member member = _members.get(name);
+			return member == null || member.removed ? null : member.value;
+		}
+		/**
+		 * Get the member names of an object value.
+		 * Removed members are skipped.
+		 *
+		 * @return The member names, in source order
+		 */
+		public List<String> getMemberNames(){
+			if(_members == null)
+				return Collections.emptyList();
+			List<String> result = new ArrayList<>(_members.size());
+			for (Map.Entry<String, Member> entry : _members.entrySet()) {
+				if(!entry.getValue().removed)
+					result.add(entry.getKey());
+			}
+			return result;
+		}
+		/**
+		 * Get the members of an object value that were not removed.
+		 *
+		 * @return The members, in source order
+		 */
+		private List<Member> getLiveMembers(){
+			List<Member> result = new ArrayList<>(_members.size());
+			for (Member member : _members.values()) {
+				if(!member.removed)
+					result.add(member);
+			}
+			return result;
+		}
+		/**
+		 * Get the elements of an array value.
+		 *
+		 * @return The elements, empty if not an array
+		 */
+		public List<Node> getElements(){
+			if(_elements == null)
+				return Collections.emptyList();
+			return Collections.unmodifiableList(_elements);
+		}
+	}
+
+	private final byte[] _source;
+	private final Node _root;
+	private final List<Splice> _splices;
+
+	private JsonDocument(byte[] source){
+		_source = source;
+		_splices = new ArrayList<>();
+		_root = new Parser(source).parseDocument();
+	}
+
+	/**
+	 * Parse a json document from utf-8 bytes.
+	 * Comments and trailing commas are accepted, as starbound does.
+	 *
+	 * @param source The bytes of the document
+	 * @return The parsed document
+	 * @throws IOException If the document is not valid json
+	 */
+	public static JsonDocument parse(byte[] source) throws IOException{
+		try{
+			return new JsonDocument(source);
+		}
+		catch(IllegalArgumentException ex){
+			throw new IOException(ex.getMessage(), ex);
+		}
+	}
+	/**
+	 * Parse a json document from a string.
+	 *
+	 * @param source The text of the document
+	 * @return The parsed document
+	 * @throws IOException If the document is not valid json
+	 */
+	public static JsonDocument parse(String source) throws IOException{
+		return parse(source.getBytes(StandardCharsets.UTF_8));
+	}
+	/**
+	 * Read and parse a json file.
+	 *
+	 * @param file The json file
+	 * @return The parsed document
+	 * @throws IOException If the file could not be read or is not valid json
+	 */
+	public static JsonDocument load(File file) throws IOException{
+		return parse(Files.readAllBytes(file.toPath()));
+	}
+
+	/**
+	 * Get the root value of the document.
+	 *
+	 * @return The root value
+	 */
+	public Node getRoot(){
+		return _root;
+	}
+	/**
+	 * Find a value by the member names leading to it.
+	 * Array elements are selected with their index.
+	 *
+	 * @param path The member names and indices
+	 * @return The value, null if it does not exist
+	 */
+	public Node getNode(String... path){
+		Node node = _root;
+		for (String name : path) {
+			if(node == null)
+				return null;
+			node = getChild(node, name);
+		}
+		return node;
+	}
+	/**
+	 * Parse a value of the original source.
+	 *
+	 * @param path The member names and indices leading to the value
+	 * @return The value, null if it does not exist
+	 */
+	public JsonElement getValue(String... path){
+		Node node = getNode(path);
+		if(node == null)
+			return null;
+
+		JsonReader reader = new JsonReader(new StringReader(getSourceText(node._start, node._end)));
+		reader.setLenient(true);
+		return new JsonParser().parse(reader);
+	}
+	/**
+	 * Get the original source of a value.
+	 *
+	 * @param node The value
+	 * @return The source text of the value
+	 */
+	public String getSourceText(Node node){
+		return getSourceText(node._start, node._end);
+	}
+	/**
+	 * Check if the document was edited.
+	 *
+	 * @return True if there are pending edits
+	 */
+	public boolean isModified(){
+		return !_splices.isEmpty();
+	}
+
+	/**
+	 * Replace a value, or add it as a new member of its parent object.
+	 * Only the span of the value is rewritten.
+	 *
+	 * @param value The new value
+	 * @param path The member names and indices leading to the value
+	 */
+	public void set(JsonElement value, String... path){
+		if(path.length == 0)
+			throw new IllegalArgumentException("Can not replace the root");
+
+		String name = path[path.length - 1];
+		Node parent = getParent(path);
+		Node existing = getChild(parent, name);
+		if(existing != null){
+			addSplice(new Splice(existing._start, existing._end, encode(value)));
+			return;
+		}
+		if(parent._type != Type.OBJECT)
+			throw new IllegalArgumentException("No element " + name + " in array");
+
+		String member = encode(new JsonPrimitive(name)) + ": " + encode(value);
+		if(parent.getLiveMembers().isEmpty()){
+			int position = parent._start + 1;
+			addSplice(new Splice(position, position, hasInsertionAt(position) ? ", " + member : member));
+		}
+		else{
+			// Inserting after a removed last member keeps clear of its removal
+			Member last = null;
+			for (Member candidate : parent._members.values()) {
+				last = candidate;
+			}
+			addSplice(new Splice(last.value._end, last.value._end, "," + getIndentation(parent, last) + member));
+		}
+	}
+	/**
+	 * Remove a member of an object, with the comma separating it from
+	 * the members that remain.
+	 *
+	 * @param path The member names leading to the member
+	 * @return True if the member existed
+	 */
+	public boolean remove(String... path){
+		if(path.length == 0)
+			throw new IllegalArgumentException("Can not remove the root");
+
+		Node parent = getParent(path);
+		if(parent._type != Type.OBJECT)
+			throw new IllegalArgumentException("Only object members can be removed");
+		Member member = parent._members.get(path[path.length - 1]);
+		if(member == null || member.removed)
+			return false;
+
+		// Spans are taken between remaining members, so they may only contain earlier removals
+		List<Member> members = parent.getLiveMembers();
+		int index = members.indexOf(member);
+		member.removed = true;
+		if(index + 1 < members.size())
+			addSplice(new Splice(member.keyStart, members.get(index + 1).keyStart, ""));
+		else if(index > 0)
+			addSplice(new Splice(members.get(index - 1).value._end, member.value._end, ""));
+		else
+			addSplice(new Splice(member.keyStart, member.value._end, ""));
+		return true;
+	}
+
+	/**
+	 * Write the edited document, copying untouched bytes as they are.
+	 *
+	 * @param stream The stream to write into
+	 * @throws IOException If there was an error writing
+	 */
+	public void writeTo(OutputStream stream) throws IOException{
+		List<Splice> splices = getSortedSplices();
+		int position = 0;
+		for (Splice splice : splices) {
+			stream.write(_source, position, splice.start - position);
+			stream.write(splice.replacement);
+			position = splice.end;
+		}
+		stream.write(_source, position, _source.length - position);
+	}
+	/**
+	 * Get the bytes of the edited document.
+	 *
+	 * @return The edited document
+	 */
+	public byte[] toBytes(){
+		ByteArrayOutputStream result = new ByteArrayOutputStream(_source.length);
+		try{
+			writeTo(result);
+		}
+		catch(IOException ex){
+			throw new IllegalStateException(ex);
+		}
+		return result.toByteArray();
+	}
+	/**
+	 * Stage writing the edited document into a file, if it was edited.
+	 *
+	 * @param file The file to write
+	 * @param transaction The transaction to stage the write in
+	 * @return True if the document was edited and staged
+	 * @throws IOException If the file could not be staged
+	 */
+	public boolean save(File file, FileTransaction transaction) throws IOException{
+		if(!isModified())
+			return false;
+
+		OutputStream stream = transaction.openOutputStream(file);
+		try{
+			writeTo(stream);
+			stream.close();
+		}
+		catch(IOException | RuntimeException ex){
+			transaction.unstage(file);
+			throw ex;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return new String(toBytes(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Record a splice, replacing an earlier splice of the same span.
+	 * A removal absorbs the earlier edits inside its span.
+	 *
+	 * @param splice The splice
+	 */
+	private void addSplice(Splice splice){
+		if(splice.replacement.length == 0 && splice.start < splice.end){
+			for (int i = _splices.size() - 1; i >= 0; i--) {
+				Splice other = _splices.get(i);
+				boolean inside = splice.start <= other.start && other.end <= splice.end;
+				// Insertions at the edges belong to the neighbouring values
+				boolean edge = other.start == other.end && (other.start == splice.start || other.start == splice.end);
+				if(inside && !edge && !(other.start == splice.start && other.end == splice.end))
+					_splices.remove(i);
+			}
+		}
+		for (int i = 0; i < _splices.size(); i++) {
+			Splice other = _splices.get(i);
+			if(other.start == splice.start && other.end == splice.end){
+				if(splice.start == splice.end)
+					_splices.set(i, new Splice(other.start, other.end, other.replacement, splice.replacement));
+				else
+					_splices.set(i, splice);
+				return;
+			}
+			if(other.start < splice.end && splice.start < other.end
+					|| other.start < splice.start && splice.start < other.end
+					|| splice.start < other.start && other.start < splice.end)
+				throw new IllegalStateException("Edit overlaps an earlier edit");
+		}
+		_splices.add(splice);
+	}
+	/**
+	 * Check if new members were already inserted at an offset.
+	 *
+	 * @param position The offset
+	 * @return True if there is an insertion at the offset
+	 */
+	private boolean hasInsertionAt(int position){
+		for (Splice splice : _splices) {
+			if(splice.start == position && splice.end == position)
+				return true;
+		}
+		return false;
+	}
+	/**
+	 * Get the splices in source order.
+	 *
+	 * @return The sorted splices
+	 */
+	private List<Splice> getSortedSplices(){
+		List<Splice> result = new ArrayList<>(_splices);
+		Collections.sort(result, new Comparator<Splice>() {
+			@Override
+			public int compare(Splice o1, Splice o2) {
+				// Insertions come before a removal starting at the same offset
+				int result = Integer.compare(o1.start, o2.start);
+				return result != 0 ? result : Integer.compare(o1.end, o2.end);
+			}
+		});
+		return result;
+	}
+	/**
+	 * Find the parent value of a path.
+	 *
+	 * @param path The path
+	 * @return The parent value
+	 */
+	private Node getParent(String[] path){
+		Node parent = _root;
+		for (int i = 0; i < path.length - 1; i++) {
+			parent = getChild(parent, path[i]);
+			if(parent == null)
+				throw new IllegalArgumentException("No value at " + path[i]);
+		}
+		if(parent._type == Type.PRIMITIVE)
+			throw new IllegalArgumentException("Parent is not an object or array");
+		return parent;
+	}
+	/**
+	 * Get the whitespace before the last member of an object, to indent
+	 * new members the same way.
+	 *
+	 * @param parent The object
+	 * @param last The last member
+	 * @return The whitespace
+	 */
+	private String getIndentation(Node parent, Member last){
+		int start = last.keyStart;
+		while(start > parent._start + 1 && isWhitespace(_source[start - 1]))
+			start--;
+		String result = getSourceText(start, last.keyStart);
+		return result.isEmpty() ? " " : result;
+	}
+	/**
+	 * Decode a span of the source.
+	 *
+	 * @param start The start offset
+	 * @param end The end offset
+	 * @return The text of the span
+	 */
+	private String getSourceText(int start, int end){
+		return new String(_source, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Get a child of an object or array.
+	 *
+	 * @param node The object or array
+	 * @param name The member name or element index
+	 * @return The child, null if none
+	 */
+	private static Node getChild(Node node, String name){
+		if(node._type == Type.OBJECT)
+			return node.getMember(name);
+		if(node._type == Type.ARRAY){
+			try{
+				int index = Integer.parseInt(name);
+				return index >= 0 && index < node._elements.size() ? node._elements.get(index) : null;
+			}
+			catch(NumberFormatException ex){
+				return null;
+			}
+		}
+		return null;
+	}
+	/**
+	 * Encode a value as compact json.
+	 *
+	 * @param value The value
+	 * @return The json text
+	 */
+	private static String encode(JsonElement value){
+		StringWriter result = new StringWriter();
+		try{
+			VALUE_GSON.toJson(value, new JsonWriter(result));
+		}
+		catch(JsonParseException ex){
+			throw new IllegalArgumentException(ex);
+		}
+		return result.toString();
+	}
+	/**
+	 * Check if a byte is json whitespace.
+	 *
+	 * @param value The byte
+	 * @return True if whitespace
+	 */
+	private static boolean isWhitespace(byte value){
+		return value == ' ' || value == '\t' || value == '\n' || value == '\r';
+	}
+
+	/**
+	 * An object member, with the offset of its name.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Member{
+		public final int keyStart;
+		public final Node value;
+		public boolean removed;
+
+		public Member(int keyStart, Node value){
+			this.keyStart = keyStart;
+			this.value = value;
+		}
+	}
+	/**
+	 * A replacement of a span of the source.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Splice{
+		public final int start;
+		public final int end;
+		public final byte[] replacement;
+
+		public Splice(int start, int end, String replacement){
+			this.start = start;
+			this.end = end;
+			this.replacement = replacement.getBytes(StandardCharsets.UTF_8);
+		}
+		public Splice(int start, int end, byte[] first, byte[] second){
+			this.start = start;
+			this.end = end;
+			this.replacement = new byte[first.length + second.length];
+			System.arraycopy(first, 0, replacement, 0, first.length);
+			System.arraycopy(second, 0, replacement, first.length, second.length);
+		}
+	}
+
+	/**
+	 * A parser recording the span of every value.
+	 * Strings are only decoded for member names.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Parser{
+		private final byte[] _bytes;
+		private int _position;
+
+		public Parser(byte[] bytes){
+			_bytes = bytes;
+			_position = 0;
+			// Skip a utf-8 byte order mark
+			if(bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF)
+				_position = 3;
+		}
+
+		public Node parseDocument(){
+			skipIgnored();
+			Node result = parseValue();
+			skipIgnored();
+			if(_position != _bytes.length)
+				throw error("Unexpected content after the document");
+			return result;
+		}
+
+		private Node parseValue(){
+			if(_position >= _bytes.length)
+				throw error("Unexpected end of document");
+
+			byte current = _bytes[_position];
+			Node result;
+			if(current == '{'){
+				result = new Node(Type.OBJECT, _position++);
+				parseObject(result);
+			}
+			else if(current == '['){
+				result = new Node(Type.ARRAY, _position++);
+				parseArray(result);
+			}
+			else if(current == '"'){
+				result = new Node(Type.PRIMITIVE, _position);
+				skipString();
+			}
+			else{
+				result = new Node(Type.PRIMITIVE, _position);
+				skipLiteral();
+			}
+			result._end = _position;
+			return result;
+		}
+		private void parseObject(Node node){
+			skipIgnored();
+			while(peek() != '}'){
+				if(peek() != '"')
+					throw error("Expected a member name");
+				int keyStart = _position;
+				skipString();
+				String name = decodeString(keyStart, _position);
+
+				skipIgnored();
+				expect(':');
+				skipIgnored();
+				node._members.put(name, new Member(keyStart, parseValue()));
+				skipIgnored();
+				if(peek() == ','){
+					_position++;
+					skipIgnored();
+				}
+				else if(peek() != '}'){
+					throw error("Expected , or }");
+				}
+			}
+			_position++;
+		}
+		private void parseArray(Node node){
+			skipIgnored();
+			while(peek() != ']'){
+				node._elements.add(parseValue());
+				skipIgnored();
+				if(peek() == ','){
+					_position++;
+					skipIgnored();
+				}
+				else if(peek() != ']'){
+					throw error("Expected , or ]");
+				}
+			}
+			_position++;
+		}
+		private void skipString(){
+			_position++;
+			while(_position < _bytes.length){
+				byte current = _bytes[_position++];
+				if(current == '\\')
+					_position++;
+				else if(current == '"')
+					return;
+			}
+			throw error("Unterminated string");
+		}
+		private void skipLiteral(){
+			int start = _position;
+			while(_position < _bytes.length){
+				byte current = _bytes[_position];
+				if(current == ',' || current == '}' || current == ']' || current == '/' || current == '#' || isWhitespace(current))
+					break;
+				_position++;
+			}
+			if(_position == start)
+				throw error("Expected a value");
+		}
+		private void skipIgnored(){
+			while(_position < _bytes.length){
+				byte current = _bytes[_position];
+				if(isWhitespace(current)){
+					_position++;
+				}
+				else if(current == '#' || current == '/' && _position + 1 < _bytes.length && _bytes[_position + 1] == '/'){
+					while(_position < _bytes.length && _bytes[_position] != '\n')
+						_position++;
+				}
+				else if(current == '/' && _position + 1 < _bytes.length && _bytes[_position + 1] == '*'){
+					_position += 2;
+					while(_position + 1 < _bytes.length && !(_bytes[_position] == '*' && _bytes[_position + 1] == '/'))
+						_position++;
+					if(_position + 1 >= _bytes.length)
+						throw error("Unterminated comment");
+					_position += 2;
+				}
+				else{
+					return;
+				}
+			}
+		}
+		private byte peek(){
+			if(_position >= _bytes.length)
+				throw error("Unexpected end of document");
+			return _bytes[_position];
+		}
+		private void expect(char expected){
+			if(peek() != expected)
+				throw error("Expected " + expected);
+			_position++;
+		}
+		private String decodeString(int start, int end){
+			String text = new String(_bytes, start, end - start, StandardCharsets.UTF_8);
+			if(text.indexOf('\\') < 0)
+				return text.substring(1, text.length() - 1);
+			return new JsonParser().parse(text).getAsString();
+		}
+		private IllegalArgumentException error(String message){
+			return new IllegalArgumentException(message + " at byte " + _position);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A round trip check of the edits of {@link JsonDocument}.
+ * Each case edits a document, writes it, and compares the parsed output
+ * with the expected value. Failed cases are printed and make the check
+ * exit with 1.
+ * <p>
+ * Usage: JsonDocumentCheck
+ *
+ * @author SilverFishCat
+ *
+ */
+public class JsonDocumentCheck {
+	private static int _failures = 0;
+
+	/**
+	 * Run the checks and print the results.
+	 *
+	 * @param args Unused
+	 * @throws IOException If a case document could not be parsed
+	 */
+	public static void main(String[] args) throws IOException{
+		checkRemove("{\"a\":1,\"b\":2}", "{}", "a", "b");
+		checkRemove("{\"a\":1,\"b\":2}", "{}", "b", "a");
+		checkRemove("{\"a\":1,\"b\":2,\"c\":3}", "{\"a\":1}", "c", "b");
+		checkRemove("{\"a\":1,\"b\":2,\"c\":3}", "{\"a\":1}", "b", "c");
+		checkRemove("{\"a\":1,\"b\":2,\"c\":3}", "{\"c\":3}", "a", "b");
+		checkRemove("{\"a\":1,\"b\":2,\"c\":3}", "{\"b\":2}", "a", "c");
+		checkRemove("{\"a\":1,\"b\":2,\"c\":3}", "{}", "b", "a", "c");
+		checkRemove("{\"a\":1,\"b\":2,\"c\":3}", "{}", "c", "a", "b");
+		checkRemove("{\n\t\"a\" : 1, // one\n\t\"b\" : [2],\n\t\"c\" : {\"d\":3}\n}", "{\"a\":1}", "c", "b");
+
+		JsonDocument replaced = JsonDocument.parse("{\"a\":1,\"b\":2,\"c\":3}");
+		replaced.set(new JsonPrimitive(5), "c");
+		replaced.remove("b");
+		replaced.remove("c");
+		check("remove after set", "{\"a\":1}", replaced);
+
+		JsonDocument readded = JsonDocument.parse("{\"a\":1,\"b\":2,\"c\":3}");
+		readded.remove("c");
+		readded.remove("b");
+		readded.set(new JsonPrimitive(4), "b");
+		check("set after remove", "{\"a\":1,\"b\":4}", readded);
+
+		System.out.println(_failures == 0 ? "All checks passed" : _failures + " checks failed");
+		if(_failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Remove members one after another and check the result.
+	 *
+	 * @param source The document
+	 * @param expected The expected result
+	 * @param names The members to remove, in order
+	 * @throws IOException If the document could not be parsed
+	 */
+	private static void checkRemove(String source, String expected, String... names) throws IOException{
+		JsonDocument document = JsonDocument.parse(source);
+		String name = "remove " + Arrays.toString(names) + " from " + source.replaceAll("\\s+", " ");
+		try{
+			for (String member : names) {
+				document.remove(member);
+			}
+		}
+		catch(RuntimeException ex){
+			fail(name, ex.toString());
+			return;
+		}
+		check(name, expected, document);
+	}
+	/**
+	 * Check that an edited document writes the expected value.
+	 *
+	 * @param name The name of the case
+	 * @param expected The expected result
+	 * @param document The edited document
+	 */
+	private static void check(String name, String expected, JsonDocument document){
+		String written = document.toString();
+		try{
+			JsonElement actual = JsonDocument.parse(written).getValue();
+			if(!new JsonParser().parse(expected).equals(actual)){
+				fail(name, written);
+				return;
+			}
+		}
+		catch(IOException | RuntimeException ex){
+			fail(name, written + " (" + ex + ")");
+			return;
+		}
+		System.out.println("ok   " + name);
+	}
+	/**
+	 * Report a failed case.
+	 *
+	 * @param name The name of the case
+	 * @param detail What was written or thrown
+	 */
+	private static void fail(String name, String detail){
+		_failures++;
+		System.out.println("FAIL " + name + ": " + detail);
+	}
+}
@@ -25,20 +25,77 @@ package silver.starbound.util;
 import silver.starbound.data.Item;
 import io.gsonfire.GsonFireBuilder;
 
+import java.util.Map;
+
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 
 public class JsonUtil {
 	private static Gson _gson;
+	private static Gson _compactGson;
 	
+	/**
+	 * Get the shared gson instance, which pretty prints its output.
+	 * 
+	 * @return The shared gson instance
+	 */
 	public static Gson getGsonInstance(){
 		if(_gson == null)
-			_gson = new GsonFireBuilder()
-							.enableExposeMethodResult()
-							.registerPostProcessor(Item.class, new Item.ItemPostProcessor())
-							.createGsonBuilder()
+			_gson = createGsonBuilder()
 							.setPrettyPrinting()
-							.setVersion(1.1d)
 							.create();
 		return _gson;
 	}
+	/**
+	 * Get the shared compact gson instance, which writes
+	 * its output without any whitespace.
+	 * 
+	 * @return The shared compact gson instance
+	 */
+	public static Gson getCompactGsonInstance(){
+		if(_compactGson == null)
+			_compactGson = createGsonBuilder()
+							.create();
+		return _compactGson;
+	}
+	/**
+	 * Copy a json tree, so it can be modified without affecting the original.
+	 * Primitives and nulls are immutable and shared.
+	 * 
+	 * @param json The json tree
+	 * @return An independent copy of the tree
+	 */
+	public static JsonElement copy(JsonElement json){
+		if(json.isJsonObject()){
+			JsonObject result = new JsonObject();
+			for (Map.Entry<String, JsonElement> member : json.getAsJsonObject().entrySet()) {
+				result.add(member.getKey(), copy(member.getValue()));
+			}
+			return result;
+		}
+		if(json.isJsonArray()){
+			JsonArray result = new JsonArray();
+			for (JsonElement element : json.getAsJsonArray()) {
+				result.add(copy(element));
+			}
+			return result;
+		}
+		return json;
+	}
+	
+	/**
+	 * Create a gson builder with the library's adapters and processors.
+	 * 
+	 * @return A new configured gson builder
+	 */
+	private static GsonBuilder createGsonBuilder(){
+		return new GsonFireBuilder()
+						.enableExposeMethodResult()
+						.registerPostProcessor(Item.class, new Item.ItemPostProcessor())
+						.createGsonBuilder()
+						.setVersion(1.1d);
+	}
 }
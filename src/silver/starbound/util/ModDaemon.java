@@ -0,0 +1,774 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import silver.starbound.data.Item;
+import silver.starbound.data.Mod;
+import silver.starbound.data.Settings;
+import silver.starbound.data.StarboundObject;
+import silver.starbound.data.StarboundObjectRegistry;
+import silver.starbound.data.TypedFile;
+import silver.starbound.util.PackerRunner.PackResult;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A long running process that serves build, validate and query commands.
+ * Keeping one process alive keeps gson, tika, the asset registry and the
+ * file caches warm, so repeated commands skip the startup of a new jvm.
+ * The daemon only listens on the loopback interface, and publishes its
+ * port with a secret token in a port file readable only by its owner.
+ * Every connection carries a single json request line and gets a single
+ * json response line. Relative paths in commands are resolved against
+ * the working folder the client sends, or of the daemon if none is sent.
+ * Queries answer from an index of item names per folder, which is
+ * rebuilt once the shared file stat cache reports a change.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ModDaemon {
+	/**
+	 * Check that the daemon is running.
+	 */
+	public static final String COMMAND_PING = "ping";
+	/**
+	 * Pack a mod folder into an output folder: build &lt;modFolder&gt; &lt;outputFolder&gt;
+	 */
+	public static final String COMMAND_BUILD = "build";
+	/**
+	 * Validate the icons of a mod, and optionally its manifest: validate &lt;modFolder&gt; [manifestFile]
+	 */
+	public static final String COMMAND_VALIDATE = "validate";
+	/**
+	 * Find the assets defining an item: query &lt;itemName&gt; &lt;modFolder&gt;...
+	 */
+	public static final String COMMAND_QUERY = "query";
+	/**
+	 * Stop the daemon.
+	 */
+	public static final String COMMAND_SHUTDOWN = "shutdown";
+
+	static final String KEY_TOKEN = "token";
+	static final String KEY_COMMAND = "command";
+	static final String KEY_ARGUMENTS = "args";
+	static final String KEY_WORKING_FOLDER = "cwd";
+	static final String KEY_OK = "ok";
+	static final String KEY_RESULT = "result";
+	static final String KEY_ERROR = "error";
+	static final String PORT_FILE_PORT_KEY = "port";
+	static final String PORT_FILE_TOKEN_KEY = "token";
+
+	private static final String DAEMON_FOLDER_NAME = ".sbmodmake";
+	private static final String PORT_FILE_NAME = "daemon.port";
+	private static final String MODINFO_SUFFIX = ".modinfo";
+	private static final String OWNER_ONLY_FOLDER_PERMISSIONS = "rwx------";
+	private static final String OWNER_ONLY_FILE_PERMISSIONS = "rw-------";
+	private static final int TOKEN_BITS = 130;
+	private static final int TOKEN_RADIX = 32;
+	private static final int CONNECTION_BACKLOG = 50;
+	private static final int READ_TIMEOUT_MILLIS = 30000;
+	private static final int MAX_REQUEST_CHARS = 64 * 1024;
+	private static final long MIN_ACCEPT_RETRY_MILLIS = 10;
+	private static final long MAX_ACCEPT_RETRY_MILLIS = 1000;
+	private static final long PACK_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	private final File _portFile;
+	private final String _token;
+	private final CountDownLatch _stopped;
+	private final Map<File, FolderIndex> _indexes;
+	private ServerSocket _serverSocket;
+	private PackerRunner _packerRunner;
+
+	/**
+	 * Create a daemon publishing its port in the default port file.
+	 */
+	public ModDaemon(){
+		this(getDefaultPortFile());
+	}
+	/**
+	 * Create a daemon.
+	 *
+	 * @param portFile The file the port and token are published in
+	 */
+	public ModDaemon(File portFile){
+		if(portFile == null)
+			throw new NullPointerException("Port file is null");
+
+		_portFile = portFile;
+		_token = new BigInteger(TOKEN_BITS, new SecureRandom()).toString(TOKEN_RADIX);
+		_stopped = new CountDownLatch(1);
+		_indexes = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Get the default port file, in the home folder of the user.
+	 *
+	 * @return The default port file
+	 */
+	public static File getDefaultPortFile(){
+		return new File(new File(System.getProperty("user.home"), DAEMON_FOLDER_NAME), PORT_FILE_NAME);
+	}
+	/**
+	 * Get the file the port and token are published in.
+	 *
+	 * @return The port file
+	 */
+	public File getPortFile(){
+		return _portFile;
+	}
+	/**
+	 * Get the port the daemon listens on.
+	 *
+	 * @return The port, -1 if not started
+	 */
+	public synchronized int getPort(){
+		return _serverSocket == null ? -1 : _serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Warm the caches, start listening and publish the port file.
+	 *
+	 * @throws IOException If the daemon could not listen or write the port file
+	 */
+	public synchronized void start() throws IOException{
+		if(_serverSocket != null)
+			throw new IllegalStateException("Daemon already started");
+		if(_stopped.getCount() == 0)
+			throw new IllegalStateException("Daemon already stopped");
+
+		warm();
+		_serverSocket = new ServerSocket(0, CONNECTION_BACKLOG, InetAddress.getLoopbackAddress());
+		try{
+			writePortFile(_serverSocket.getLocalPort());
+		}
+		catch(IOException ex){
+			_serverSocket.close();
+			_serverSocket = null;
+			throw ex;
+		}
+
+		final ServerSocket serverSocket = _serverSocket;
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept(serverSocket);
+			}
+		}, "sbmodmake-daemon");
+		acceptor.start();
+	}
+	/**
+	 * Stop listening and remove the port file.
+	 * Stopping again does nothing, so a port file published by a newer
+	 * daemon is left alone.
+	 */
+	public synchronized void stop(){
+		if(_serverSocket == null)
+			return;
+
+		try{
+			_serverSocket.close();
+		}
+		catch(IOException ex){
+			// The socket is unusable either way
+		}
+		_serverSocket = null;
+		_portFile.delete();
+		_stopped.countDown();
+	}
+	/**
+	 * Wait until the daemon is stopped.
+	 *
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public void awaitStop() throws InterruptedException{
+		_stopped.await();
+	}
+
+	/**
+	 * Run a command as if it was received from a client.
+	 * Relative paths are resolved against the working folder of the daemon.
+	 *
+	 * @param command The command name
+	 * @param arguments The command arguments
+	 * @return The result of the command
+	 * @throws IOException If the command failed
+	 */
+	public JsonElement execute(String command, List<String> arguments) throws IOException{
+		return execute(command, arguments, null);
+	}
+	/**
+	 * Run a command as if it was received from a client.
+	 *
+	 * @param command The command name
+	 * @param arguments The command arguments
+	 * @param workingFolder The folder relative paths are resolved against, null for the working folder of the daemon
+	 * @return The result of the command
+	 * @throws IOException If the command failed
+	 */
+	public JsonElement execute(String command, List<String> arguments, File workingFolder) throws IOException{
+		switch (command) {
+			case COMMAND_PING:
+				return new JsonPrimitive("pong");
+			case COMMAND_BUILD:
+				requireArguments(command, arguments, 2, 2);
+				return build(resolve(workingFolder, arguments.get(0)), resolve(workingFolder, arguments.get(1)));
+			case COMMAND_VALIDATE:
+				requireArguments(command, arguments, 1, 2);
+				return validate(resolve(workingFolder, arguments.get(0)),
+						arguments.size() > 1 ? resolve(workingFolder, arguments.get(1)) : null);
+			case COMMAND_QUERY:
+				requireArguments(command, arguments, 2, Integer.MAX_VALUE);
+				List<File> modFolders = new ArrayList<>(arguments.size() - 1);
+				for (String modFolder : arguments.subList(1, arguments.size())) {
+					modFolders.add(resolve(workingFolder, modFolder));
+				}
+				return query(arguments.get(0), modFolders);
+			case COMMAND_SHUTDOWN:
+				stop();
+				return new JsonPrimitive("stopped");
+			default:
+				throw new IllegalArgumentException("Unknown command: " + command);
+		}
+	}
+
+	/**
+	 * Run a daemon with the default port file until it is shut down.
+	 *
+	 * @param args Unused
+	 * @throws Exception If the daemon could not start
+	 */
+	public static void main(String[] args) throws Exception{
+		ModDaemon daemon = new ModDaemon();
+		daemon.start();
+		System.out.println("Listening on port " + daemon.getPort());
+		daemon.awaitStop();
+	}
+
+	/**
+	 * Initialize the shared instances every command uses.
+	 */
+	private static void warm(){
+		JsonUtil.getGsonInstance();
+		JsonUtil.getCompactGsonInstance();
+		StarboundObjectRegistry.getDefault();
+		TypedFile.getTika();
+		JsonAssetCache.getDefault();
+		FileStatCache.getDefault();
+		if(Settings.getCurrentSettings() == null)
+			Settings.loadSettings();
+	}
+	/**
+	 * Accept connections until the server socket is closed.
+	 * Failed accepts, such as running out of file handles, are retried
+	 * after a growing delay.
+	 *
+	 * @param serverSocket The server socket
+	 */
+	private void accept(ServerSocket serverSocket){
+		long retryMillis = MIN_ACCEPT_RETRY_MILLIS;
+		while(!serverSocket.isClosed()){
+			final Socket socket;
+			try{
+				socket = serverSocket.accept();
+				retryMillis = MIN_ACCEPT_RETRY_MILLIS;
+			}
+			catch(IOException ex){
+				// Closing the server socket ends the loop
+				if(serverSocket.isClosed())
+					return;
+				try{
+					Thread.sleep(retryMillis);
+				}
+				catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					return;
+				}
+				retryMillis = Math.min(retryMillis * 2, MAX_ACCEPT_RETRY_MILLIS);
+				continue;
+			}
+
+			ExecutorUtil.getIOExecutor().submit(new Runnable() {
+				@Override
+				public void run() {
+					serve(socket);
+				}
+			});
+		}
+	}
+	/**
+	 * Answer the single request of a connection.
+	 *
+	 * @param socket The connection
+	 */
+	private void serve(Socket socket){
+		try(Socket connection = socket){
+			connection.setSoTimeout(READ_TIMEOUT_MILLIS);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+			String line = readRequest(reader);
+			JsonObject response = line != null && line.length() > MAX_REQUEST_CHARS ?
+					createError("Request is longer than " + MAX_REQUEST_CHARS + " characters") : handle(line);
+
+			OutputStream stream = connection.getOutputStream();
+			Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+			JsonUtil.getCompactGsonInstance().toJson(response, writer);
+			writer.write('\n');
+			writer.flush();
+		}
+		catch(SocketException ex){
+			// The client went away
+		}
+		catch(IOException ex){
+			// Nothing can be answered on a broken connection
+		}
+	}
+	/**
+	 * Read the request line of a connection, stopping once it is too long.
+	 *
+	 * @param reader The reader of the connection
+	 * @return The request line, longer than the limit if it was cut off, null if there is none
+	 * @throws IOException If the connection could not be read
+	 */
+	private static String readRequest(BufferedReader reader) throws IOException{
+		StringBuilder result = new StringBuilder();
+		int character;
+		while((character = reader.read()) != -1){
+			if(character == '\n')
+				return result.toString();
+			if(character != '\r')
+				result.append((char)character);
+			if(result.length() > MAX_REQUEST_CHARS)
+				return result.toString();
+		}
+		return result.length() == 0 ? null : result.toString();
+	}
+	/**
+	 * Create the response of a failed request.
+	 *
+	 * @param message The error message
+	 * @return The response
+	 */
+	private static JsonObject createError(String message){
+		JsonObject response = new JsonObject();
+		response.addProperty(KEY_OK, false);
+		response.addProperty(KEY_ERROR, message);
+		return response;
+	}
+	/**
+	 * Run a request line and create its response.
+	 *
+	 * @param line The request line
+	 * @return The response
+	 */
+	private JsonObject handle(String line){
+		try{
+			if(line == null)
+				throw new IllegalArgumentException("Empty request");
+
+			JsonObject request = new JsonParser().parse(line).getAsJsonObject();
+			JsonElement token = request.get(KEY_TOKEN);
+			if(token == null || !isToken(token.getAsString()))
+				throw new SecurityException("Invalid token");
+
+			List<String> arguments = new ArrayList<>();
+			JsonElement argumentsElement = request.get(KEY_ARGUMENTS);
+			if(argumentsElement != null && argumentsElement.isJsonArray()){
+				for (JsonElement argument : argumentsElement.getAsJsonArray()) {
+					arguments.add(argument.getAsString());
+				}
+			}
+
+			JsonElement workingFolder = request.get(KEY_WORKING_FOLDER);
+			JsonObject response = new JsonObject();
+			response.add(KEY_RESULT, execute(request.get(KEY_COMMAND).getAsString(), arguments,
+					workingFolder == null ? null : new File(workingFolder.getAsString())));
+			response.addProperty(KEY_OK, true);
+			return response;
+		}
+		catch(IOException | RuntimeException ex){
+			return createError(ex.getMessage() == null ? ex.toString() : ex.getMessage());
+		}
+	}
+	/**
+	 * Check a request token against the token of the daemon, in constant time.
+	 *
+	 * @param token The request token
+	 * @return True if the token matches
+	 */
+	private boolean isToken(String token){
+		return MessageDigest.isEqual(_token.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+	}
+	/**
+	 * Publish the port and token, readable only by the owner where the file system allows it.
+	 *
+	 * @param port The port the daemon listens on
+	 * @throws IOException If the port file could not be written
+	 */
+	private void writePortFile(int port) throws IOException{
+		File folder = _portFile.getAbsoluteFile().getParentFile();
+		if(!folder.isDirectory()){
+			if(!folder.mkdirs())
+				throw new IOException("Could not create folder: " + folder);
+			setPermissions(folder, OWNER_ONLY_FOLDER_PERMISSIONS);
+		}
+		// The staged file copies the permissions of the port file, so restrict it before the token is written
+		if(!_portFile.exists())
+			_portFile.createNewFile();
+		setPermissions(_portFile, OWNER_ONLY_FILE_PERMISSIONS);
+
+		Properties properties = new Properties();
+		properties.setProperty(PORT_FILE_PORT_KEY, Integer.toString(port));
+		properties.setProperty(PORT_FILE_TOKEN_KEY, _token);
+
+		FileTransaction transaction = new FileTransaction();
+		try{
+			OutputStream stream = transaction.openOutputStream(_portFile);
+			try{
+				properties.store(stream, null);
+			}
+			finally{
+				stream.close();
+			}
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+		setPermissions(_portFile, OWNER_ONLY_FILE_PERMISSIONS);
+	}
+
+	/**
+	 * Pack a mod into an output folder, then write its manifest.
+	 *
+	 * @param modFolder The mod folder
+	 * @param outputFolder The folder the pak file is written to
+	 * @return The pak file and packer output
+	 * @throws IOException If the mod could not be packed
+	 */
+	private JsonElement build(File modFolder, File outputFolder) throws IOException{
+		Mod mod = openMod(modFolder);
+		PackResult result = getPackerRunner().pack(mod, PackerRunner.getOutputFile(mod, outputFolder));
+		if(result.getError() != null)
+			throw result.getError();
+		if(!result.isSuccessful())
+			throw new IOException(result.isTimedOut() ? "Packer timed out" : "Packer exited with " + result.getExitCode() + ": " + result.getErrorOutput());
+
+		JsonObject response = new JsonObject();
+		response.addProperty("output", result.getOutput().getAbsolutePath());
+		response.addProperty("elapsedMillis", result.getElapsedMillis());
+		response.addProperty("standardOutput", result.getStandardOutput());
+		if(result.getManifestError() != null)
+			response.addProperty("manifestError", result.getManifestError().getMessage());
+		return response;
+	}
+	/**
+	 * Validate the item icons of a mod, and its folder against a manifest.
+	 *
+	 * @param modFolder The mod folder
+	 * @param manifestFile The manifest file, null to skip verifying it
+	 * @return The problems found, empty if the mod is valid
+	 * @throws IOException If the mod could not be read
+	 */
+	private static JsonElement validate(File modFolder, File manifestFile) throws IOException{
+		if(!modFolder.isDirectory())
+			throw new IllegalArgumentException("Not a folder: " + modFolder);
+
+		JsonArray problems = new JsonArray();
+		Map<File, IOException> failures = new TreeMap<>();
+		for (IconValidator.IconProblem problem : IconValidator.validate(getItems(modFolder, failures))) {
+			problems.add(new JsonPrimitive(problem.getItem().getFile() + ": " + problem));
+		}
+		for (IOException failure : failures.values()) {
+			problems.add(new JsonPrimitive(failure.getMessage()));
+		}
+		if(manifestFile != null){
+			for (ModManifest.Problem problem : ModManifest.load(manifestFile).verify(modFolder).getProblems()) {
+				problems.add(new JsonPrimitive(problem.toString()));
+			}
+		}
+		return problems;
+	}
+	/**
+	 * Find the items defining a name across mod folders.
+	 *
+	 * @param itemName The item name
+	 * @param modFolders The mod folders to search
+	 * @return The files defining the item
+	 * @throws IOException If a folder could not be read
+	 */
+	private JsonElement query(String itemName, List<File> modFolders) throws IOException{
+		JsonArray files = new JsonArray();
+		for (File modFolder : modFolders) {
+			for (File file : getIndex(modFolder).getFiles(itemName)) {
+				files.add(new JsonPrimitive(file.getAbsolutePath()));
+			}
+		}
+		return files;
+	}
+	/**
+	 * Get the item name index of a folder, rebuilding it if the folder changed.
+	 *
+	 * @param folder The folder
+	 * @return The index of the folder
+	 * @throws IOException If the folder could not be read
+	 */
+	private FolderIndex getIndex(File folder) throws IOException{
+		File key = folder.getAbsoluteFile();
+		FolderIndex index = _indexes.get(key);
+		if(index == null || !index.isCurrent()){
+			index = FolderIndex.create(key);
+			_indexes.put(key, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Get the packer runner of the current settings, creating it on first use.
+	 *
+	 * @return The packer runner
+	 */
+	private synchronized PackerRunner getPackerRunner(){
+		if(_packerRunner == null)
+			_packerRunner = PackerRunner.fromSettings(Settings.getCurrentSettings(),
+					Runtime.getRuntime().availableProcessors(), PACK_TIMEOUT_MILLIS);
+		return _packerRunner;
+	}
+	/**
+	 * Open the mod of a folder, reading its modinfo file if it has one.
+	 *
+	 * @param folder The mod folder
+	 * @return The mod
+	 * @throws IOException If the modinfo file could not be read
+	 */
+	private static Mod openMod(File folder) throws IOException{
+		Mod mod = new Mod();
+		mod.setFolder(folder);
+		File[] modInfoFiles = folder.listFiles();
+		if(modInfoFiles != null){
+			Arrays.sort(modInfoFiles);
+			for (File file : modInfoFiles) {
+				if(file.isFile() && file.getName().endsWith(MODINFO_SUFFIX)){
+					mod.setModInfoFilename(file.getName());
+					mod.loadModInfo();
+					break;
+				}
+			}
+		}
+		return mod;
+	}
+	/**
+	 * Load the items of a folder, through the shared json cache.
+	 * Assets that could not be loaded are skipped.
+	 *
+	 * @param folder The folder
+	 * @param failures Receives the error of every asset that could not be loaded, null to ignore them
+	 * @return The items of the folder
+	 * @throws IOException If the folder could not be listed
+	 */
+	private static List<Item> getItems(File folder, Map<File, IOException> failures) throws IOException{
+		List<Item> result = new ArrayList<>();
+		for (StarboundObject object : StarboundObjectRegistry.getDefault().scan(folder, failures)) {
+			if(object instanceof Item)
+				result.add((Item)object);
+		}
+		return result;
+	}
+	/**
+	 * Resolve a path argument against a working folder.
+	 *
+	 * @param workingFolder The working folder, null to leave the path as is
+	 * @param path The path argument
+	 * @return The file of the path
+	 */
+	private static File resolve(File workingFolder, String path){
+		File file = new File(path);
+		if(workingFolder == null || file.isAbsolute())
+			return file;
+		return new File(workingFolder, path);
+	}
+	/**
+	 * Check the number of arguments of a command.
+	 *
+	 * @param command The command name
+	 * @param arguments The arguments
+	 * @param min The least number of arguments
+	 * @param max The most number of arguments
+	 */
+	private static void requireArguments(String command, List<String> arguments, int min, int max){
+		if(arguments.size() < min || arguments.size() > max)
+			throw new IllegalArgumentException("Wrong number of arguments for " + command);
+	}
+	/**
+	 * Restrict the permissions of a file, where the file system supports it.
+	 *
+	 * @param file The file
+	 * @param permissions The posix permissions
+	 */
+	private static void setPermissions(File file, String permissions){
+		try{
+			Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString(permissions));
+		}
+		catch(UnsupportedOperationException | IOException ex){
+			// Not a posix file system, the user profile folder is private already
+		}
+	}
+
+	/**
+	 * The items of a folder by name, with the file stats it was built from.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class FolderIndex{
+		private final Map<String, List<File>> _files;
+		private final Map<File, Long> _lastModified;
+		private final Map<File, Long> _lengths;
+
+		private FolderIndex(Map<String, List<File>> files, Map<File, Long> lastModified, Map<File, Long> lengths){
+			_files = files;
+			_lastModified = lastModified;
+			_lengths = lengths;
+		}
+
+		/**
+		 * Index the items of a folder.
+		 *
+		 * @param folder The folder
+		 * @return The index
+		 * @throws IOException If the folder could not be listed
+		 */
+		public static FolderIndex create(File folder) throws IOException{
+			if(!folder.isDirectory())
+				throw new IllegalArgumentException("Not a folder: " + folder);
+
+			// Stats are recorded before scanning, so a change during the scan is seen by the next check
+			FileStatCache cache = FileStatCache.getDefault();
+			Map<File, Long> lastModified = new HashMap<>();
+			Map<File, Long> lengths = new HashMap<>();
+			record(cache, folder, lastModified, lengths);
+
+			Map<String, List<File>> files = new HashMap<>();
+			for (Item item : getItems(folder, null)) {
+				String name = item.getItemName();
+				if(name == null)
+					continue;
+
+				List<File> named = files.get(name);
+				if(named == null){
+					named = new ArrayList<>();
+					files.put(name, named);
+				}
+				named.add(item.getFile());
+			}
+			return new FolderIndex(files, lastModified, lengths);
+		}
+
+		/**
+		 * Get the files defining an item.
+		 *
+		 * @param name The item name
+		 * @return The files, empty if none
+		 */
+		public List<File> getFiles(String name){
+			List<File> result = _files.get(name);
+			return result == null ? Collections.<File>emptyList() : result;
+		}
+		/**
+		 * Check that no file or folder changed since the index was built.
+		 * Folders change when files are added or removed in them.
+		 *
+		 * @return True if the index is current
+		 */
+		public boolean isCurrent(){
+			FileStatCache cache = FileStatCache.getDefault();
+			for (Map.Entry<File, Long> entry : _lastModified.entrySet()) {
+				if(cache.lastModified(entry.getKey()) != entry.getValue())
+					return false;
+			}
+			for (Map.Entry<File, Long> entry : _lengths.entrySet()) {
+				if(cache.length(entry.getKey()) != entry.getValue())
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Record the stats of a folder and everything in it.
+		 *
+		 * @param cache The stat cache
+		 * @param folder The folder
+		 * @param lastModified Receives the modification times
+		 * @param lengths Receives the lengths of the files
+		 */
+		private static void record(FileStatCache cache, File folder, Map<File, Long> lastModified, Map<File, Long> lengths){
+			lastModified.put(folder, cache.lastModified(folder));
+			File[] children = folder.listFiles();
+			if(children == null)
+				return;
+
+			for (File child : children) {
+				if(cache.isDirectory(child)){
+					record(cache, child, lastModified, lengths);
+				}
+				else{
+					lastModified.put(child, cache.lastModified(child));
+					lengths.put(child, cache.length(child));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A thin client sending commands to a running {@link ModDaemon}.
+ * The port and token of the daemon are read from its port file, and
+ * the working folder of the client is sent along so the daemon resolves
+ * relative paths like the client would.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ModDaemonClient {
+	private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+	private final File _portFile;
+
+	/**
+	 * Create a client of the daemon using the default port file.
+	 */
+	public ModDaemonClient(){
+		this(ModDaemon.getDefaultPortFile());
+	}
+	/**
+	 * Create a client.
+	 *
+	 * @param portFile The port file of the daemon
+	 */
+	public ModDaemonClient(File portFile){
+		if(portFile == null)
+			throw new NullPointerException("Port file is null");
+
+		_portFile = portFile;
+	}
+
+	/**
+	 * Check if a daemon is running and answering.
+	 *
+	 * @return True if the daemon answered a ping
+	 */
+	public boolean isRunning(){
+		try{
+			send(ModDaemon.COMMAND_PING);
+			return true;
+		}
+		catch(IOException ex){
+			return false;
+		}
+	}
+	/**
+	 * Send a command to the daemon and wait for its result.
+	 *
+	 * @param command The command name
+	 * @param arguments The command arguments
+	 * @return The result of the command
+	 * @throws IOException If the daemon could not be reached or the command failed
+	 */
+	public JsonElement send(String command, String... arguments) throws IOException{
+		return send(command, Arrays.asList(arguments));
+	}
+	/**
+	 * Send a command to the daemon and wait for its result.
+	 *
+	 * @param command The command name
+	 * @param arguments The command arguments
+	 * @return The result of the command
+	 * @throws IOException If the daemon could not be reached or the command failed
+	 */
+	public JsonElement send(String command, List<String> arguments) throws IOException{
+		Properties portFile = readPortFile();
+		int port;
+		try{
+			port = Integer.parseInt(portFile.getProperty(ModDaemon.PORT_FILE_PORT_KEY));
+		}
+		catch(NumberFormatException ex){
+			throw new IOException("Invalid port file: " + _portFile, ex);
+		}
+
+		JsonObject request = new JsonObject();
+		request.addProperty(ModDaemon.KEY_TOKEN, portFile.getProperty(ModDaemon.PORT_FILE_TOKEN_KEY));
+		request.addProperty(ModDaemon.KEY_COMMAND, command);
+		JsonArray requestArguments = new JsonArray();
+		for (String argument : arguments) {
+			requestArguments.add(new JsonPrimitive(argument));
+		}
+		request.add(ModDaemon.KEY_ARGUMENTS, requestArguments);
+		request.addProperty(ModDaemon.KEY_WORKING_FOLDER, new File("").getAbsolutePath());
+
+		String line;
+		try(Socket socket = new Socket()){
+			socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			writer.write(request.toString());
+			writer.write('\n');
+			writer.flush();
+
+			line = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+		}
+		if(line == null)
+			throw new IOException("Daemon closed the connection");
+
+		JsonObject response = new JsonParser().parse(line).getAsJsonObject();
+		if(!response.get(ModDaemon.KEY_OK).getAsBoolean())
+			throw new IOException(response.get(ModDaemon.KEY_ERROR).getAsString());
+		return response.get(ModDaemon.KEY_RESULT);
+	}
+
+	/**
+	 * Send the command in the arguments to the daemon and print its result.
+	 * Exits with 1 if the command failed.
+	 *
+	 * @param args The command name followed by its arguments
+	 */
+	public static void main(String[] args){
+		if(args.length == 0){
+			System.err.println("Usage: <command> [arguments...]");
+			System.exit(2);
+		}
+
+		try{
+			JsonElement result = new ModDaemonClient().send(args[0], Arrays.asList(args).subList(1, args.length));
+			// Printed without gson-fire, so the client starts as fast as possible
+			if(result.isJsonPrimitive())
+				System.out.println(result.getAsString());
+			else
+				System.out.println(result);
+		}
+		catch(IOException ex){
+			System.err.println(ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Read the port and token of the daemon.
+	 *
+	 * @return The port file properties
+	 * @throws IOException If no daemon published a port file
+	 */
+	private Properties readPortFile() throws IOException{
+		if(!_portFile.isFile())
+			throw new IOException("Daemon is not running, no port file: " + _portFile);
+
+		Properties result = new Properties();
+		try(InputStream stream = new BufferedInputStream(new FileInputStream(_portFile))){
+			result.load(stream);
+		}
+		return result;
+	}
+}
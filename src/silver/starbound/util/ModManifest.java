@@ -0,0 +1,590 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import silver.starbound.data.Mod;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A record of the path, size and content hash of every asset of a mod.
+ * A manifest is written next to the pak file when a mod is packed, and
+ * an installed mod folder can later be verified against it. Verifying
+ * trusts files whose size and modification time are unchanged, and only
+ * hashes the files that look modified.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ModManifest {
+	private static final String MANIFEST_FILE_SUFFIX = ".manifest.json";
+	private static final String PATH_SEPARATOR = "/";
+
+	private static final String KEY_ASSETS = "assets";
+	private static final String KEY_PATH = "path";
+	private static final String KEY_SIZE = "size";
+	private static final String KEY_MODIFIED = "modified";
+	private static final String KEY_HASH = "sha256";
+
+	/**
+	 * A single asset recorded in a manifest.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Asset{
+		private final String _path;
+		private final long _size;
+		private final long _lastModified;
+		private final String _hash;
+
+		private Asset(String path, long size, long lastModified, String hash){
+			_path = path;
+			_size = size;
+			_lastModified = lastModified;
+			_hash = hash;
+		}
+
+		/**
+		 * Get the path of the asset inside the mod folder.
+		 *
+		 * @return The relative path, separated by /
+		 */
+		public String getPath(){
+			return _path;
+		}
+		/**
+		 * Get the size of the asset.
+		 *
+		 * @return The size in bytes
+		 */
+		public long getSize(){
+			return _size;
+		}
+		/**
+		 * Get the modification time of the asset when it was recorded.
+		 *
+		 * @return The modification time in nanoseconds
+		 */
+		public long getLastModified(){
+			return _lastModified;
+		}
+		/**
+		 * Get the content hash of the asset.
+		 *
+		 * @return The hex encoded SHA-256 hash
+		 */
+		public String getHash(){
+			return _hash;
+		}
+	}
+
+	/**
+	 * A kind of difference between a manifest and a mod folder.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public enum ProblemType{
+		/**
+		 * An asset of the manifest is not in the folder.
+		 */
+		MISSING,
+		/**
+		 * A file of the folder is not in the manifest.
+		 */
+		EXTRA,
+		/**
+		 * A file differs from its asset in the manifest.
+		 */
+		MODIFIED
+	}
+
+	/**
+	 * A difference found while verifying a mod folder.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class Problem{
+		private final String _path;
+		private final ProblemType _type;
+		private final String _details;
+
+		private Problem(String path, ProblemType type, String details){
+			_path = path;
+			_type = type;
+			_details = details;
+		}
+
+		/**
+		 * Get the path of the file with the problem.
+		 *
+		 * @return The relative path, separated by /
+		 */
+		public String getPath(){
+			return _path;
+		}
+		/**
+		 * Get the kind of the problem.
+		 *
+		 * @return The problem type
+		 */
+		public ProblemType getType(){
+			return _type;
+		}
+		/**
+		 * Get a human readable description of the problem.
+		 *
+		 * @return The problem details
+		 */
+		public String getDetails(){
+			return _details;
+		}
+
+		@Override
+		public String toString() {
+			return _type + ": " + _details;
+		}
+	}
+
+	/**
+	 * The outcome of verifying a mod folder.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class VerifyResult{
+		private final File _folder;
+		private final List<Problem> _problems;
+		private final int _checkedCount;
+		private final int _hashedCount;
+
+		private VerifyResult(File folder, List<Problem> problems, int checkedCount, int hashedCount){
+			_folder = folder;
+			_problems = Collections.unmodifiableList(problems);
+			_checkedCount = checkedCount;
+			_hashedCount = hashedCount;
+		}
+
+		/**
+		 * Get the verified folder.
+		 *
+		 * @return The mod folder
+		 */
+		public File getFolder(){
+			return _folder;
+		}
+		/**
+		 * Get the differences found.
+		 *
+		 * @return The problems, sorted by path
+		 */
+		public List<Problem> getProblems(){
+			return _problems;
+		}
+		/**
+		 * Get the number of assets checked.
+		 *
+		 * @return The number of assets in the manifest
+		 */
+		public int getCheckedCount(){
+			return _checkedCount;
+		}
+		/**
+		 * Get the number of files whose content had to be hashed.
+		 *
+		 * @return The number of hashed files
+		 */
+		public int getHashedCount(){
+			return _hashedCount;
+		}
+		/**
+		 * Check if the folder matches the manifest.
+		 *
+		 * @return True if no problem was found
+		 */
+		public boolean isValid(){
+			return _problems.isEmpty();
+		}
+	}
+
+	private final Map<String, Asset> _assets;
+
+	private ModManifest(Map<String, Asset> assets){
+		_assets = assets;
+	}
+
+	/**
+	 * Get the recorded assets.
+	 *
+	 * @return The assets, sorted by path
+	 */
+	public List<Asset> getAssets(){
+		List<Asset> result = new ArrayList<>(_assets.values());
+		Collections.sort(result, new Comparator<Asset>() {
+			@Override
+			public int compare(Asset first, Asset second) {
+				return first.getPath().compareTo(second.getPath());
+			}
+		});
+		return result;
+	}
+	/**
+	 * Get a recorded asset.
+	 *
+	 * @param path The relative path of the asset, separated by /
+	 * @return The asset, null if not recorded
+	 */
+	public Asset getAsset(String path){
+		return _assets.get(path);
+	}
+	/**
+	 * Get the number of recorded assets.
+	 *
+	 * @return The number of assets
+	 */
+	public int size(){
+		return _assets.size();
+	}
+
+	/**
+	 * Get the manifest file of a mod inside an output folder.
+	 *
+	 * @param mod The mod
+	 * @param outputFolder The folder the pak files are written to
+	 * @return The manifest file of the mod
+	 */
+	public static File getManifestFile(Mod mod, File outputFolder){
+		String name = mod.isNameValid() ? mod.getName() : mod.getFolder().getName();
+		return new File(outputFolder, name + MANIFEST_FILE_SUFFIX);
+	}
+
+	/**
+	 * Record every asset of a mod folder, hashing them in parallel.
+	 *
+	 * @param folder The mod folder
+	 * @return The manifest of the folder
+	 * @throws IOException If a file could not be read
+	 */
+	public static ModManifest create(final File folder) throws IOException{
+		List<File> files = PathUtil.listFiles(folder);
+		List<Callable<Asset>> tasks = new ArrayList<>(files.size());
+		for (final File file : files) {
+			tasks.add(new Callable<Asset>() {
+				@Override
+				public Asset call() throws IOException {
+					BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+					return new Asset(getPath(folder, file), attributes.size(),
+							attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), HashUtil.hashFile(file));
+				}
+			});
+		}
+
+		Map<String, Asset> assets = new HashMap<>();
+		for (Asset asset : ExecutorUtil.invokeAll(ExecutorUtil.Strategy.cpu(), tasks)) {
+			assets.put(asset.getPath(), asset);
+		}
+		return new ModManifest(assets);
+	}
+	/**
+	 * Load a manifest file.
+	 *
+	 * @param file The manifest file
+	 * @return The manifest
+	 * @throws IOException If the file could not be read or is not a manifest
+	 */
+	public static ModManifest load(File file) throws IOException{
+		Map<String, Asset> assets = new HashMap<>();
+		try(JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))){
+			reader.beginObject();
+			while(reader.hasNext()){
+				if(!reader.nextName().equals(KEY_ASSETS)){
+					reader.skipValue();
+					continue;
+				}
+
+				reader.beginArray();
+				while(reader.hasNext()){
+					Asset asset = readAsset(reader);
+					assets.put(asset.getPath(), asset);
+				}
+				reader.endArray();
+			}
+			reader.endObject();
+		}
+		catch(IllegalStateException | NumberFormatException ex){
+			throw new IOException("Not a manifest file: " + file, ex);
+		}
+		return new ModManifest(assets);
+	}
+	/**
+	 * Save the manifest atomically.
+	 *
+	 * @param file The manifest file to write
+	 * @throws IOException If the file could not be written
+	 */
+	public void save(File file) throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			save(file, transaction);
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Stage saving the manifest as part of a transaction.
+	 *
+	 * @param file The manifest file to write
+	 * @param transaction The transaction to stage the write in
+	 * @throws IOException If the file could not be staged
+	 */
+	public void save(File file, FileTransaction transaction) throws IOException{
+		Writer writer = transaction.openWriter(file);
+		try{
+			JsonWriter json = new JsonWriter(writer);
+			json.setIndent("\t");
+			json.beginObject();
+			json.name(KEY_ASSETS).beginArray();
+			for (Asset asset : getAssets()) {
+				json.beginObject();
+				json.name(KEY_PATH).value(asset.getPath());
+				json.name(KEY_SIZE).value(asset.getSize());
+				json.name(KEY_MODIFIED).value(asset.getLastModified());
+				json.name(KEY_HASH).value(asset.getHash());
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+			json.close();
+		}
+		catch(IOException | RuntimeException ex){
+			// A partial manifest must not be committed with the rest of the transaction
+			transaction.unstage(file);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Verify a folder against the manifest.
+	 *
+	 * @param folder The folder to verify
+	 * @return The outcome of the verification
+	 * @throws IOException If the folder could not be read
+	 */
+	public VerifyResult verify(File folder) throws IOException{
+		return verifyAll(Collections.singletonMap(folder, this)).get(0);
+	}
+	/**
+	 * Verify the folders of mods against their manifests in an output folder.
+	 *
+	 * @param mods The mods to verify
+	 * @param outputFolder The folder the manifests were written to
+	 * @return The outcomes, in the order of the mods
+	 * @throws IOException If a manifest or folder could not be read
+	 */
+	public static List<VerifyResult> verifyAll(Collection<Mod> mods, File outputFolder) throws IOException{
+		Map<File, ModManifest> manifests = new LinkedHashMap<>();
+		for (Mod mod : mods) {
+			manifests.put(mod.getFolder(), load(getManifestFile(mod, outputFolder)));
+		}
+		return verifyAll(manifests);
+	}
+	/**
+	 * Verify folders against their manifests.
+	 * The folders are scanned in parallel, comparing sizes and modification
+	 * times, and then every file whose time changed is hashed in parallel.
+	 *
+	 * @param manifests The manifest of each folder
+	 * @return The outcomes, in the order of the folders
+	 * @throws IOException If a folder could not be read
+	 */
+	public static List<VerifyResult> verifyAll(Map<File, ModManifest> manifests) throws IOException{
+		List<Callable<Scan>> scanTasks = new ArrayList<>(manifests.size());
+		for (final Map.Entry<File, ModManifest> entry : manifests.entrySet()) {
+			scanTasks.add(new Callable<Scan>() {
+				@Override
+				public Scan call() throws IOException {
+					return entry.getValue().scan(entry.getKey());
+				}
+			});
+		}
+		List<Scan> scans = ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), scanTasks);
+
+		// Suspicious files of every folder are hashed together, so one changed mod uses every core
+		List<Callable<String>> hashTasks = new ArrayList<>();
+		for (Scan scan : scans) {
+			for (final File file : scan.suspicious.keySet()) {
+				hashTasks.add(new Callable<String>() {
+					@Override
+					public String call() throws IOException {
+						return HashUtil.hashFile(file);
+					}
+				});
+			}
+		}
+		List<String> hashes = ExecutorUtil.invokeAll(ExecutorUtil.Strategy.cpu(), hashTasks);
+
+		List<VerifyResult> result = new ArrayList<>(scans.size());
+		int hashIndex = 0;
+		for (Scan scan : scans) {
+			for (Map.Entry<File, Asset> suspicious : scan.suspicious.entrySet()) {
+				Asset asset = suspicious.getValue();
+				if(!asset.getHash().equals(hashes.get(hashIndex++)))
+					scan.problems.add(new Problem(asset.getPath(), ProblemType.MODIFIED, "Content changed: " + asset.getPath()));
+			}
+
+			Collections.sort(scan.problems, new Comparator<Problem>() {
+				@Override
+				public int compare(Problem first, Problem second) {
+					return first.getPath().compareTo(second.getPath());
+				}
+			});
+			result.add(new VerifyResult(scan.folder, scan.problems, scan.checkedCount, scan.suspicious.size()));
+		}
+		return result;
+	}
+
+	/**
+	 * Compare a folder against the manifest without reading any file content.
+	 *
+	 * @param folder The folder to compare
+	 * @return The problems found and the files that need hashing
+	 * @throws IOException If the folder could not be read
+	 */
+	private Scan scan(File folder) throws IOException{
+		Scan result = new Scan(folder, _assets.size());
+		Map<String, Asset> unseen = new HashMap<>(_assets);
+		for (File file : PathUtil.listFiles(folder)) {
+			String path = getPath(folder, file);
+			Asset asset = unseen.remove(path);
+			if(asset == null){
+				result.problems.add(new Problem(path, ProblemType.EXTRA, "File is not in the manifest: " + path));
+				continue;
+			}
+
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			if(attributes.size() != asset.getSize())
+				result.problems.add(new Problem(path, ProblemType.MODIFIED,
+						"Size changed from " + asset.getSize() + " to " + attributes.size() + ": " + path));
+			else if(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) != asset.getLastModified())
+				result.suspicious.put(file, asset);
+		}
+		for (String path : unseen.keySet()) {
+			result.problems.add(new Problem(path, ProblemType.MISSING, "File is missing: " + path));
+		}
+		return result;
+	}
+	/**
+	 * Read a single asset of a manifest file.
+	 *
+	 * @param reader The reader positioned at the asset
+	 * @return The asset
+	 * @throws IOException If the asset could not be read
+	 */
+	private static Asset readAsset(JsonReader reader) throws IOException{
+		String path = null;
+		String hash = null;
+		long size = -1;
+		long lastModified = 0;
+
+		reader.beginObject();
+		while(reader.hasNext()){
+			switch (reader.nextName()) {
+				case KEY_PATH:
+					path = reader.nextString();
+					break;
+				case KEY_SIZE:
+					size = reader.nextLong();
+					break;
+				case KEY_MODIFIED:
+					lastModified = reader.nextLong();
+					break;
+				case KEY_HASH:
+					hash = reader.nextString();
+					break;
+				default:
+					reader.skipValue();
+					break;
+			}
+		}
+		reader.endObject();
+
+		if(path == null || hash == null || size < 0)
+			throw new IOException("Incomplete manifest asset: " + path);
+		return new Asset(path, size, lastModified, hash);
+	}
+	/**
+	 * Get the manifest path of a file inside a folder.
+	 *
+	 * @param folder The mod folder
+	 * @param file The file
+	 * @return The relative path, separated by /
+	 */
+	private static String getPath(File folder, File file){
+		return folder.toPath().relativize(file.toPath()).toString().replace(File.separator, PATH_SEPARATOR);
+	}
+
+	/**
+	 * The result of comparing a folder against a manifest without hashing.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Scan{
+		public final File folder;
+		public final int checkedCount;
+		public final List<Problem> problems;
+		public final Map<File, Asset> suspicious;
+
+		public Scan(File folder, int checkedCount){
+			this.folder = folder;
+			this.checkedCount = checkedCount;
+			this.problems = new ArrayList<>();
+			this.suspicious = new LinkedHashMap<>();
+		}
+	}
+}
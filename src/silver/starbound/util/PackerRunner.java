@@ -0,0 +1,450 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import silver.starbound.data.Mod;
+import silver.starbound.data.Settings;
+
+/**
+ * Runs the starbound asset packer for many mods at once.
+ * At most a fixed number of packer processes run at the same time,
+ * and each one is killed if it runs longer than the timeout.
+ * Any program taking a mod folder and an output file can stand in for
+ * the packer, such as scripts/stand-in-packer.sh.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class PackerRunner {
+	private static final String PAK_FILE_SUFFIX = ".pak";
+	private static final int MAX_CAPTURED_OUTPUT = 1024 * 1024;
+	private static final int READ_BUFFER_SIZE = 8192;
+	private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * The outcome of packing a single mod.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class PackResult{
+		private final Mod _mod;
+		private final File _output;
+		private final int _exitCode;
+		private final boolean _timedOut;
+		private final String _standardOutput;
+		private final String _errorOutput;
+		private final long _elapsedMillis;
+		private final IOException _error;
+		private final IOException _manifestError;
+
+		private PackResult(Mod mod, File output, int exitCode, boolean timedOut,
+				String standardOutput, String errorOutput, long elapsedMillis, IOException error){
+			this(mod, output, exitCode, timedOut, standardOutput, errorOutput, elapsedMillis, error, null);
+		}
+		private PackResult(Mod mod, File output, int exitCode, boolean timedOut,
+				String standardOutput, String errorOutput, long elapsedMillis, IOException error,
+				IOException manifestError){
+			_mod = mod;
+			_output = output;
+			_exitCode = exitCode;
+			_timedOut = timedOut;
+			_standardOutput = standardOutput;
+			_errorOutput = errorOutput;
+			_elapsedMillis = elapsedMillis;
+			_error = error;
+			_manifestError = manifestError;
+		}
+
+		/**
+		 * Get the mod that was packed.
+		 *
+		 * @return The mod that was packed
+		 */
+		public Mod getMod(){
+			return _mod;
+		}
+		/**
+		 * Get the pak file the packer wrote.
+		 *
+		 * @return The pak file
+		 */
+		public File getOutput(){
+			return _output;
+		}
+		/**
+		 * Get the exit code of the packer.
+		 *
+		 * @return The exit code, -1 if the packer did not exit on its own
+		 */
+		public int getExitCode(){
+			return _exitCode;
+		}
+		/**
+		 * Check if the packer was killed for running too long.
+		 *
+		 * @return True if the packer timed out
+		 */
+		public boolean isTimedOut(){
+			return _timedOut;
+		}
+		/**
+		 * Get what the packer wrote to its standard output.
+		 *
+		 * @return The standard output of the packer
+		 */
+		public String getStandardOutput(){
+			return _standardOutput;
+		}
+		/**
+		 * Get what the packer wrote to its error output.
+		 *
+		 * @return The error output of the packer
+		 */
+		public String getErrorOutput(){
+			return _errorOutput;
+		}
+		/**
+		 * Get how long packing took.
+		 *
+		 * @return The time the packer ran in milliseconds
+		 */
+		public long getElapsedMillis(){
+			return _elapsedMillis;
+		}
+		/**
+		 * Get the error that prevented the packer from running.
+		 *
+		 * @return The error, null if the packer ran
+		 */
+		public IOException getError(){
+			return _error;
+		}
+		/**
+		 * Get the error that prevented the manifest from being written.
+		 * The pak file is not affected by it.
+		 *
+		 * @return The error, null if the manifest was written or not needed
+		 */
+		public IOException getManifestError(){
+			return _manifestError;
+		}
+		/**
+		 * Check if the mod was packed successfully.
+		 *
+		 * @return True if the packer ran in time and exited with 0
+		 */
+		public boolean isSuccessful(){
+			return _error == null && !_timedOut && _exitCode == 0;
+		}
+
+		/**
+		 * Copy this result with an error writing the manifest.
+		 *
+		 * @param manifestError The error
+		 * @return The copied result
+		 */
+		private PackResult withManifestError(IOException manifestError){
+			return new PackResult(_mod, _output, _exitCode, _timedOut, _standardOutput,
+					_errorOutput, _elapsedMillis, _error, manifestError);
+		}
+	}
+
+	private final File _packer;
+	private final Semaphore _permits;
+	private final long _timeoutMillis;
+
+	/**
+	 * Create a new packer runner.
+	 *
+	 * @param packer The packer executable, any program taking a mod folder and an output file
+	 * @param concurrency The maximum number of packers running at once
+	 * @param timeoutMillis The maximum time a single packer may run
+	 */
+	public PackerRunner(File packer, int concurrency, long timeoutMillis){
+		if(packer == null)
+			throw new NullPointerException("Packer is null");
+		if(concurrency < 1)
+			throw new IllegalArgumentException("Concurrency must be positive");
+		if(timeoutMillis <= 0)
+			throw new IllegalArgumentException("Timeout must be positive");
+
+		_packer = packer;
+		_permits = new Semaphore(concurrency, true);
+		_timeoutMillis = timeoutMillis;
+	}
+	/**
+	 * Create a packer runner for the packer of the given settings.
+	 *
+	 * @param settings The settings to conform by
+	 * @param concurrency The maximum number of packers running at once
+	 * @param timeoutMillis The maximum time a single packer may run
+	 * @return The packer runner
+	 */
+	public static PackerRunner fromSettings(Settings settings, int concurrency, long timeoutMillis){
+		File packer = PathUtil.getPacker(settings);
+		if(packer == null)
+			throw new IllegalArgumentException("Tool settings are not valid");
+
+		return new PackerRunner(packer, concurrency, timeoutMillis);
+	}
+
+	/**
+	 * Get the packer executable.
+	 *
+	 * @return The packer executable
+	 */
+	public File getPacker(){
+		return _packer;
+	}
+	/**
+	 * Get the default pak file of a mod inside an output folder.
+	 *
+	 * @param mod The mod to pack
+	 * @param outputFolder The folder the pak files are written to
+	 * @return The pak file of the mod
+	 */
+	public static File getOutputFile(Mod mod, File outputFolder){
+		if(!mod.isNameValid() && mod.getFolder() == null)
+			throw new IllegalArgumentException("Mod has neither a name nor a folder");
+
+		String name = mod.isNameValid() ? mod.getName() : mod.getFolder().getName();
+		return new File(outputFolder, name + PAK_FILE_SUFFIX);
+	}
+
+	/**
+	 * Pack every mod into the output folder, running packers concurrently.
+	 * Failures of single mods are reported in their results.
+	 *
+	 * @param mods The mods to pack
+	 * @param outputFolder The folder the pak files are written to
+	 * @return The results, in the order of the mods
+	 * @throws IOException If waiting for the packers was interrupted
+	 */
+	public List<PackResult> packAll(Collection<Mod> mods, final File outputFolder) throws IOException{
+		List<Callable<PackResult>> tasks = new ArrayList<>(mods.size());
+		for (final Mod mod : mods) {
+			tasks.add(new Callable<PackResult>() {
+				@Override
+				public PackResult call() {
+					return pack(mod, null, outputFolder);
+				}
+			});
+		}
+
+		return ExecutorUtil.invokeAll(ExecutorUtil.Strategy.io(), tasks);
+	}
+	/**
+	 * Pack a single mod, waiting for a free slot if too many packers are running.
+	 * A successfully packed mod gets its manifest written next to the pak file,
+	 * failing to write it is reported separately in the result.
+	 *
+	 * @param mod The mod to pack
+	 * @param output The pak file to write
+	 * @return The result of packing
+	 */
+	public PackResult pack(Mod mod, File output){
+		if(output == null)
+			throw new NullPointerException("Output is null");
+
+		return pack(mod, output, null);
+	}
+
+	/**
+	 * Pack a single mod, resolving its pak file in the output folder if not given.
+	 * Every failure, including an unresolvable pak file, is reported in the result.
+	 *
+	 * @param mod The mod to pack
+	 * @param output The pak file to write, null to use the default file of the output folder
+	 * @param outputFolder The folder the pak files are written to
+	 * @return The result of packing
+	 */
+	private PackResult pack(Mod mod, File output, File outputFolder){
+		long start = System.nanoTime();
+		try{
+			if(output == null)
+				output = getOutputFile(mod, outputFolder);
+			if(!mod.isFolderValid())
+				throw new IOException("Mod folder is not valid: " + mod.getFolder());
+
+			PackResult result;
+			_permits.acquire();
+			try{
+				start = System.nanoTime();
+				result = runPacker(mod, output, start);
+			}
+			finally{
+				_permits.release();
+			}
+
+			if(result.isSuccessful()){
+				try{
+					ModManifest.create(mod.getFolder()).save(ModManifest.getManifestFile(mod, output.getAbsoluteFile().getParentFile()));
+				}
+				catch(IOException ex){
+					result = result.withManifestError(ex);
+				}
+			}
+			return result;
+		}
+		catch(InterruptedException ex){
+			Thread.currentThread().interrupt();
+			return new PackResult(mod, output, -1, false, "", "", elapsedSince(start), new IOException("Interrupted", ex));
+		}
+		catch(IOException ex){
+			return new PackResult(mod, output, -1, false, "", "", elapsedSince(start), ex);
+		}
+		catch(IllegalArgumentException ex){
+			return new PackResult(mod, output, -1, false, "", "", elapsedSince(start), new IOException(ex.getMessage(), ex));
+		}
+	}
+
+	/**
+	 * Run the packer process for a mod.
+	 *
+	 * @param mod The mod to pack
+	 * @param output The pak file to write
+	 * @param start The time packing started
+	 * @return The result of packing
+	 * @throws IOException If the packer could not be started
+	 * @throws InterruptedException If interrupted while waiting for the packer
+	 */
+	private PackResult runPacker(Mod mod, File output, long start) throws IOException, InterruptedException{
+		Process process = new ProcessBuilder(_packer.getAbsolutePath(),
+								mod.getFolder().getAbsolutePath(),
+								output.getAbsolutePath())
+							.start();
+		process.getOutputStream().close();
+
+		// Both pipes are drained while the packer runs, so it never blocks writing
+		Future<String> standardOutput = drain(process.getInputStream());
+		Future<String> errorOutput = drain(process.getErrorStream());
+
+		boolean timedOut = false;
+		int exitCode = -1;
+		try{
+			if(process.waitFor(_timeoutMillis, TimeUnit.MILLISECONDS))
+				exitCode = process.exitValue();
+			else
+				timedOut = true;
+		}
+		catch(InterruptedException ex){
+			// The wait cleared the interrupt flag, the packer must not outlive it
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+			throw ex;
+		}
+		if(timedOut)
+			process.destroyForcibly().waitFor();
+
+		long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MILLIS);
+		return new PackResult(mod, output, exitCode, timedOut,
+				getDrained(standardOutput, process.getInputStream(), drainDeadline),
+				getDrained(errorOutput, process.getErrorStream(), drainDeadline),
+				elapsedSince(start), null);
+	}
+	/**
+	 * Wait for a drained stream after its process ended.
+	 * Children of the packer can keep a pipe open, so the wait is bounded.
+	 *
+	 * @param drained The draining task
+	 * @param stream The stream being drained
+	 * @param deadline The time to give up at, from {@link System#nanoTime()}
+	 * @return The captured content, empty if the stream did not end in time or could not be read
+	 * @throws IOException If the stream could not be read
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	private static String getDrained(Future<String> drained, final InputStream stream, long deadline) throws IOException, InterruptedException{
+		try{
+			return drained.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+		catch(TimeoutException ex){
+			// Closing can block behind the pending read, so it is not waited for
+			drained.cancel(true);
+			ExecutorUtil.getIOExecutor().submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					stream.close();
+					return null;
+				}
+			});
+			return "";
+		}
+		catch(ExecutionException ex){
+			// A broken pipe loses the output, not the exit code of the packer
+			return "";
+		}
+	}
+	/**
+	 * Read a process stream until it ends on the io executor.
+	 * Output past the capture limit is read and discarded.
+	 *
+	 * @param stream The stream to drain
+	 * @return The captured content of the stream
+	 */
+	private static Future<String> drain(final InputStream stream){
+		return ExecutorUtil.getIOExecutor().submit(new Callable<String>() {
+			@Override
+			public String call() throws IOException {
+				ByteArrayOutputStream captured = new ByteArrayOutputStream();
+				byte[] buffer = new byte[READ_BUFFER_SIZE];
+				try{
+					int read;
+					while((read = stream.read(buffer)) != -1){
+						int toKeep = Math.min(read, MAX_CAPTURED_OUTPUT - captured.size());
+						if(toKeep > 0)
+							captured.write(buffer, 0, toKeep);
+					}
+				}
+				finally{
+					stream.close();
+				}
+				return new String(captured.toByteArray(), Charset.defaultCharset());
+			}
+		});
+	}
+	/**
+	 * Get the milliseconds since a point in time.
+	 *
+	 * @param start The point in time, from {@link System#nanoTime()}
+	 * @return The elapsed milliseconds
+	 */
+	private static long elapsedSince(long start){
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+}
@@ -23,6 +23,14 @@
 package silver.starbound.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 
 import silver.starbound.data.Settings;
 import silver.starbound.util.OSUtil.OperatingSystem;
@@ -46,22 +54,16 @@ public class PathUtil {
 	
 	private static final String DEFAULT_WINDOWS_STARBOUND_PATH	= "C:\\Program Files (x86)\\Steam" + STARBOUND_FOLDER_PATH;
 	private static final String DEFAULT_LINUX_STARBOUND_PATH	= "~/.steam/steam/SteamApps/common/starbound";
-	private static final String DEFAULT_OSX_STARBOUND_PATH		= "~/Library/Application Support/Steam/SteamApps/";
+	private static final String DEFAULT_OSX_STARBOUND_PATH		= "~/Library/Application Support/Steam/SteamApps/common/Starbound";
 	
 	/**
 	 * Try to find the starbound directory.
+	 * The directory found is cached, see {@link StarboundDiscovery}.
 	 * 
 	 * @return The starbound directory if found, null if not
 	 */
 	public static String getStarboundDirectory(){
-		OperatingSystem os = OSUtil.getOS();
-		
-		String path = getAutomaticStarboundDirectory(os);
-		
-		if(path == null)
-			path = getDefaultStarboundDirectory(os);
-
-		return null;
+		return StarboundDiscovery.getStarboundDirectory();
 	}
 	/**
 	 * Gets the directory containing the starbound mods.
@@ -268,4 +270,27 @@ public class PathUtil {
 		
 		return backDirs + targetDirections;
 	}
+	/**
+	 * List every regular file inside a folder and its subfolders.
+	 * 
+	 * @param folder The folder to list
+	 * @return The files in the folder, empty if the folder does not exist
+	 * @throws IOException If the folder could not be read
+	 */
+	public static List<File> listFiles(File folder) throws IOException{
+		final List<File> result = new ArrayList<>();
+		if(folder == null || !folder.isDirectory())
+			return result;
+		
+		Files.walkFileTree(folder.toPath(), new SimpleFileVisitor<Path>(){
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+				if(attributes.isRegularFile())
+					result.add(file.toFile());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		
+		return result;
+	}
 }
@@ -0,0 +1,593 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import silver.starbound.data.Mod;
+import silver.starbound.data.TypedFile;
+import silver.starbound.data.TypedFile.FileType;
+import silver.starbound.util.PngUtil.PngHeader;
+
+/**
+ * Losslessly shrinks the png files of a mod.
+ * Ancillary chunks are stripped, scanline filters are chosen again
+ * and the image data is recompressed at the best deflate level.
+ * The pixels of the image are never changed.
+ *
+ * <p>Results are cached by content hash, so an image that was already
+ * optimized, or whose optimized form is known, is not processed again.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class PngOptimizer {
+	private static final String IDAT_CHUNK = "IDAT";
+	private static final String IEND_CHUNK = "IEND";
+	private static final String PLTE_CHUNK = "PLTE";
+	// Transparency is ancillary, but changes how the image looks
+	private static final String TRNS_CHUNK = "tRNS";
+	private static final String OPTIMIZED_CACHE_SUFFIX = ".png";
+	private static final String OPTIMAL_CACHE_SUFFIX = ".optimal";
+	private static final int FILTER_NONE = 0;
+	private static final int FILTER_SUB = 1;
+	private static final int FILTER_UP = 2;
+	private static final int FILTER_AVERAGE = 3;
+	private static final int FILTER_PAETH = 4;
+	private static final int FILTER_COUNT = 5;
+
+	/**
+	 * The outcome of optimizing a single png.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class OptimizationResult{
+		private final File _file;
+		private final long _originalSize;
+		private final long _optimizedSize;
+		private final boolean _cached;
+
+		private OptimizationResult(File file, long originalSize, long optimizedSize, boolean cached){
+			_file = file;
+			_originalSize = originalSize;
+			_optimizedSize = optimizedSize;
+			_cached = cached;
+		}
+
+		/**
+		 * Get the png file.
+		 *
+		 * @return The png file
+		 */
+		public File getFile(){
+			return _file;
+		}
+		/**
+		 * Get the size of the png before optimizing.
+		 *
+		 * @return The original size in bytes
+		 */
+		public long getOriginalSize(){
+			return _originalSize;
+		}
+		/**
+		 * Get the size of the png after optimizing.
+		 *
+		 * @return The optimized size in bytes
+		 */
+		public long getOptimizedSize(){
+			return _optimizedSize;
+		}
+		/**
+		 * Check if the result came from the cache.
+		 *
+		 * @return True if the png was not processed again
+		 */
+		public boolean isCached(){
+			return _cached;
+		}
+		/**
+		 * Check if the png was rewritten.
+		 *
+		 * @return True if the optimized png is smaller
+		 */
+		public boolean isShrunk(){
+			return _optimizedSize < _originalSize;
+		}
+	}
+
+	private final File _cacheFolder;
+
+	/**
+	 * Create a png optimizer without a cache.
+	 */
+	public PngOptimizer(){
+		this(null);
+	}
+	/**
+	 * Create a png optimizer.
+	 *
+	 * @param cacheFolder The folder to cache results in, null for no cache
+	 */
+	public PngOptimizer(File cacheFolder){
+		_cacheFolder = cacheFolder;
+		if(_cacheFolder != null)
+			_cacheFolder.mkdirs();
+	}
+
+	/**
+	 * Optimize every png image in the folder of a mod, in parallel.
+	 * All rewritten images are replaced together when done.
+	 *
+	 * @param mod The mod whose images are optimized
+	 * @return The results of the images
+	 * @throws IOException If an image could not be optimized
+	 */
+	public List<OptimizationResult> optimizeMod(Mod mod) throws IOException{
+		if(!mod.isFolderValid())
+			throw new IllegalArgumentException("Mod folder is not valid");
+
+		return optimizeFiles(PathUtil.listFiles(mod.getFolder()));
+	}
+	/**
+	 * Optimize every png image among the given files, in parallel.
+	 * All rewritten images are replaced together when done.
+	 *
+	 * @param files The files to optimize, files that are not images are skipped
+	 * @return The results of the images
+	 * @throws IOException If an image could not be optimized
+	 */
+	public List<OptimizationResult> optimizeFiles(Collection<File> files) throws IOException{
+		final FileTransaction transaction = new FileTransaction();
+		try{
+			List<Callable<OptimizationResult>> tasks = new ArrayList<>(files.size());
+			for (final File file : files) {
+				tasks.add(new Callable<OptimizationResult>() {
+					@Override
+					public OptimizationResult call() throws IOException {
+						if(TypedFile.getFileType(file) != FileType.IMAGE)
+							return null;
+						return optimize(file, transaction);
+					}
+				});
+			}
+
+			List<OptimizationResult> result = new ArrayList<>();
+			for (OptimizationResult optimized : ExecutorUtil.invokeAll(ExecutorUtil.Strategy.cpu(), tasks)) {
+				if(optimized != null)
+					result.add(optimized);
+			}
+
+			transaction.commit();
+			return result;
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Optimize a single png, staging the rewritten file in a transaction.
+	 *
+	 * @param file The png file
+	 * @param transaction The transaction to stage the rewrite in
+	 * @return The result of optimizing the png
+	 * @throws IOException If the png could not be read or is malformed
+	 */
+	public OptimizationResult optimize(File file, FileTransaction transaction) throws IOException{
+		byte[] original = Files.readAllBytes(file.toPath());
+		String hash = HashUtil.hashBytes(original);
+
+		if(_cacheFolder != null){
+			if(getOptimalMarker(hash).isFile())
+				return new OptimizationResult(file, original.length, original.length, true);
+
+			File cached = getCachedResult(hash);
+			if(cached.isFile()){
+				byte[] optimized = Files.readAllBytes(cached.toPath());
+				transaction.write(file, optimized);
+				return new OptimizationResult(file, original.length, optimized.length, true);
+			}
+		}
+
+		byte[] optimized = optimize(original);
+		boolean shrunk = optimized.length < original.length;
+		if(shrunk)
+			transaction.write(file, optimized);
+
+		if(_cacheFolder != null){
+			if(shrunk){
+				FileTransaction.writeAtomically(getCachedResult(hash), optimized);
+				getOptimalMarker(HashUtil.hashBytes(optimized)).createNewFile();
+			}
+			else{
+				getOptimalMarker(hash).createNewFile();
+			}
+		}
+
+		return new OptimizationResult(file, original.length, shrunk ? optimized.length : original.length, false);
+	}
+	/**
+	 * Losslessly optimize the bytes of a png.
+	 *
+	 * @param png The png file content
+	 * @return The optimized png, or the original if it could not be made smaller
+	 * @throws IOException If the png is malformed
+	 */
+	public static byte[] optimize(byte[] png) throws IOException{
+		PngHeader header = PngUtil.readHeader(png);
+
+		List<Chunk> kept = new ArrayList<>();
+		ByteArrayOutputStream imageData = new ByteArrayOutputStream(png.length);
+		int imageDataIndex = -1;
+
+		ByteBuffer buffer = ByteBuffer.wrap(png);
+		buffer.position(PngUtil.SIGNATURE.length);
+		boolean ended = false;
+		while(!ended){
+			if(buffer.remaining() < 12)
+				throw new IOException("Truncated png chunk");
+
+			int length = buffer.getInt();
+			byte[] typeBytes = new byte[4];
+			buffer.get(typeBytes);
+			String type = new String(typeBytes, StandardCharsets.US_ASCII);
+			if(length < 0 || buffer.remaining() < length + 4)
+				throw new IOException("Truncated png chunk " + type);
+			byte[] data = new byte[length];
+			buffer.get(data);
+			buffer.getInt(); // crc, recomputed on write
+
+			if(type.equals(IDAT_CHUNK)){
+				if(imageDataIndex < 0)
+					imageDataIndex = kept.size();
+				imageData.write(data);
+			}
+			else if(isCritical(type) || type.equals(TRNS_CHUNK)){
+				kept.add(new Chunk(type, data));
+				ended = type.equals(IEND_CHUNK);
+			}
+		}
+		if(imageDataIndex < 0)
+			throw new IOException("Png has no image data");
+
+		byte[] compressed = compress(imageData.toByteArray());
+		if(header.getInterlaceMethod() == 0){
+			byte[] refiltered = refilter(header, inflate(imageData.toByteArray(), getFilteredSize(header)));
+			byte[] recompressed = compress(refiltered);
+			if(recompressed.length < compressed.length)
+				compressed = recompressed;
+		}
+		kept.add(imageDataIndex, new Chunk(IDAT_CHUNK, compressed));
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream(png.length);
+		result.write(PngUtil.SIGNATURE);
+		for (Chunk chunk : kept) {
+			chunk.writeTo(result);
+		}
+
+		if(result.size() < png.length)
+			return result.toByteArray();
+		else
+			return png;
+	}
+
+	/**
+	 * Get the cache file holding the optimized form of a png.
+	 *
+	 * @param hash The hash of the original png
+	 * @return The cache file
+	 */
+	private File getCachedResult(String hash){
+		return new File(_cacheFolder, hash + OPTIMIZED_CACHE_SUFFIX);
+	}
+	/**
+	 * Get the cache marker of a png that can not be optimized further.
+	 *
+	 * @param hash The hash of the png
+	 * @return The marker file
+	 */
+	private File getOptimalMarker(String hash){
+		return new File(_cacheFolder, hash + OPTIMAL_CACHE_SUFFIX);
+	}
+	/**
+	 * Check if a chunk is critical, by the case of its first letter.
+	 *
+	 * @param type The chunk type
+	 * @return True if the chunk is critical
+	 */
+	private static boolean isCritical(String type){
+		return Character.isUpperCase(type.charAt(0));
+	}
+	/**
+	 * Get the number of bytes in a filtered scanline, excluding the filter byte.
+	 *
+	 * @param header The png header
+	 * @return The bytes per scanline
+	 */
+	private static int getRowSize(PngHeader header){
+		long bits = (long)header.getWidth() * header.getChannels() * header.getBitDepth();
+		return (int)((bits + 7) / 8);
+	}
+	/**
+	 * Get the size of the inflated image data of a non interlaced png.
+	 *
+	 * @param header The png header
+	 * @return The inflated size
+	 * @throws IOException If the image is too large to process
+	 */
+	private static int getFilteredSize(PngHeader header) throws IOException{
+		long size = (getRowSize(header) + 1L) * header.getHeight();
+		if(size > Integer.MAX_VALUE - 8)
+			throw new IOException("Png is too large to optimize");
+		return (int)size;
+	}
+	/**
+	 * Inflate the image data of a png.
+	 *
+	 * @param compressed The zlib image data
+	 * @param size The expected inflated size
+	 * @return The inflated image data
+	 * @throws IOException If the data is malformed
+	 */
+	private static byte[] inflate(byte[] compressed, int size) throws IOException{
+		Inflater inflater = new Inflater();
+		try{
+			inflater.setInput(compressed);
+			byte[] result = new byte[size];
+			int read = 0;
+			while(read < size && !inflater.finished()){
+				int inflated = inflater.inflate(result, read, size - read);
+				if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				read += inflated;
+			}
+			if(read != size)
+				throw new IOException("Png image data has the wrong size");
+			return result;
+		}
+		catch(DataFormatException e){
+			throw new IOException("Malformed png image data", e);
+		}
+		finally{
+			inflater.end();
+		}
+	}
+	/**
+	 * Compress data with the best deflate level.
+	 *
+	 * @param data The data to compress
+	 * @return The zlib compressed data
+	 */
+	private static byte[] compress(byte[] data){
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try{
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 2 + 64);
+			byte[] buffer = new byte[64 * 1024];
+			while(!deflater.finished()){
+				int written = deflater.deflate(buffer);
+				result.write(buffer, 0, written);
+			}
+			return result.toByteArray();
+		}
+		finally{
+			deflater.end();
+		}
+	}
+	/**
+	 * Undo the filters of every scanline and filter them again,
+	 * picking the filter with the smallest sum of absolute differences per row.
+	 * Palette and low bit depth images compress best unfiltered.
+	 *
+	 * @param header The png header
+	 * @param filtered The inflated image data
+	 * @return The refiltered image data
+	 * @throws IOException If a scanline uses an unknown filter
+	 */
+	private static byte[] refilter(PngHeader header, byte[] filtered) throws IOException{
+		int rowSize = getRowSize(header);
+		int pixelSize = Math.max(1, header.getChannels() * header.getBitDepth() / 8);
+		boolean adaptive = header.getColorType() != PngHeader.COLOR_PALETTE && header.getBitDepth() >= 8;
+
+		byte[] result = new byte[filtered.length];
+		byte[] previous = new byte[rowSize];
+		byte[] current = new byte[rowSize];
+		byte[][] candidates = new byte[FILTER_COUNT][rowSize];
+
+		for (int row = 0; row < header.getHeight(); row++) {
+			int offset = row * (rowSize + 1);
+			System.arraycopy(filtered, offset + 1, current, 0, rowSize);
+			unfilter(filtered[offset] & 0xff, current, previous, pixelSize);
+
+			int bestFilter = FILTER_NONE;
+			if(adaptive){
+				long bestScore = Long.MAX_VALUE;
+				for (int filter = 0; filter < FILTER_COUNT; filter++) {
+					long score = filter(filter, current, previous, pixelSize, candidates[filter]);
+					if(score < bestScore){
+						bestScore = score;
+						bestFilter = filter;
+					}
+				}
+			}
+			else{
+				filter(FILTER_NONE, current, previous, pixelSize, candidates[FILTER_NONE]);
+			}
+
+			result[offset] = (byte)bestFilter;
+			System.arraycopy(candidates[bestFilter], 0, result, offset + 1, rowSize);
+
+			byte[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return result;
+	}
+	/**
+	 * Undo the filter of a scanline in place.
+	 *
+	 * @param filter The filter type of the scanline
+	 * @param row The filtered scanline, unfiltered on return
+	 * @param previous The unfiltered previous scanline
+	 * @param pixelSize The bytes per pixel
+	 * @throws IOException If the filter type is unknown
+	 */
+	private static void unfilter(int filter, byte[] row, byte[] previous, int pixelSize) throws IOException{
+		for (int i = 0; i < row.length; i++) {
+			int left = i >= pixelSize ? row[i - pixelSize] & 0xff : 0;
+			int up = previous[i] & 0xff;
+			int upLeft = i >= pixelSize ? previous[i - pixelSize] & 0xff : 0;
+
+			switch (filter) {
+				case FILTER_NONE:
+					break;
+				case FILTER_SUB:
+					row[i] += left;
+					break;
+				case FILTER_UP:
+					row[i] += up;
+					break;
+				case FILTER_AVERAGE:
+					row[i] += (left + up) >>> 1;
+					break;
+				case FILTER_PAETH:
+					row[i] += paeth(left, up, upLeft);
+					break;
+
+				default:
+					throw new IOException("Unknown png filter " + filter);
+			}
+		}
+	}
+	/**
+	 * Filter a scanline.
+	 *
+	 * @param filter The filter type to use
+	 * @param row The unfiltered scanline
+	 * @param previous The unfiltered previous scanline
+	 * @param pixelSize The bytes per pixel
+	 * @param target The array to write the filtered scanline into
+	 * @return The sum of the absolute filtered values, lower compresses better
+	 */
+	private static long filter(int filter, byte[] row, byte[] previous, int pixelSize, byte[] target){
+		long score = 0;
+		for (int i = 0; i < row.length; i++) {
+			int value = row[i] & 0xff;
+			int left = i >= pixelSize ? row[i - pixelSize] & 0xff : 0;
+			int up = previous[i] & 0xff;
+			int upLeft = i >= pixelSize ? previous[i - pixelSize] & 0xff : 0;
+
+			int predicted;
+			switch (filter) {
+				case FILTER_SUB:
+					predicted = left;
+					break;
+				case FILTER_UP:
+					predicted = up;
+					break;
+				case FILTER_AVERAGE:
+					predicted = (left + up) >>> 1;
+					break;
+				case FILTER_PAETH:
+					predicted = paeth(left, up, upLeft);
+					break;
+				case FILTER_NONE:
+				default:
+					predicted = 0;
+					break;
+			}
+
+			byte filtered = (byte)(value - predicted);
+			target[i] = filtered;
+			score += Math.abs(filtered);
+		}
+		return score;
+	}
+	/**
+	 * The paeth predictor of the png specification.
+	 *
+	 * @param left The byte to the left
+	 * @param up The byte above
+	 * @param upLeft The byte above and to the left
+	 * @return The predicted byte
+	 */
+	private static int paeth(int left, int up, int upLeft){
+		int estimate = left + up - upLeft;
+		int distanceLeft = Math.abs(estimate - left);
+		int distanceUp = Math.abs(estimate - up);
+		int distanceUpLeft = Math.abs(estimate - upLeft);
+
+		if(distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft)
+			return left;
+		else if(distanceUp <= distanceUpLeft)
+			return up;
+		else
+			return upLeft;
+	}
+
+	/**
+	 * A png chunk kept in the optimized file.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Chunk{
+		private final String _type;
+		private final byte[] _data;
+
+		public Chunk(String type, byte[] data){
+			_type = type;
+			_data = data;
+		}
+
+		public void writeTo(ByteArrayOutputStream stream){
+			byte[] type = _type.getBytes(StandardCharsets.US_ASCII);
+			CRC32 crc = new CRC32();
+			crc.update(type);
+			crc.update(_data);
+
+			ByteBuffer buffer = ByteBuffer.allocate(12 + _data.length);
+			buffer.putInt(_data.length);
+			buffer.put(type);
+			buffer.put(_data);
+			buffer.putInt((int)crc.getValue());
+			stream.write(buffer.array(), 0, buffer.capacity());
+		}
+	}
+}
@@ -0,0 +1,228 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Utilities for reading png files without decoding them.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class PngUtil {
+	/**
+	 * The eight bytes every png file starts with.
+	 */
+	public static final byte[] SIGNATURE = { (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+	/**
+	 * The type of the header chunk.
+	 */
+	public static final String IHDR_CHUNK = "IHDR";
+
+	private static final int IHDR_DATA_LENGTH = 13;
+	// Signature, chunk length, chunk type and the header data
+	private static final int HEADER_SIZE = SIGNATURE.length + 4 + 4 + IHDR_DATA_LENGTH;
+
+	/**
+	 * The image details stored in the header chunk of a png.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class PngHeader{
+		/**
+		 * Grayscale color type.
+		 */
+		public static final int COLOR_GRAYSCALE = 0;
+		/**
+		 * Rgb color type.
+		 */
+		public static final int COLOR_RGB = 2;
+		/**
+		 * Palette color type.
+		 */
+		public static final int COLOR_PALETTE = 3;
+		/**
+		 * Grayscale with alpha color type.
+		 */
+		public static final int COLOR_GRAYSCALE_ALPHA = 4;
+		/**
+		 * Rgb with alpha color type.
+		 */
+		public static final int COLOR_RGBA = 6;
+
+		private final int _width;
+		private final int _height;
+		private final int _bitDepth;
+		private final int _colorType;
+		private final int _interlaceMethod;
+
+		/**
+		 * Create a png header.
+		 *
+		 * @param width The width of the image
+		 * @param height The height of the image
+		 * @param bitDepth The bits per sample
+		 * @param colorType The png color type
+		 * @param interlaceMethod The png interlace method
+		 */
+		public PngHeader(int width, int height, int bitDepth, int colorType, int interlaceMethod){
+			_width = width;
+			_height = height;
+			_bitDepth = bitDepth;
+			_colorType = colorType;
+			_interlaceMethod = interlaceMethod;
+		}
+
+		/**
+		 * Get the width of the image.
+		 *
+		 * @return The width in pixels
+		 */
+		public int getWidth(){
+			return _width;
+		}
+		/**
+		 * Get the height of the image.
+		 *
+		 * @return The height in pixels
+		 */
+		public int getHeight(){
+			return _height;
+		}
+		/**
+		 * Get the number of bits per sample.
+		 *
+		 * @return The bit depth
+		 */
+		public int getBitDepth(){
+			return _bitDepth;
+		}
+		/**
+		 * Get the png color type.
+		 *
+		 * @return The color type
+		 */
+		public int getColorType(){
+			return _colorType;
+		}
+		/**
+		 * Get the png interlace method.
+		 *
+		 * @return 0 for no interlacing, 1 for adam7
+		 */
+		public int getInterlaceMethod(){
+			return _interlaceMethod;
+		}
+		/**
+		 * Get the number of samples per pixel.
+		 *
+		 * @return The samples per pixel
+		 */
+		public int getChannels(){
+			switch (_colorType) {
+				case COLOR_RGB:
+					return 3;
+				case COLOR_GRAYSCALE_ALPHA:
+					return 2;
+				case COLOR_RGBA:
+					return 4;
+				case COLOR_GRAYSCALE:
+				case COLOR_PALETTE:
+				default:
+					return 1;
+			}
+		}
+		/**
+		 * Check if the image has an alpha channel.
+		 *
+		 * @return True if the color type has alpha
+		 */
+		public boolean hasAlpha(){
+			return _colorType == COLOR_GRAYSCALE_ALPHA || _colorType == COLOR_RGBA;
+		}
+	}
+
+	/**
+	 * Check if bytes start with the png signature.
+	 *
+	 * @param bytes The bytes to check
+	 * @return True if the bytes start a png file
+	 */
+	public static boolean hasSignature(byte[] bytes){
+		return bytes.length >= SIGNATURE.length &&
+				Arrays.equals(Arrays.copyOf(bytes, SIGNATURE.length), SIGNATURE);
+	}
+	/**
+	 * Read the header of a png file, reading only its first bytes.
+	 *
+	 * @param file The png file
+	 * @return The header of the png
+	 * @throws IOException If the file could not be read or is not a png
+	 */
+	public static PngHeader readHeader(File file) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			while(buffer.hasRemaining() && channel.read(buffer) != -1);
+		}
+		if(buffer.hasRemaining())
+			throw new IOException("File too short to be a png: " + file);
+
+		return readHeader(buffer.array());
+	}
+	/**
+	 * Read the header of a png from its first bytes.
+	 *
+	 * @param bytes The start of the png file
+	 * @return The header of the png
+	 * @throws IOException If the bytes are not the start of a png
+	 */
+	public static PngHeader readHeader(byte[] bytes) throws IOException{
+		if(bytes.length < HEADER_SIZE || !hasSignature(bytes))
+			throw new IOException("Not a png file");
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.position(SIGNATURE.length);
+		int length = buffer.getInt();
+		byte[] type = new byte[4];
+		buffer.get(type);
+		if(length != IHDR_DATA_LENGTH || !new String(type, "US-ASCII").equals(IHDR_CHUNK))
+			throw new IOException("Png does not start with a header chunk");
+
+		int width = buffer.getInt();
+		int height = buffer.getInt();
+		int bitDepth = buffer.get() & 0xff;
+		int colorType = buffer.get() & 0xff;
+		buffer.get(); // Compression method, always deflate
+		buffer.get(); // Filter method, always adaptive
+		int interlaceMethod = buffer.get() & 0xff;
+
+		return new PngHeader(width, height, bitDepth, colorType, interlaceMethod);
+	}
+}
@@ -22,7 +22,13 @@
 
 package silver.starbound.util;
 
-import java.io.StringWriter;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * General windows registry utillities.
@@ -35,6 +41,7 @@ public class RegistryUtil {
 	private static final String STARBOUND_FOLDER_REGISTRY_MEMBER = "InstallLocation";
 	private static final String STEAM_REGISTRY_KEY = "HKEY_CURRENT_USER\\Software\\Valve\\Steam"; 
 	private static final String STEAM_FOLDER_REGISTRY_MEMBER = "SteamPath";
+	private static final long QUERY_TIMEOUT_MILLIS = 3000;
 	
 	/**
 	 * Get the starbound directory from the registry.
@@ -60,28 +67,64 @@ public class RegistryUtil {
 	 * @return The value of the parameter in the given key
 	 */
 	public static String getValueFromRegistry(String key, String parameter){
+		return getValueFromRegistry(key, parameter, QUERY_TIMEOUT_MILLIS);
+	}
+	/**
+	 * Get a value from registry, giving up after a timeout.
+	 * 
+	 * @param key The registry key
+	 * @param parameter The paramter to get
+	 * @param timeoutMillis The maximum time to wait for the registry query
+	 * @return The value of the parameter in the given key, null if error or timed out
+	 */
+	public static String getValueFromRegistry(String key, String parameter, long timeoutMillis){
+		Process registryProcess = null;
 		try{
-			Process registryProcess = Runtime.getRuntime().exec("reg query \"" + key + "\" /v " + parameter);
-			registryProcess.waitFor();
-			StringWriter stringWriter = new StringWriter();
+			registryProcess = new ProcessBuilder("reg", "query", key, "/v", parameter)
+									.redirectErrorStream(true)
+									.start();
+			final InputStream output = registryProcess.getInputStream();
 			
-			int read = 0;
-			while((read = registryProcess.getInputStream().read()) != -1){
-				stringWriter.write(read);
+			// Drain the output while the process runs, so it never blocks on a full pipe
+			Future<String> valueLine = ExecutorUtil.getIOExecutor().submit(new Callable<String>() {
+				@Override
+				public String call() throws IOException {
+					String lastLine = null;
+					BufferedReader reader = new BufferedReader(new InputStreamReader(output));
+					String line;
+					while((line = reader.readLine()) != null){
+						if(!line.trim().isEmpty())
+							lastLine = line;
+					}
+					return lastLine;
+				}
+			});
+			
+			if(!registryProcess.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)){
+				valueLine.cancel(true);
+				return null;
 			}
 			
-			String result = stringWriter.toString();
-			result.trim();
-			String[] lines = result.split("\r\n");
-			String valueLine = lines[lines.length - 1];
-			String[] parts = valueLine.trim().split("\\s");
-			if(parts[0].equals("ERROR:"))
+			String result = valueLine.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			if(result == null || registryProcess.exitValue() != 0)
+				return null;
+			
+			// The value line looks like: <parameter> <type> <value>
+			String[] parts = result.trim().split("\\s+", 3);
+			if(parts.length < 3 || parts[0].equals("ERROR:"))
 				return null;
 			else
-				return parts[parts.length - 1];
+				return parts[2];
+		}
+		catch(InterruptedException ex){
+			Thread.currentThread().interrupt();
 		}
 		catch(Exception ex){
-			// TODO handle exception
+			// The registry is unavailable
+		}
+		finally{
+			if(registryProcess != null)
+				registryProcess.destroy();
 		}
 		
 		return null;
@@ -36,7 +36,7 @@ import silver.starbound.util.OSUtil.OperatingSystem;
  *
  */
 public class SettingsUtil {
-	private static final String PREFERENCES_NODE_NAME = "SBModMake";
+	static final String PREFERENCES_NODE_NAME = "SBModMake";
 	private static final String PREFERENCES_STARBOUND_FOLDER_KEY = "starbound_folder";
 	private static final String PREFERENCES_TEXT_EDIOR_KEY = "text_editor";
 	private static final String PREFERENCES_IMAGE_EDIOR_KEY = "image_editor";
@@ -0,0 +1,342 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.prefs.Preferences;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import silver.starbound.util.OSUtil.OperatingSystem;
+
+/**
+ * Finds the starbound installation directory.
+ * Every candidate location is probed concurrently, and the
+ * directory found is remembered in the preferences so later
+ * starts only need to check it still exists.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class StarboundDiscovery {
+	private static final String PREFERENCES_DISCOVERED_FOLDER_KEY = "discovered_starbound_folder";
+	private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+	private static final String STARBOUND_ASSETS_FOLDER = "assets";
+	private static final String[] STEAM_APPS_FOLDERS = { "steamapps", "SteamApps" };
+	private static final String STEAM_COMMON_FOLDER = "common";
+	private static final String[] STARBOUND_FOLDERS = { "Starbound", "starbound" };
+	private static final String LIBRARY_FOLDERS_FILE = "libraryfolders.vdf";
+	private static final Pattern VDF_KEY_VALUE = Pattern.compile("^\\s*\"([^\"]+)\"\\s+\"(.*)\"\\s*$");
+
+	private static final String[] LINUX_STEAM_FOLDERS = {
+		"~/.steam/steam",
+		"~/.steam/root",
+		"~/.local/share/Steam",
+		"~/.var/app/com.valvesoftware.Steam/.local/share/Steam"
+	};
+	private static final String[] OSX_STEAM_FOLDERS = {
+		"~/Library/Application Support/Steam"
+	};
+	private static final String[] WINDOWS_STEAM_FOLDERS = {
+		"C:\\Program Files (x86)\\Steam",
+		"C:\\Program Files\\Steam"
+	};
+
+	private static String _cachedDirectory;
+
+	/**
+	 * Get the starbound directory, discovering it if it was not found before.
+	 *
+	 * @return The starbound directory, null if none could be found
+	 */
+	public static synchronized String getStarboundDirectory(){
+		if(_cachedDirectory != null && isStarboundDirectory(new File(_cachedDirectory)))
+			return _cachedDirectory;
+
+		Preferences node = getPreferences();
+		String saved = node.get(PREFERENCES_DISCOVERED_FOLDER_KEY, null);
+		if(saved != null && isStarboundDirectory(new File(saved))){
+			_cachedDirectory = saved;
+			return saved;
+		}
+
+		String discovered = discover(OSUtil.getOS(), DEFAULT_TIMEOUT_MILLIS);
+		_cachedDirectory = discovered;
+		if(discovered != null)
+			node.put(PREFERENCES_DISCOVERED_FOLDER_KEY, discovered);
+		else if(saved != null)
+			node.remove(PREFERENCES_DISCOVERED_FOLDER_KEY);
+
+		return discovered;
+	}
+	/**
+	 * Forget the cached starbound directory, so the next request discovers it again.
+	 */
+	public static synchronized void clearCache(){
+		_cachedDirectory = null;
+		getPreferences().remove(PREFERENCES_DISCOVERED_FOLDER_KEY);
+	}
+	/**
+	 * Probe every candidate location of the given os concurrently.
+	 * Candidates are preferred in order, so the result does not depend
+	 * on which probe happened to finish first. Once the time is up, the
+	 * most preferred candidate that was already found is used.
+	 *
+	 * @param os The operating system to find starbound on
+	 * @param timeoutMillis The maximum time to wait for the probes
+	 * @return The starbound directory, null if none was found in time
+	 */
+	public static String discover(OperatingSystem os, long timeoutMillis){
+		List<Callable<String>> probes = getProbes(os);
+		List<Future<String>> futures = new ArrayList<>(probes.size());
+		for (Callable<String> probe : probes) {
+			futures.add(ExecutorUtil.getIOExecutor().submit(probe));
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		try{
+			for (Future<String> future : futures) {
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0)
+					break;
+
+				try{
+					String result = future.get(remaining, TimeUnit.NANOSECONDS);
+					if(result != null)
+						return result;
+				}
+				catch(ExecutionException ex){
+					// This candidate could not be probed
+				}
+				catch(TimeoutException ex){
+					// Slow candidates are given up on
+					break;
+				}
+			}
+			return getFinishedResult(futures);
+		}
+		catch(InterruptedException ex){
+			Thread.currentThread().interrupt();
+			return getFinishedResult(futures);
+		}
+		finally{
+			for (Future<String> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+	/**
+	 * Check if a directory looks like a starbound installation.
+	 *
+	 * @param directory The directory to check
+	 * @return True if the directory is a starbound installation
+	 */
+	public static boolean isStarboundDirectory(File directory){
+		return directory != null && new File(directory, STARBOUND_ASSETS_FOLDER).isDirectory();
+	}
+	/**
+	 * Get the steam library folders listed in a steam installation.
+	 *
+	 * @param steamFolder The steam installation folder
+	 * @return The library folders, empty if there are none
+	 */
+	public static List<File> getSteamLibraryFolders(File steamFolder){
+		List<File> result = new ArrayList<>();
+		for (String steamApps : STEAM_APPS_FOLDERS) {
+			File libraryFile = new File(new File(steamFolder, steamApps), LIBRARY_FOLDERS_FILE);
+			if(!libraryFile.isFile())
+				continue;
+
+			try{
+				for (String line : Files.readAllLines(libraryFile.toPath(), StandardCharsets.UTF_8)) {
+					Matcher matcher = VDF_KEY_VALUE.matcher(line);
+					if(!matcher.matches())
+						continue;
+
+					// Newer files use "path" keys, older ones number the libraries
+					String key = matcher.group(1);
+					if(key.equals("path") || key.matches("\\d+")){
+						String path = matcher.group(2).replace("\\\\", "\\");
+						File folder = new File(path);
+						if(folder.isAbsolute())
+							result.add(folder);
+					}
+				}
+			}
+			catch(IOException ex){
+				// Unreadable library list
+			}
+			break;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the result of the most preferred probe that already found starbound.
+	 *
+	 * @param futures The probes, in order of preference
+	 * @return The starbound directory, null if no finished probe found it
+	 */
+	private static String getFinishedResult(List<Future<String>> futures){
+		for (Future<String> future : futures) {
+			if(!future.isDone() || future.isCancelled())
+				continue;
+
+			try{
+				String result = future.get();
+				if(result != null)
+					return result;
+			}
+			catch(ExecutionException | InterruptedException ex){
+				// This candidate could not be probed
+			}
+		}
+		return null;
+	}
+	/**
+	 * Get the probes for every candidate location, most likely first.
+	 *
+	 * @param os The operating system to find starbound on
+	 * @return The probes of the candidate locations
+	 */
+	private static List<Callable<String>> getProbes(OperatingSystem os){
+		List<Callable<String>> result = new ArrayList<>();
+		switch (os) {
+			case WINDOWS:
+				result.add(new Callable<String>() {
+					@Override
+					public String call() {
+						String path = RegistryUtil.getRegistryStarboundDirectoryEntry();
+						return path != null && isStarboundDirectory(new File(path)) ? path : null;
+					}
+				});
+				result.add(new Callable<String>() {
+					@Override
+					public String call() {
+						String steamPath = RegistryUtil.getRegistrySteamDirectoryEntry();
+						return steamPath != null ? probeSteamFolder(new File(steamPath)) : null;
+					}
+				});
+				addSteamFolderProbes(result, WINDOWS_STEAM_FOLDERS);
+				break;
+			case LINUX:
+				addSteamFolderProbes(result, LINUX_STEAM_FOLDERS);
+				break;
+			case OSX:
+				addSteamFolderProbes(result, OSX_STEAM_FOLDERS);
+				break;
+
+			default:
+				break;
+		}
+
+		final String defaultPath = PathUtil.getDefaultStarboundDirectory(os);
+		if(defaultPath != null){
+			result.add(new Callable<String>() {
+				@Override
+				public String call() {
+					File folder = expandHome(defaultPath);
+					return isStarboundDirectory(folder) ? folder.getAbsolutePath() : null;
+				}
+			});
+		}
+
+		return result;
+	}
+	/**
+	 * Add a probe for each of the given steam folders.
+	 *
+	 * @param probes The probes to add to
+	 * @param steamFolders The steam folder paths
+	 */
+	private static void addSteamFolderProbes(List<Callable<String>> probes, String[] steamFolders){
+		for (final String steamFolder : steamFolders) {
+			probes.add(new Callable<String>() {
+				@Override
+				public String call() {
+					return probeSteamFolder(expandHome(steamFolder));
+				}
+			});
+		}
+	}
+	/**
+	 * Look for starbound in a steam installation and all of its libraries.
+	 *
+	 * @param steamFolder The steam installation folder
+	 * @return The starbound directory, null if not in this steam installation
+	 */
+	private static String probeSteamFolder(File steamFolder){
+		if(!steamFolder.isDirectory())
+			return null;
+
+		Set<File> libraries = new LinkedHashSet<>();
+		libraries.add(steamFolder);
+		libraries.addAll(getSteamLibraryFolders(steamFolder));
+
+		for (File library : libraries) {
+			for (String steamApps : STEAM_APPS_FOLDERS) {
+				for (String starbound : STARBOUND_FOLDERS) {
+					File candidate = new File(new File(new File(library, steamApps), STEAM_COMMON_FOLDER), starbound);
+					if(isStarboundDirectory(candidate))
+						return candidate.getAbsolutePath();
+				}
+			}
+		}
+
+		return null;
+	}
+	/**
+	 * Replace a leading ~ with the user's home directory.
+	 *
+	 * @param path The path to expand
+	 * @return The expanded file
+	 */
+	private static File expandHome(String path){
+		if(path.equals("~") || path.startsWith("~/"))
+			return new File(System.getProperty("user.home") + path.substring(1));
+		else
+			return new File(path);
+	}
+	/**
+	 * Get the preferences node the discovered directory is kept in.
+	 *
+	 * @return The preferences node
+	 */
+	private static Preferences getPreferences(){
+		return Preferences.userRoot().node(SettingsUtil.PREFERENCES_NODE_NAME);
+	}
+}
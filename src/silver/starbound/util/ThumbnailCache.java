@@ -0,0 +1,319 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import javax.imageio.ImageIO;
+
+import silver.starbound.data.Item;
+
+/**
+ * A cache of downscaled inventory icons.
+ * Thumbnails are kept in memory, bounded by their size in bytes,
+ * and on disk keyed by the content hash of the icon. The hash of each
+ * icon is remembered by path, size and modification time, so a known
+ * icon is never read again while it is unchanged.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ThumbnailCache {
+	/**
+	 * The default memory budget of the cache.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 32L * 1024 * 1024;
+
+	private static final String INDEX_FILE_NAME = "index.properties";
+	private static final String THUMBNAIL_FORMAT = "png";
+	private static final String INDEX_SEPARATOR = ":";
+	private static final int BYTES_PER_PIXEL = 4;
+
+	private final File _cacheFolder;
+	private final int _size;
+	private final WeightedLruCache<String, BufferedImage> _memory;
+	private final Properties _index;
+	private boolean _indexChanged;
+
+	/**
+	 * Create a thumbnail cache.
+	 *
+	 * @param cacheFolder The folder of the disk cache, null to only cache in memory
+	 * @param size The largest width and height of a thumbnail
+	 * @param memoryBudget The most bytes of thumbnails kept in memory
+	 */
+	public ThumbnailCache(File cacheFolder, int size, long memoryBudget){
+		if(size < 1)
+			throw new IllegalArgumentException("Thumbnail size must be positive");
+
+		_cacheFolder = cacheFolder;
+		_size = size;
+		_memory = new WeightedLruCache<>(memoryBudget, new WeightedLruCache.Weigher<BufferedImage>() {
+			@Override
+			public long weigh(BufferedImage value) {
+				return (long)value.getWidth() * value.getHeight() * BYTES_PER_PIXEL;
+			}
+		});
+		_index = new Properties();
+		_indexChanged = false;
+
+		if(_cacheFolder != null){
+			_cacheFolder.mkdirs();
+			loadIndex();
+		}
+	}
+
+	/**
+	 * Get the thumbnail of an item's inventory icon.
+	 *
+	 * @param item The item
+	 * @return The thumbnail, null if the item has no readable icon
+	 * @throws IOException If the icon could not be decoded
+	 */
+	public BufferedImage getThumbnail(Item item) throws IOException{
+		File icon = IconValidator.getIconImageFile(item);
+		if(icon == null || !icon.isFile())
+			return null;
+
+		return getThumbnail(icon);
+	}
+	/**
+	 * Get the thumbnail of an image file.
+	 *
+	 * @param image The image file
+	 * @return The thumbnail, null if the image could not be decoded
+	 * @throws IOException If the image could not be read
+	 */
+	public BufferedImage getThumbnail(File image) throws IOException{
+		String key = getThumbnailKey(getContentHash(image));
+		BufferedImage result = _memory.get(key);
+		if(result != null)
+			return result;
+
+		File cached = getDiskFile(key);
+		if(cached != null && cached.isFile())
+			result = ImageIO.read(cached);
+
+		if(result == null){
+			BufferedImage original = ImageIO.read(image);
+			if(original == null)
+				return null;
+
+			result = scale(original, _size);
+			if(cached != null)
+				writeThumbnail(result, cached);
+		}
+
+		_memory.put(key, result);
+		return result;
+	}
+	/**
+	 * Load the thumbnails of many items in parallel, and save the hash index.
+	 *
+	 * @param items The items whose thumbnails are loaded
+	 * @return The thumbnails, in the order of the items, null for items without one
+	 * @throws IOException If an icon could not be read
+	 */
+	public List<BufferedImage> getThumbnails(Collection<Item> items) throws IOException{
+		List<Callable<BufferedImage>> tasks = new ArrayList<>(items.size());
+		for (final Item item : items) {
+			tasks.add(new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() throws IOException {
+					return getThumbnail(item);
+				}
+			});
+		}
+
+		List<BufferedImage> result = ExecutorUtil.invokeAll(ExecutorUtil.Strategy.cpu(), tasks);
+		saveIndex();
+		return result;
+	}
+	/**
+	 * Get the in memory tier of the cache, for its metrics.
+	 *
+	 * @return The in memory cache
+	 */
+	public WeightedLruCache<String, BufferedImage> getMemoryCache(){
+		return _memory;
+	}
+	/**
+	 * Save the hash index into the disk cache, if it changed.
+	 *
+	 * @throws IOException If the index could not be written
+	 */
+	public void saveIndex() throws IOException{
+		if(_cacheFolder == null)
+			return;
+
+		Properties snapshot;
+		synchronized (_index) {
+			if(!_indexChanged)
+				return;
+			snapshot = new Properties();
+			snapshot.putAll(_index);
+			_indexChanged = false;
+		}
+
+		FileTransaction transaction = new FileTransaction();
+		try{
+			OutputStream stream = transaction.openOutputStream(new File(_cacheFolder, INDEX_FILE_NAME));
+			try{
+				snapshot.store(stream, null);
+			}
+			finally{
+				stream.close();
+			}
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+	}
+
+	/**
+	 * Downscale an image to fit in a square, keeping its aspect ratio.
+	 * Images that already fit are kept as they are.
+	 *
+	 * @param image The image to scale
+	 * @param size The largest width and height
+	 * @return The scaled image
+	 */
+	public static BufferedImage scale(BufferedImage image, int size){
+		int width = image.getWidth();
+		int height = image.getHeight();
+		if(width <= size && height <= size)
+			return image;
+
+		double ratio = Math.min((double)size / width, (double)size / height);
+		int scaledWidth = Math.max(1, (int)Math.round(width * ratio));
+		int scaledHeight = Math.max(1, (int)Math.round(height * ratio));
+
+		BufferedImage result = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = result.createGraphics();
+		try{
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
+		}
+		finally{
+			graphics.dispose();
+		}
+		return result;
+	}
+
+	/**
+	 * Get the content hash of an image, hashing it only if it changed.
+	 *
+	 * @param image The image file
+	 * @return The content hash
+	 * @throws IOException If the image could not be read
+	 */
+	private String getContentHash(File image) throws IOException{
+		String path = image.getAbsolutePath();
+		String stamp = image.length() + INDEX_SEPARATOR + image.lastModified() + INDEX_SEPARATOR;
+
+		synchronized (_index) {
+			String indexed = _index.getProperty(path);
+			if(indexed != null && indexed.startsWith(stamp))
+				return indexed.substring(stamp.length());
+		}
+
+		String hash = HashUtil.hashFile(image);
+		synchronized (_index) {
+			_index.setProperty(path, stamp + hash);
+			_indexChanged = true;
+		}
+		return hash;
+	}
+	/**
+	 * Get the cache key of a thumbnail.
+	 *
+	 * @param hash The content hash of the image
+	 * @return The cache key
+	 */
+	private String getThumbnailKey(String hash){
+		return hash + "_" + _size;
+	}
+	/**
+	 * Get the disk cache file of a thumbnail.
+	 *
+	 * @param key The cache key
+	 * @return The disk file, null if there is no disk cache
+	 */
+	private File getDiskFile(String key){
+		return _cacheFolder == null ? null : new File(_cacheFolder, key + "." + THUMBNAIL_FORMAT);
+	}
+	/**
+	 * Write a thumbnail into the disk cache.
+	 *
+	 * @param thumbnail The thumbnail
+	 * @param target The disk cache file
+	 * @throws IOException If the thumbnail could not be written
+	 */
+	private static void writeThumbnail(BufferedImage thumbnail, File target) throws IOException{
+		FileTransaction transaction = new FileTransaction();
+		try{
+			OutputStream stream = new BufferedOutputStream(transaction.openOutputStream(target));
+			try{
+				ImageIO.write(thumbnail, THUMBNAIL_FORMAT, stream);
+			}
+			finally{
+				stream.close();
+			}
+			transaction.commit();
+		}
+		finally{
+			transaction.close();
+		}
+	}
+	/**
+	 * Load the hash index from the disk cache.
+	 */
+	private void loadIndex(){
+		File indexFile = new File(_cacheFolder, INDEX_FILE_NAME);
+		if(!indexFile.isFile())
+			return;
+
+		try(InputStream stream = new BufferedInputStream(new FileInputStream(indexFile))){
+			_index.load(stream);
+		}
+		catch(IOException ex){
+			// A broken index only costs rehashing
+			_index.clear();
+		}
+	}
+}
@@ -0,0 +1,245 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread safe cache bounded by the total weight of its values.
+ * When the weight goes over the budget, the least recently used
+ * values are evicted.
+ *
+ * @author SilverFishCat
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+public class WeightedLruCache<K, V> {
+	/**
+	 * Estimates the weight of a cached value.
+	 *
+	 * @author SilverFishCat
+	 *
+	 * @param <V> The type of the values
+	 */
+	public interface Weigher<V>{
+		/**
+		 * Get the weight of a value.
+		 *
+		 * @param value The value to weigh
+		 * @return The weight of the value, usually its size in bytes
+		 */
+		long weigh(V value);
+	}
+
+	private final LinkedHashMap<K, Entry<V>> _entries;
+	private final Weigher<V> _weigher;
+	private long _maxWeight;
+	private long _weight;
+	private long _hits;
+	private long _misses;
+	private long _evictions;
+
+	/**
+	 * Create a new weighted cache.
+	 *
+	 * @param maxWeight The total weight budget of the cache
+	 * @param weigher The weigher of the values
+	 */
+	public WeightedLruCache(long maxWeight, Weigher<V> weigher){
+		if(weigher == null)
+			throw new NullPointerException("Weigher is null");
+
+		// Access order makes iteration start at the least recently used entry
+		_entries = new LinkedHashMap<>(16, 0.75f, true);
+		_weigher = weigher;
+		setMaxWeight(maxWeight);
+	}
+
+	/**
+	 * Get a cached value, marking it as recently used.
+	 *
+	 * @param key The key of the value
+	 * @return The value, null if not cached
+	 */
+	public synchronized V get(K key){
+		Entry<V> entry = _entries.get(key);
+		if(entry == null){
+			_misses++;
+			return null;
+		}
+
+		_hits++;
+		return entry.value;
+	}
+	/**
+	 * Cache a value, evicting older values if over budget.
+	 * A value heavier than the whole budget is not cached.
+	 *
+	 * @param key The key of the value
+	 * @param value The value to cache
+	 */
+	public synchronized void put(K key, V value){
+		if(value == null)
+			throw new NullPointerException("Value is null");
+
+		remove(key);
+
+		long weight = Math.max(0, _weigher.weigh(value));
+		if(weight > _maxWeight)
+			return;
+
+		_entries.put(key, new Entry<>(value, weight));
+		_weight += weight;
+		evict();
+	}
+	/**
+	 * Remove a value from the cache.
+	 *
+	 * @param key The key of the value
+	 * @return The removed value, null if not cached
+	 */
+	public synchronized V remove(K key){
+		Entry<V> entry = _entries.remove(key);
+		if(entry == null)
+			return null;
+
+		_weight -= entry.weight;
+		return entry.value;
+	}
+	/**
+	 * Remove a value from the cache, only if it is still cached under its key.
+	 *
+	 * @param key The key of the value
+	 * @param value The value to remove
+	 * @return True if the value was removed
+	 */
+	public synchronized boolean remove(K key, V value){
+		Entry<V> entry = _entries.get(key);
+		if(entry == null || entry.value != value)
+			return false;
+
+		remove(key);
+		return true;
+	}
+	/**
+	 * Remove every value from the cache.
+	 */
+	public synchronized void clear(){
+		_entries.clear();
+		_weight = 0;
+	}
+
+	/**
+	 * Get the number of cached values.
+	 *
+	 * @return The number of cached values
+	 */
+	public synchronized int size(){
+		return _entries.size();
+	}
+	/**
+	 * Get the total weight of the cached values.
+	 *
+	 * @return The total weight
+	 */
+	public synchronized long getWeight(){
+		return _weight;
+	}
+	/**
+	 * Get the weight budget of the cache.
+	 *
+	 * @return The weight budget
+	 */
+	public synchronized long getMaxWeight(){
+		return _maxWeight;
+	}
+	/**
+	 * Get the number of lookups that found a value.
+	 *
+	 * @return The hit count
+	 */
+	public synchronized long getHits(){
+		return _hits;
+	}
+	/**
+	 * Get the number of lookups that found nothing.
+	 *
+	 * @return The miss count
+	 */
+	public synchronized long getMisses(){
+		return _misses;
+	}
+	/**
+	 * Get the number of values evicted to stay in budget.
+	 *
+	 * @return The eviction count
+	 */
+	public synchronized long getEvictions(){
+		return _evictions;
+	}
+	/**
+	 * Change the weight budget, evicting values if needed.
+	 *
+	 * @param maxWeight The new weight budget
+	 */
+	public synchronized void setMaxWeight(long maxWeight){
+		if(maxWeight < 0)
+			throw new IllegalArgumentException("Max weight is negative");
+
+		_maxWeight = maxWeight;
+		evict();
+	}
+
+	/**
+	 * Evict the least recently used values until in budget.
+	 */
+	private void evict(){
+		Iterator<Map.Entry<K, Entry<V>>> iterator = _entries.entrySet().iterator();
+		while(_weight > _maxWeight && iterator.hasNext()){
+			Entry<V> entry = iterator.next().getValue();
+			iterator.remove();
+			_weight -= entry.weight;
+			_evictions++;
+		}
+	}
+
+	/**
+	 * A cached value and its weight.
+	 *
+	 * @author SilverFishCat
+	 *
+	 * @param <V> The type of the value
+	 */
+	private static class Entry<V>{
+		public final V value;
+		public final long weight;
+
+		public Entry(V value, long weight){
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
@@ -0,0 +1,560 @@
+//The MIT License (MIT)
+//
+//Copyright (c) 2015 , SilverFishCat@GitHub
+//
+//Permission is hereby granted, free of charge, to any person obtaining a copy
+//of this software and associated documentation files (the "Software"), to deal
+//in the Software without restriction, including without limitation the rights
+//to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//copies of the Software, and to permit persons to whom the Software is
+//furnished to do so, subject to the following conditions:
+//
+//The above copyright notice and this permission notice shall be included in all
+//copies or substantial portions of the Software.
+//
+//THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//SOFTWARE.
+
+package silver.starbound.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import silver.starbound.data.Mod;
+
+/**
+ * Exports mod folders as zip archives for distribution.
+ * Every file is compressed into its own deflate stream in parallel, and
+ * the archive is then assembled sequentially in file order as the
+ * compressed entries become ready. Only a few entries are compressed
+ * ahead of the writer; small ones are kept in memory and larger ones
+ * are spilled to temporary files. Files in already compressed formats
+ * are stored without deflating them again. Archives needing zip64
+ * (over 65535 entries or 4 GB) are not supported.
+ *
+ * @author SilverFishCat
+ *
+ */
+public class ZipExporter {
+	private static final Set<String> STORED_EXTENSIONS = new HashSet<>(Arrays.asList(
+			"png", "jpg", "jpeg", "gif", "ogg", "pak", "zip"));
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int VERSION = 20;
+	private static final int UTF8_FLAG = 1 << 11;
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_SIZE = 22;
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+	private static final int MAX_ENTRIES = 0xFFFF;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long MEMORY_ENTRY_SIZE = 1024 * 1024;
+	private static final int ENTRIES_PER_PROCESSOR = 2;
+
+	/**
+	 * The outcome of an export.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	public static class ExportResult{
+		private final File _archive;
+		private final int _entryCount;
+		private final long _uncompressedSize;
+		private final long _archiveSize;
+
+		private ExportResult(File archive, int entryCount, long uncompressedSize, long archiveSize){
+			_archive = archive;
+			_entryCount = entryCount;
+			_uncompressedSize = uncompressedSize;
+			_archiveSize = archiveSize;
+		}
+
+		/**
+		 * Get the written archive.
+		 *
+		 * @return The archive file
+		 */
+		public File getArchive(){
+			return _archive;
+		}
+		/**
+		 * Get the number of files in the archive.
+		 *
+		 * @return The number of entries
+		 */
+		public int getEntryCount(){
+			return _entryCount;
+		}
+		/**
+		 * Get the total size of the archived files.
+		 *
+		 * @return The uncompressed size in bytes
+		 */
+		public long getUncompressedSize(){
+			return _uncompressedSize;
+		}
+		/**
+		 * Get the size of the archive.
+		 *
+		 * @return The archive size in bytes
+		 */
+		public long getArchiveSize(){
+			return _archiveSize;
+		}
+	}
+
+	private final int _level;
+
+	/**
+	 * Create an exporter with the default compression level.
+	 */
+	public ZipExporter(){
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+	/**
+	 * Create an exporter.
+	 *
+	 * @param level The deflate compression level
+	 */
+	public ZipExporter(int level){
+		if((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level " + level);
+		_level = level;
+	}
+
+	/**
+	 * Export the folder of a mod as a zip archive.
+	 *
+	 * @param mod The mod to export
+	 * @param target The archive to write
+	 * @return The outcome of the export
+	 * @throws IOException If a file could not be read or the archive could not be written
+	 */
+	public ExportResult export(Mod mod, File target) throws IOException{
+		if(!mod.isFolderValid())
+			throw new IllegalArgumentException("Mod folder is not valid");
+
+		return export(mod.getFolder(), target);
+	}
+	/**
+	 * Export a folder as a zip archive.
+	 * The archive replaces the target only once it is complete.
+	 *
+	 * @param folder The folder to export
+	 * @param target The archive to write
+	 * @return The outcome of the export
+	 * @throws IOException If a file could not be read or the archive could not be written
+	 */
+	public ExportResult export(File folder, File target) throws IOException{
+		List<File> files = new ArrayList<>();
+		File absoluteTarget = target.getAbsoluteFile();
+		for (File file : PathUtil.listFiles(folder)) {
+			if(!file.getAbsoluteFile().equals(absoluteTarget))
+				files.add(file);
+		}
+		Collections.sort(files);
+		if(files.size() > MAX_ENTRIES)
+			throw new IOException("Too many files for a zip archive: " + files.size());
+
+		List<Callable<Entry>> tasks = new ArrayList<>(files.size());
+		for (final File file : files) {
+			final String name = folder.toPath().relativize(file.toPath()).toString().replace('\\', '/');
+			tasks.add(new Callable<Entry>() {
+				@Override
+				public Entry call() throws IOException {
+					return compress(file, name);
+				}
+			});
+		}
+
+		Deque<Future<Entry>> pending = new ArrayDeque<>();
+		FileTransaction transaction = new FileTransaction();
+		try{
+			ExportResult result;
+			OutputStream stream = transaction.openOutputStream(target);
+			try{
+				result = assemble(target, tasks, pending, stream);
+			}
+			finally{
+				stream.close();
+			}
+			transaction.commit();
+			return result;
+		}
+		finally{
+			transaction.close();
+			// Running compressions cannot be stopped, wait for them to clean up
+			for (Future<Entry> future : pending)
+				deleteCompressed(future);
+		}
+	}
+
+	/**
+	 * Write the entries into the archive in order, then the central directory.
+	 * Compressions are submitted as a window ahead of the entry being written.
+	 *
+	 * @param target The archive file
+	 * @param tasks The compressions of the entries, in archive order
+	 * @param pending Receives the compressions that were submitted but not yet written
+	 * @param stream The stream of the archive
+	 * @return The outcome of the export
+	 * @throws IOException If the archive could not be written
+	 */
+	private static ExportResult assemble(File target, List<Callable<Entry>> tasks, Deque<Future<Entry>> pending, OutputStream stream) throws IOException{
+		ExecutorService executor = ExecutorUtil.getCpuExecutor();
+		int window = Math.max(1, Runtime.getRuntime().availableProcessors()) * ENTRIES_PER_PROCESSOR;
+		int submitted = 0;
+
+		List<Entry> entries = new ArrayList<>(tasks.size());
+		long position = 0;
+		long uncompressedSize = 0;
+		while(submitted < tasks.size() || !pending.isEmpty()){
+			while(submitted < tasks.size() && pending.size() < window)
+				pending.add(executor.submit(tasks.get(submitted++)));
+
+			Entry entry = ExecutorUtil.getResult(pending.peek());
+			pending.poll();
+			try{
+				entry.offset = position;
+				if(position > MAX_SIZE)
+					throw new IOException("Archive too large for a zip archive without zip64");
+
+				stream.write(createLocalHeader(entry));
+				position += LOCAL_HEADER_SIZE + entry.name.length;
+				if(entry.data != null)
+					stream.write(entry.data);
+				else if(entry.compressed != null)
+					copy(entry.compressed, stream, entry.compressedSize, null);
+				else{
+					// The source is read again, so check it still matches the header
+					CRC32 crc = new CRC32();
+					copy(entry.source, stream, entry.size, crc);
+					if(crc.getValue() != entry.crc)
+						throw new IOException("File changed during export: " + entry.source);
+				}
+				position += entry.compressedSize;
+				uncompressedSize += entry.size;
+			}
+			finally{
+				entry.release();
+			}
+			entries.add(entry);
+		}
+
+		long directoryOffset = position;
+		for (Entry entry : entries) {
+			stream.write(createCentralHeader(entry));
+			position += CENTRAL_HEADER_SIZE + entry.name.length;
+		}
+		if(position > MAX_SIZE)
+			throw new IOException("Archive too large for a zip archive without zip64");
+
+		ByteBuffer end = ByteBuffer.allocate(END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		end.putInt(END_SIGNATURE);
+		end.putShort((short)0);
+		end.putShort((short)0);
+		end.putShort((short)entries.size());
+		end.putShort((short)entries.size());
+		end.putInt((int)(position - directoryOffset));
+		end.putInt((int)directoryOffset);
+		end.putShort((short)0);
+		stream.write(end.array());
+		position += END_SIZE;
+
+		return new ExportResult(target, entries.size(), uncompressedSize, position);
+	}
+	/**
+	 * Compress a file into its own raw deflate stream, in memory for small
+	 * files and in a temporary file otherwise.
+	 * Files in compressed formats, or that do not shrink, are stored instead.
+	 *
+	 * @param file The file to compress
+	 * @param name The name of the entry
+	 * @return The entry
+	 * @throws IOException If the file could not be read or compressed
+	 */
+	private Entry compress(File file, String name) throws IOException{
+		Entry entry = new Entry(file, name);
+		if(entry.size > MAX_SIZE)
+			throw new IOException("File too large for a zip archive without zip64: " + file);
+
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		if(STORED_EXTENSIONS.contains(getExtension(file))){
+			try(InputStream input = new FileInputStream(file)){
+				int read;
+				while((read = input.read(buffer)) != -1)
+					crc.update(buffer, 0, read);
+			}
+			entry.crc = crc.getValue();
+			entry.method = METHOD_STORED;
+			entry.compressedSize = entry.size;
+			return entry;
+		}
+
+		boolean inMemory = entry.size <= MEMORY_ENTRY_SIZE;
+		ByteArrayOutputStream memory = null;
+		File compressed = null;
+		if(inMemory)
+			memory = new ByteArrayOutputStream((int)entry.size);
+		else
+			compressed = File.createTempFile("entry", ".deflate");
+		Deflater deflater = new Deflater(_level, true);
+		try{
+			byte[] output = new byte[BUFFER_SIZE];
+			long compressedSize = 0;
+			try(InputStream input = new FileInputStream(file);
+					OutputStream stream = inMemory ? memory : new BufferedOutputStream(new FileOutputStream(compressed))){
+				int read;
+				while((read = input.read(buffer)) != -1){
+					crc.update(buffer, 0, read);
+					deflater.setInput(buffer, 0, read);
+					while(!deflater.needsInput()){
+						int count = deflater.deflate(output);
+						stream.write(output, 0, count);
+						compressedSize += count;
+					}
+				}
+				deflater.finish();
+				while(!deflater.finished()){
+					int count = deflater.deflate(output);
+					stream.write(output, 0, count);
+					compressedSize += count;
+				}
+			}
+
+			entry.crc = crc.getValue();
+			if(compressedSize >= entry.size){
+				if(compressed != null)
+					compressed.delete();
+				entry.method = METHOD_STORED;
+				entry.compressedSize = entry.size;
+			}
+			else{
+				entry.method = METHOD_DEFLATED;
+				entry.compressedSize = compressedSize;
+				if(inMemory)
+					entry.data = memory.toByteArray();
+				else
+					entry.compressed = compressed;
+			}
+			return entry;
+		}
+		catch(IOException | RuntimeException ex){
+			if(compressed != null)
+				compressed.delete();
+			throw ex;
+		}
+		finally{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Create the local header of an entry.
+	 *
+	 * @param entry The entry
+	 * @return The header bytes
+	 */
+	private static byte[] createLocalHeader(Entry entry){
+		ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + entry.name.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER_SIGNATURE);
+		header.putShort((short)VERSION);
+		header.putShort((short)UTF8_FLAG);
+		header.putShort((short)entry.method);
+		header.putInt(entry.dosTime);
+		header.putInt((int)entry.crc);
+		header.putInt((int)entry.compressedSize);
+		header.putInt((int)entry.size);
+		header.putShort((short)entry.name.length);
+		header.putShort((short)0);
+		header.put(entry.name);
+		return header.array();
+	}
+	/**
+	 * Create the central directory header of an entry.
+	 *
+	 * @param entry The entry
+	 * @return The header bytes
+	 */
+	private static byte[] createCentralHeader(Entry entry){
+		ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + entry.name.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(CENTRAL_HEADER_SIGNATURE);
+		header.putShort((short)VERSION);
+		header.putShort((short)VERSION);
+		header.putShort((short)UTF8_FLAG);
+		header.putShort((short)entry.method);
+		header.putInt(entry.dosTime);
+		header.putInt((int)entry.crc);
+		header.putInt((int)entry.compressedSize);
+		header.putInt((int)entry.size);
+		header.putShort((short)entry.name.length);
+		header.putShort((short)0);
+		header.putShort((short)0);
+		header.putShort((short)0);
+		header.putShort((short)0);
+		header.putInt(0);
+		header.putInt((int)entry.offset);
+		header.put(entry.name);
+		return header.array();
+	}
+	/**
+	 * Copy a file of a known length into a stream.
+	 *
+	 * @param file The file
+	 * @param stream The stream
+	 * @param length The length the file must have
+	 * @param crc Updated with the copied bytes, may be null
+	 * @throws IOException If the file could not be copied or has another length
+	 */
+	private static void copy(File file, OutputStream stream, long length, CRC32 crc) throws IOException{
+		try(InputStream input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)){
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long remaining = length;
+			int read;
+			while(remaining > 0 && (read = input.read(buffer, 0, (int)Math.min(buffer.length, remaining))) != -1){
+				stream.write(buffer, 0, read);
+				if(crc != null)
+					crc.update(buffer, 0, read);
+				remaining -= read;
+			}
+			if(remaining > 0 || input.read() != -1)
+				throw new IOException("File changed during export: " + file);
+		}
+	}
+	/**
+	 * Wait for the compression of an entry that was not written, and
+	 * delete its temporary file.
+	 * The wait is not cut short by interrupts, so no temporary file is left
+	 * behind by a compression that was still running.
+	 *
+	 * @param future The compression of the entry
+	 */
+	private static void deleteCompressed(Future<Entry> future){
+		boolean interrupted = false;
+		try{
+			while(true){
+				try{
+					future.get().release();
+					return;
+				}
+				catch(InterruptedException ex){
+					interrupted = true;
+				}
+				catch(ExecutionException | CancellationException ex){
+					// Failed compressions leave no temporary file
+					return;
+				}
+			}
+		}
+		finally{
+			if(interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+	/**
+	 * Get the lower case extension of a file.
+	 *
+	 * @param file The file
+	 * @return The extension, empty if none
+	 */
+	private static String getExtension(File file){
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+	}
+	/**
+	 * Convert a modification time into the ms-dos format of zip headers.
+	 *
+	 * @param time The modification time in milliseconds
+	 * @return The ms-dos time and date
+	 */
+	private static int toDosTime(long time){
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		int year = calendar.get(Calendar.YEAR);
+		if(year < 1980)
+			return (1 << 21) | (1 << 16);
+
+		return (year - 1980) << 25
+				| (calendar.get(Calendar.MONTH) + 1) << 21
+				| calendar.get(Calendar.DAY_OF_MONTH) << 16
+				| calendar.get(Calendar.HOUR_OF_DAY) << 11
+				| calendar.get(Calendar.MINUTE) << 5
+				| calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	/**
+	 * A file of the archive and its compressed form.
+	 *
+	 * @author SilverFishCat
+	 *
+	 */
+	private static class Entry{
+		public final File source;
+		public final byte[] name;
+		public final long size;
+		public final int dosTime;
+		public File compressed;
+		public byte[] data;
+		public int method;
+		public long crc;
+		public long compressedSize;
+		public long offset;
+
+		public Entry(File source, String name) throws IOException{
+			this.source = source;
+			this.name = name.getBytes(StandardCharsets.UTF_8);
+			this.size = Files.size(source.toPath());
+			this.dosTime = toDosTime(source.lastModified());
+		}
+
+		/**
+		 * Drop the compressed form of the entry once it is written.
+		 */
+		public void release(){
+			if(compressed != null){
+				compressed.delete();
+				compressed = null;
+			}
+			data = null;
+		}
+	}
+}